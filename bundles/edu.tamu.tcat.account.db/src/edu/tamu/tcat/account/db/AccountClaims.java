@@ -0,0 +1,160 @@
+package edu.tamu.tcat.account.db;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+import edu.tamu.tcat.account.Account;
+import edu.tamu.tcat.account.AccountRole;
+
+/**
+ * A snapshot of the information about an {@link Account} that is required to authorize most
+ * requests: the account id, display name and active flag, the ids of the roles assigned to
+ * the account and the time at which the snapshot was taken. Carrying these claims within a
+ * token allows the bearer to be authorized without looking up the account in an
+ * {@link edu.tamu.tcat.account.store.AccountStore}.
+ * <p>
+ * Claims reflect the state of the account at the time the token was issued. Applications
+ * that must observe changes to an account immediately should consult the account store or
+ * revoke outstanding tokens when the account changes (see {@link TokenRevocationList}).
+ * <p>
+ * Instances are immutable.
+ *
+ * @see TokenPayloadCodecs#accountClaims()
+ * @see ExpiringTokenProvider.AccountClaimsTokenProviderFactory
+ * @since 2.1
+ */
+public final class AccountClaims implements Account
+{
+   private final UUID accountId;
+   private final String displayName;
+   private final boolean active;
+   private final List<UUID> roleIds;
+   private final Instant issuedAt;
+
+   /**
+    * @param accountId The id of the account.
+    * @param displayName The display name of the account. May be {@code null}.
+    * @param active Whether the account is active.
+    * @param roleIds The ids of the roles assigned to the account.
+    * @param issuedAt The time at which these claims were issued.
+    */
+   public AccountClaims(UUID accountId, String displayName, boolean active, Collection<UUID> roleIds, Instant issuedAt)
+   {
+      this.accountId = Objects.requireNonNull(accountId, "No account id supplied");
+      this.displayName = displayName;
+      this.active = active;
+      this.roleIds = Collections.unmodifiableList(new ArrayList<>(roleIds));
+      this.issuedAt = Objects.requireNonNull(issuedAt, "No issue time supplied");
+   }
+
+   /**
+    * Creates claims describing the current state of the supplied account.
+    *
+    * @param account The account.
+    * @param roles The roles assigned to the account.
+    * @return Claims issued at the current time.
+    */
+   public static AccountClaims of(Account account, Collection<? extends AccountRole> roles)
+   {
+      List<UUID> roleIds = new ArrayList<>(roles.size());
+      for (AccountRole role : roles)
+         roleIds.add(role.getId());
+
+      return new AccountClaims(account.getId(), account.getDisplayName(), account.isActive(), roleIds, Instant.now());
+   }
+
+   @Override
+   public UUID getId()
+   {
+      return accountId;
+   }
+
+   @Override
+   public String getDisplayName()
+   {
+      return displayName;
+   }
+
+   @Override
+   public boolean isActive()
+   {
+      return active;
+   }
+
+   /**
+    * @return The ids of the roles assigned to the account. Does not return {@code null}.
+    */
+   public List<UUID> getRoleIds()
+   {
+      return roleIds;
+   }
+
+   /**
+    * @param roleId The id of a role.
+    * @return {@code true} if the role was assigned to the account.
+    */
+   public boolean hasRole(UUID roleId)
+   {
+      return roleIds.contains(roleId);
+   }
+
+   /**
+    * @return The time at which these claims were issued.
+    */
+   public Instant getIssuedAt()
+   {
+      return issuedAt;
+   }
+
+   /**
+    * Compares the claims, but not the issue times, of two snapshots. Equal claims taken at
+    * different times authorize the same requests, but are not {@link #equals(Object) equal}.
+    *
+    * @param other The claims to compare with.
+    * @return {@code true} if the supplied claims are for the same account, with the same
+    *       display name, active flag and roles.
+    */
+   public boolean hasSameClaims(AccountClaims other)
+   {
+      return other != null
+            && accountId.equals(other.accountId)
+            && Objects.equals(displayName, other.displayName)
+            && active == other.active
+            && roleIds.equals(other.roleIds);
+   }
+
+   /**
+    * {@inheritDoc}
+    * <p>
+    * Claims are equal only if they were also issued at the same time; see
+    * {@link #hasSameClaims(AccountClaims)}.
+    */
+   @Override
+   public boolean equals(Object obj)
+   {
+      if (this == obj)
+         return true;
+      if (!(obj instanceof AccountClaims))
+         return false;
+
+      AccountClaims other = (AccountClaims)obj;
+      return hasSameClaims(other) && issuedAt.equals(other.issuedAt);
+   }
+
+   @Override
+   public int hashCode()
+   {
+      return Objects.hash(accountId, displayName, Boolean.valueOf(active), roleIds, issuedAt);
+   }
+
+   @Override
+   public String toString()
+   {
+      return "AccountClaims [" + accountId + ", " + displayName + (active ? "" : " (inactive)") + ", roles=" + roleIds + "]";
+   }
+}
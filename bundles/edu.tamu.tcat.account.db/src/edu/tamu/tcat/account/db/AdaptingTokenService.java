@@ -58,6 +58,78 @@ public class AdaptingTokenService<PayloadType, KeyType> implements TokenService<
       return new AdaptedTokenData(token, item);
    }
 
+   /**
+    * {@inheritDoc}
+    * <p>
+    * The item is resolved when the payload of the returned data is first accessed.
+    */
+   @Override
+   public TokenData<PayloadType> unpackTokenData(String token)
+   {
+      return new AdaptedTokenData(delegate.unpackTokenData(token), null);
+   }
+
+   @Override
+   public TokenData<PayloadType> renewTokenData(String token, PayloadType item)
+   {
+      KeyType key = keyAdapter.apply(item);
+      TokenData<KeyType> data = delegate.renewTokenData(token, key);
+      return new AdaptedTokenData(data, item);
+   }
+
+   /**
+    * Sets the list of revoked tokens. Tokens in the list will not be unpacked or renewed.
+    * Revoked tokens are identified by their content, which only the delegate service can
+    * recover, so the list is set on, and consulted by, the delegate service.
+    *
+    * @param revocations The revocation list to consult, or {@code null} to accept all
+    *       tokens accepted by the delegate service.
+    * @throws UnsupportedOperationException If the delegate service is not an
+    *       {@link ExpiringTokenProvider}.
+    * @since 2.1
+    */
+   public void setRevocationList(TokenRevocationList revocations)
+   {
+      getRevokingDelegate().setRevocationList(revocations);
+   }
+
+   /**
+    * Revokes the supplied token, so that it will no longer be unpacked by this service.
+    *
+    * @param token The token to revoke.
+    * @throws UnsupportedOperationException If the delegate service is not an
+    *       {@link ExpiringTokenProvider}.
+    * @throws IllegalStateException If no revocation list has been set.
+    * @since 2.1
+    * @see ExpiringTokenProvider#revokeToken(String)
+    */
+   public void revokeToken(String token)
+   {
+      getRevokingDelegate().revokeToken(token);
+   }
+
+   @SuppressWarnings("unchecked")
+   /**
+    * @param data Token data returned by {@link #unpackTokenData(String)}.
+    * @return {@code true} if the token from which the data was unpacked has since been revoked.
+    * @see ExpiringTokenProvider#isRevoked(TokenData)
+    */
+   boolean isRevoked(TokenData<PayloadType> data)
+   {
+      if (!(delegate instanceof ExpiringTokenProvider) || !(data instanceof AdaptingTokenService.AdaptedTokenData))
+         return false;
+
+      return ((ExpiringTokenProvider<KeyType>)delegate).isRevoked(((AdaptedTokenData)data).delegate);
+   }
+
+   private ExpiringTokenProvider<KeyType> getRevokingDelegate()
+   {
+      if (!(delegate instanceof ExpiringTokenProvider))
+         throw new UnsupportedOperationException("Token revocation requires an ExpiringTokenProvider delegate");
+
+      return (ExpiringTokenProvider<KeyType>)delegate;
+   }
+
    @Override
    public PayloadType unpackToken(String token)
    {
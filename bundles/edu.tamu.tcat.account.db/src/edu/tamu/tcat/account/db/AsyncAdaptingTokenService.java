@@ -0,0 +1,116 @@
+package edu.tamu.tcat.account.db;
+
+import java.time.ZonedDateTime;
+import java.util.Objects;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+
+import edu.tamu.tcat.account.token.AsyncTokenService;
+import edu.tamu.tcat.account.token.TokenService;
+import edu.tamu.tcat.account.token.TokenService.TokenData;
+
+/**
+ * The asynchronous counterpart of {@link AdaptingTokenService}. Tokens managed by the
+ * delegate service encode a key value that is resolved into the payload type by a
+ * non-blocking item resolver, for example one that issues a database query and completes
+ * when the results are available. No thread is blocked while the item is being resolved.
+ *
+ * @param <PayloadType> The payload type that the underlying token representation will be
+ *       adapted into/from.
+ * @param <KeyType> The payload type of the underlying token scheme.
+ * @since 2.1
+ */
+public class AsyncAdaptingTokenService<PayloadType, KeyType> implements AsyncTokenService<PayloadType>
+{
+   private final Class<PayloadType> type;
+   private final AsyncTokenService<KeyType> delegate;
+   private final Function<PayloadType, KeyType> keyAdapter;
+   private final Function<KeyType, ? extends CompletionStage<PayloadType>> itemResolver;
+
+   /**
+    * Construct a new {@link AsyncAdaptingTokenService} from a delegate {@link AsyncTokenService}.
+    *
+    * @param type The Java type of the target payload represented by this
+    *       token service interface.
+    * @param delegate The delegate service that will be used to create and unpack tokens.
+    * @param keyAdapter A function that maps instances of the target payload type
+    *       into instances of the key that can be processed by the delegate service.
+    * @param itemResolver A function that maps instances of the key associated with
+    *       the packed token data into a stage that completes with an instance of the
+    *       target payload.
+    */
+   public AsyncAdaptingTokenService(Class<PayloadType> type,
+                                    AsyncTokenService<KeyType> delegate,
+                                    Function<PayloadType, KeyType> keyAdapter,
+                                    Function<KeyType, ? extends CompletionStage<PayloadType>> itemResolver)
+   {
+      this.type = type;
+      this.delegate = Objects.requireNonNull(delegate, "No delegate token service supplied");
+      this.keyAdapter = Objects.requireNonNull(keyAdapter, "No key adapter supplied");
+      this.itemResolver = Objects.requireNonNull(itemResolver, "No item resolver supplied");
+   }
+
+   /**
+    * Construct a new {@link AsyncAdaptingTokenService} from a synchronous delegate
+    * {@link TokenService} that does not block, such as an {@link ExpiringTokenProvider}.
+    *
+    * @see #AsyncAdaptingTokenService(Class, AsyncTokenService, Function, Function)
+    */
+   public AsyncAdaptingTokenService(Class<PayloadType> type,
+                                    TokenService<KeyType> delegate,
+                                    Function<PayloadType, KeyType> keyAdapter,
+                                    Function<KeyType, ? extends CompletionStage<PayloadType>> itemResolver)
+   {
+      this(type, AsyncTokenService.adapt(delegate), keyAdapter, itemResolver);
+   }
+
+   @Override
+   public CompletionStage<TokenData<PayloadType>> createTokenDataAsync(PayloadType item)
+   {
+      KeyType key = keyAdapter.apply(item);
+      return delegate.createTokenDataAsync(key)
+            .thenApply(token -> new AdaptedTokenData<>(token, item));
+   }
+
+   @Override
+   public CompletionStage<PayloadType> unpackTokenAsync(String token)
+   {
+      return delegate.unpackTokenAsync(token).thenCompose(itemResolver);
+   }
+
+   @Override
+   public Class<PayloadType> getPayloadType()
+   {
+      return type;
+   }
+
+   private static class AdaptedTokenData<PT> implements TokenData<PT>
+   {
+      private final TokenData<?> delegate;
+      private final PT item;
+
+      private AdaptedTokenData(TokenData<?> delegate, PT item)
+      {
+         this.delegate = delegate;
+         this.item = item;
+      }
+
+      @Override
+      public PT getPayload()
+      {
+         return item;
+      }
+
+      @Override
+      public String getToken()
+      {
+         return delegate.getToken();
+      }
+
+      @Override
+      public ZonedDateTime getExpiration()
+      {
+         return delegate.getExpiration();
+      }
+   }
+}
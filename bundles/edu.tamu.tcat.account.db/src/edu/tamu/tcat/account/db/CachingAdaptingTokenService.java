@@ -0,0 +1,241 @@
+package edu.tamu.tcat.account.db;
+
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import edu.tamu.tcat.account.token.TokenService;
+
+/**
+ * An {@link AdaptingTokenService} that caches the items returned by its item resolver.
+ * Resolving an item typically requires a round trip to a backing store, for example to
+ * load an account record by id, and is performed each time a token is unpacked. This
+ * service retains resolved items for a bounded period of time so that repeated use of
+ * tokens referring to the same key requires only a single lookup.
+ * <p>
+ * Concurrent requests for a key that is not cached share a single call to the item
+ * resolver. Resolution failures are propagated to all waiting callers and are not cached.
+ * <p>
+ * The number of cached items is bounded; once the bound is reached the least recently used
+ * item is discarded. Clients should call {@link #invalidate(Object)} when the item
+ * associated with a key changes, so that subsequent requests observe the change without
+ * waiting for the cached item to expire.
+ *
+ * @param <PayloadType> The payload type that the underlying token representation will be
+ *       adapted into/from.
+ * @param <KeyType> The payload type of the underlying token scheme.
+ * @since 2.1
+ */
+public class CachingAdaptingTokenService<PayloadType, KeyType> extends AdaptingTokenService<PayloadType, KeyType>
+{
+   private final ResolverCache<KeyType, PayloadType> cache;
+
+   /**
+    * Construct a new {@link CachingAdaptingTokenService} from a delegate {@link TokenService}.
+    *
+    * @param type The Java type of the target payload represented by this
+    *       token service interface.
+    * @param delegate The delegate {@code TokenService} that will be used to
+    *       create and unpack tokens
+    * @param keyAdapter A function that maps instances of the target payload type
+    *       into instances of the key that can be processed by the delegate service.
+    * @param itemResolver A function that maps instances of the key associated with
+    *       the packed token data into an instance of the target payload.
+    * @param maxEntries The maximum number of resolved items to retain.
+    * @param ttl The maximum amount of time that a resolved item will be retained.
+    * @param unit The time units of ttl.
+    */
+   public CachingAdaptingTokenService(Class<PayloadType> type,
+                                      TokenService<KeyType> delegate,
+                                      Function<PayloadType, KeyType> keyAdapter,
+                                      Function<KeyType, PayloadType> itemResolver,
+                                      int maxEntries, long ttl, ChronoUnit unit)
+   {
+      this(type, delegate, keyAdapter, new ResolverCache<>(itemResolver, maxEntries, ttl, unit));
+   }
+
+   private CachingAdaptingTokenService(Class<PayloadType> type,
+                                       TokenService<KeyType> delegate,
+                                       Function<PayloadType, KeyType> keyAdapter,
+                                       ResolverCache<KeyType, PayloadType> cache)
+   {
+      super(type, delegate, keyAdapter, cache::resolve);
+      this.cache = cache;
+   }
+
+   /**
+    * Removes the item associated with the supplied key from the cache, if present. The next
+    * token that refers to this key will cause the item to be resolved again.
+    *
+    * @param key The key of the item that has changed.
+    */
+   public void invalidate(KeyType key)
+   {
+      cache.invalidate(key);
+   }
+
+   /**
+    * Removes all items from the cache.
+    */
+   public void invalidateAll()
+   {
+      cache.invalidateAll();
+   }
+
+   /**
+    * @return The number of items currently held in the cache, including any that are
+    *       being resolved.
+    */
+   public int size()
+   {
+      return cache.size();
+   }
+
+   /**
+    * @return The number of item lookups that were answered from the cache, including
+    *       those that waited on a resolution started by another caller.
+    */
+   public long getHitCount()
+   {
+      return cache.hits.sum();
+   }
+
+   /**
+    * @return The number of item lookups that called the item resolver.
+    */
+   public long getMissCount()
+   {
+      return cache.misses.sum();
+   }
+
+   private static class ResolverCache<K, V>
+   {
+      private final Function<K, V> resolver;
+      private final long ttlMillis;
+      private final Map<K, CacheEntry<V>> entries;
+
+      private final LongAdder hits = new LongAdder();
+      private final LongAdder misses = new LongAdder();
+
+      private ResolverCache(Function<K, V> resolver, int maxEntries, long ttl, ChronoUnit unit)
+      {
+         if (maxEntries <= 0)
+            throw new IllegalArgumentException("Cache size must be positive [" + maxEntries + "]");
+         if (ttl <= 0)
+            throw new IllegalArgumentException("Cache TTL must be positive [" + ttl + "]");
+
+         this.resolver = Objects.requireNonNull(resolver, "No item resolver supplied");
+         this.ttlMillis = unit.getDuration().multipliedBy(ttl).toMillis();
+         this.entries = new LinkedHashMap<K, CacheEntry<V>>(16, 0.75f, true)
+         {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, CacheEntry<V>> eldest)
+            {
+               return size() > maxEntries;
+            }
+         };
+      }
+
+      private V resolve(K key)
+      {
+         CacheEntry<V> entry;
+         boolean loader = false;
+         synchronized (entries)
+         {
+            entry = entries.get(key);
+            if (entry == null || entry.isExpired(System.currentTimeMillis()))
+            {
+               entry = new CacheEntry<>();
+               entries.put(key, entry);
+               loader = true;
+            }
+         }
+
+         if (!loader)
+         {
+            hits.increment();
+            return join(entry.value);
+         }
+
+         misses.increment();
+         try
+         {
+            V value = resolver.apply(key);
+            entry.expires = System.currentTimeMillis() + ttlMillis;
+            entry.value.complete(value);
+            return value;
+         }
+         catch (Throwable ex)
+         {
+            // any failure must complete the entry, or concurrent callers would wait forever
+            synchronized (entries)
+            {
+               entries.remove(key, entry);
+            }
+
+            entry.value.completeExceptionally(ex);
+            throw ex;
+         }
+      }
+
+      private static <V> V join(CompletableFuture<V> value)
+      {
+         try
+         {
+            return value.join();
+         }
+         catch (CompletionException ex)
+         {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException)
+               throw (RuntimeException)cause;
+
+            throw new IllegalStateException("Failed to resolve item.", cause);
+         }
+      }
+
+      private void invalidate(K key)
+      {
+         synchronized (entries)
+         {
+            entries.remove(key);
+         }
+      }
+
+      private void invalidateAll()
+      {
+         synchronized (entries)
+         {
+            entries.clear();
+         }
+      }
+
+      private int size()
+      {
+         synchronized (entries)
+         {
+            return entries.size();
+         }
+      }
+   }
+
+   private static class CacheEntry<V>
+   {
+      private final CompletableFuture<V> value = new CompletableFuture<>();
+
+      /** Written before the value is completed; entries are not expired while loading. */
+      private volatile long expires = Long.MAX_VALUE;
+
+      private boolean isExpired(long now)
+      {
+         return expires <= now;
+      }
+   }
+}
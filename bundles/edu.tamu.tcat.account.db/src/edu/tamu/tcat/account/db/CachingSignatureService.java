@@ -0,0 +1,367 @@
+package edu.tamu.tcat.account.db;
+
+import java.security.PublicKey;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+import edu.tamu.tcat.account.signature.SignatureException;
+import edu.tamu.tcat.account.signature.SignatureService;
+
+/**
+ * A {@link SignatureService} decorator that remembers the payloads of recently seen signer
+ * identifiers. Every signed request is processed by looking up the payload for the identifier
+ * in its authorization header, which for typical services requires a query of the account
+ * store, followed by decoding the public key of that account to build a verifier. This
+ * service memoizes the mapping from identifier to payload and, if supplied with a
+ * {@link PublicKeyLoader}, the public key of each cached payload, so that repeated requests
+ * from the same signer are verified without either.
+ * <p>
+ * The number of cached identifiers is bounded; once the bound is reached the least recently
+ * used identifier is discarded. Each cached payload and key is evicted once the configured
+ * maximum age has passed. Identifiers for which the delegate reports no payload are also
+ * cached, for a separate (typically shorter) period, so that requests naming unknown accounts
+ * do not each reach the account store. Identifiers that are malformed, or whose payload
+ * cannot be fetched, are never cached.
+ * <p>
+ * Since cached keys are used until they are evicted, {@link #invalidate(String)} should be
+ * called when the key of an account is rotated or revoked, and when an account is created for
+ * an identifier that may have been cached as unknown.
+ * <p>
+ * Note that cached payloads are shared between requests; this service should only be used
+ * with payload types that are not modified once fetched.
+ *
+ * @param <PayloadType> The payload type of the signatures.
+ * @since 2.1
+ */
+public class CachingSignatureService<PayloadType> implements SignatureService<PayloadType>
+{
+   /**
+    * Separates loading the public key for a payload from building verifiers with it, so that
+    * the key of a cached payload may be cached with it. Typically implemented by the same
+    * class as the delegate {@link SignatureService}.
+    *
+    * @param <PayloadType> The payload type of the signatures.
+    */
+   public interface PublicKeyLoader<PayloadType>
+   {
+      /**
+       * @param payload A payload returned by {@link SignatureService#getPayload(String)}.
+       * @return The public key used to verify signatures made for the payload.
+       * @throws SignatureException Thrown if the key cannot be decoded.
+       */
+      PublicKey loadPublicKey(PayloadType payload);
+
+      /**
+       * @param key A key returned by {@link #loadPublicKey(Object)}.
+       * @param signature The signature in the authorization header.
+       * @return A verifier equivalent to that returned by
+       *       {@link SignatureService#getVerifier(Object, byte[])} for the payload of the key.
+       */
+      Verifier getVerifier(PublicKey key, byte[] signature);
+   }
+
+   private final SignatureService<PayloadType> delegate;
+   private final PublicKeyLoader<PayloadType> keyLoader;
+   private final long maxAgeMillis;
+   private final long negativeMaxAgeMillis;
+   private final Clock clock;
+
+   // both guarded by cache; byPayload finds the entry of a payload returned from the cache
+   private final Map<String, CacheEntry<PayloadType>> cache;
+   private final Map<PayloadType, CacheEntry<PayloadType>> byPayload = new IdentityHashMap<>();
+   /**
+    * Counts calls to {@link #invalidate(String)} and {@link #invalidateAll()}, so that a payload
+    * loaded while an invalidation was made is not cached. Guarded by cache.
+    */
+   private long invalidations;
+
+   private final LongAdder hits = new LongAdder();
+   private final LongAdder misses = new LongAdder();
+
+   /**
+    * Construct a new {@link CachingSignatureService} that caches payloads but not keys.
+    *
+    * @param delegate The signature service used to look up payloads and build verifiers.
+    * @param maxEntries The maximum number of identifiers to retain in the cache.
+    * @param maxAge The maximum amount of time that a payload may be retained in the cache.
+    * @param negativeMaxAge The maximum amount of time that an identifier without a payload may
+    *       be retained in the cache. If zero, such identifiers are not cached.
+    */
+   public CachingSignatureService(SignatureService<PayloadType> delegate, int maxEntries, Duration maxAge, Duration negativeMaxAge)
+   {
+      this(delegate, null, maxEntries, maxAge, negativeMaxAge, Clock.systemUTC());
+   }
+
+   /**
+    * Construct a new {@link CachingSignatureService} that caches payloads and their keys.
+    *
+    * @param delegate The signature service used to look up payloads.
+    * @param keyLoader Loads the keys of cached payloads, and builds verifiers for them. May be
+    *       {@code null}, in which case keys are not cached.
+    * @param maxEntries The maximum number of identifiers to retain in the cache.
+    * @param maxAge The maximum amount of time that a payload and its key may be retained in the
+    *       cache.
+    * @param negativeMaxAge The maximum amount of time that an identifier without a payload may
+    *       be retained in the cache. If zero, such identifiers are not cached.
+    */
+   public CachingSignatureService(SignatureService<PayloadType> delegate, PublicKeyLoader<PayloadType> keyLoader,
+         int maxEntries, Duration maxAge, Duration negativeMaxAge)
+   {
+      this(delegate, keyLoader, maxEntries, maxAge, negativeMaxAge, Clock.systemUTC());
+   }
+
+   /**
+    * Construct a new {@link CachingSignatureService}.
+    *
+    * @param delegate The signature service used to look up payloads.
+    * @param keyLoader Loads the keys of cached payloads, and builds verifiers for them. May be
+    *       {@code null}, in which case keys are not cached.
+    * @param maxEntries The maximum number of identifiers to retain in the cache.
+    * @param maxAge The maximum amount of time that a payload and its key may be retained in the
+    *       cache.
+    * @param negativeMaxAge The maximum amount of time that an identifier without a payload may
+    *       be retained in the cache. If zero, such identifiers are not cached.
+    * @param clock The clock used to determine the age of cached entries.
+    */
+   public CachingSignatureService(SignatureService<PayloadType> delegate, PublicKeyLoader<PayloadType> keyLoader,
+         int maxEntries, Duration maxAge, Duration negativeMaxAge, Clock clock)
+   {
+      if (maxEntries <= 0)
+         throw new IllegalArgumentException("Cache size must be positive [" + maxEntries + "]");
+      if (maxAge.isNegative() || maxAge.isZero())
+         throw new IllegalArgumentException("Maximum age must be positive [" + maxAge + "]");
+      if (negativeMaxAge.isNegative())
+         throw new IllegalArgumentException("Maximum age of unknown identifiers must not be negative [" + negativeMaxAge + "]");
+
+      this.delegate = Objects.requireNonNull(delegate, "No delegate signature service supplied");
+      this.keyLoader = keyLoader;
+      this.maxAgeMillis = toMillis(maxAge);
+      this.negativeMaxAgeMillis = toMillis(negativeMaxAge);
+      this.clock = Objects.requireNonNull(clock, "No clock supplied");
+      this.cache = new LinkedHashMap<String, CacheEntry<PayloadType>>(16, 0.75f, true)
+      {
+         private static final long serialVersionUID = 1L;
+
+         @Override
+         protected boolean removeEldestEntry(Map.Entry<String, CacheEntry<PayloadType>> eldest)
+         {
+            if (size() <= maxEntries)
+               return false;
+
+            unindex(eldest.getValue());
+            return true;
+         }
+      };
+   }
+
+   private static long toMillis(Duration duration)
+   {
+      try
+      {
+         return duration.toMillis();
+      }
+      catch (ArithmeticException ex)
+      {
+         return Long.MAX_VALUE;
+      }
+   }
+
+   /**
+    * {@inheritDoc}
+    * <p>
+    * A cached payload, or the absence of one, is returned if available.
+    */
+   @Override
+   public PayloadType getPayload(String identifier)
+   {
+      long now = clock.millis();
+      long generation;
+      synchronized (cache)
+      {
+         CacheEntry<PayloadType> entry = cache.get(identifier);
+         if (entry != null)
+         {
+            if (entry.expires > now)
+            {
+               hits.increment();
+               return entry.payload;
+            }
+
+            cache.remove(identifier);
+            unindex(entry);
+         }
+
+         generation = invalidations;
+      }
+
+      misses.increment();
+      PayloadType payload = delegate.getPayload(identifier);
+
+      long maxAge = (payload == null) ? negativeMaxAgeMillis : maxAgeMillis;
+      if (maxAge > 0)
+      {
+         long expires = (maxAge > Long.MAX_VALUE - now) ? Long.MAX_VALUE : now + maxAge;
+         CacheEntry<PayloadType> entry = new CacheEntry<>(payload, expires);
+         synchronized (cache)
+         {
+            // the payload may have been looked up before the change that was invalidated
+            if (invalidations != generation)
+               return payload;
+
+            CacheEntry<PayloadType> replaced = cache.put(identifier, entry);
+            if (replaced != null)
+               unindex(replaced);
+            if (payload != null)
+               byPayload.put(payload, entry);
+         }
+      }
+
+      return payload;
+   }
+
+   /**
+    * {@inheritDoc}
+    * <p>
+    * If this service has a {@link PublicKeyLoader} and the payload was returned from the cache,
+    * the verifier is built with the cached key of the payload, which is loaded on first use.
+    * Otherwise the verifier is provided by the delegate.
+    */
+   @Override
+   public Verifier getVerifier(PayloadType account, byte[] signature)
+   {
+      if (keyLoader == null)
+         return delegate.getVerifier(account, signature);
+
+      CacheEntry<PayloadType> entry;
+      synchronized (cache)
+      {
+         entry = byPayload.get(account);
+      }
+      if (entry == null || entry.expires <= clock.millis())
+         return delegate.getVerifier(account, signature);
+
+      // concurrent first uses may each load the key; any of them may be retained
+      PublicKey key = entry.key;
+      if (key == null)
+         key = entry.key = keyLoader.loadPublicKey(account);
+
+      return keyLoader.getVerifier(key, signature);
+   }
+
+   @Override
+   public Class<PayloadType> getPayloadType()
+   {
+      return delegate.getPayloadType();
+   }
+
+   @Override
+   public boolean mayBeSelfSigned()
+   {
+      return delegate.mayBeSelfSigned();
+   }
+
+   @Override
+   public PayloadType getSelfSigningPayload(Object result)
+   {
+      return delegate.getSelfSigningPayload(result);
+   }
+
+   @Override
+   public String getAuthorizationScope()
+   {
+      return delegate.getAuthorizationScope();
+   }
+
+   @Override
+   public SelfSignedVerifier<PayloadType> getVerifier(byte[] signature)
+   {
+      return delegate.getVerifier(signature);
+   }
+
+   /**
+    * Removes the supplied identifier, with its payload and key, from the cache, if present.
+    * Subsequent requests signed with this identifier will be processed by the delegate
+    * signature service. Payloads being looked up when this is called are not cached, since
+    * they may have been read before the change that prompted the invalidation.
+    *
+    * @param identifier The identifier to remove.
+    */
+   public void invalidate(String identifier)
+   {
+      synchronized (cache)
+      {
+         invalidations++;
+         CacheEntry<PayloadType> entry = cache.remove(identifier);
+         if (entry != null)
+            unindex(entry);
+      }
+   }
+
+   /**
+    * Removes all identifiers from the cache.
+    */
+   public void invalidateAll()
+   {
+      synchronized (cache)
+      {
+         invalidations++;
+         cache.clear();
+         byPayload.clear();
+      }
+   }
+
+   /** Called only while holding the lock on the cache. */
+   private void unindex(CacheEntry<PayloadType> entry)
+   {
+      if (entry.payload != null)
+         byPayload.remove(entry.payload, entry);
+   }
+
+   /**
+    * @return The number of identifiers currently held in the cache. This may include
+    *       identifiers that have expired but have not yet been evicted.
+    */
+   public int size()
+   {
+      synchronized (cache)
+      {
+         return cache.size();
+      }
+   }
+
+   /**
+    * @return The number of calls to {@link #getPayload(String)} that were answered from
+    *       the cache.
+    */
+   public long getHitCount()
+   {
+      return hits.sum();
+   }
+
+   /**
+    * @return The number of calls to {@link #getPayload(String)} that required the payload to
+    *       be looked up by the delegate signature service.
+    */
+   public long getMissCount()
+   {
+      return misses.sum();
+   }
+
+   private static class CacheEntry<PT>
+   {
+      private final PT payload;
+      private final long expires;
+      private volatile PublicKey key;
+
+      private CacheEntry(PT payload, long expires)
+      {
+         this.payload = payload;
+         this.expires = expires;
+      }
+   }
+}
@@ -0,0 +1,259 @@
+package edu.tamu.tcat.account.db;
+
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+import edu.tamu.tcat.account.token.TokenService;
+
+/**
+ * A {@link TokenService} decorator that remembers the payloads of recently unpacked tokens.
+ * Clients typically present the same bearer token on many successive requests, and unpacking
+ * a token from an {@link ExpiringTokenProvider} requires a full decryption of that token.
+ * This service memoizes the mapping from token string to payload so that repeated
+ * presentations of a token are answered without decrypting it again.
+ * <p>
+ * The number of cached tokens is bounded; once the bound is reached the least recently used
+ * token is discarded. Each cached token is evicted no later than the expiration time embedded
+ * in the token (when reported by the delegate's {@link TokenService#unpackTokenData(String)})
+ * or the configured maximum age, whichever comes first. Tokens that fail to unpack are never cached.
+ * <p>
+ * If the delegate is an {@link ExpiringTokenProvider}, or an {@link AdaptingTokenService} of
+ * one, cached tokens are checked against its {@link TokenRevocationList} on every hit, so
+ * revoking a token takes effect immediately, whichever spelling of the token was cached.
+ * <p>
+ * Note that cached payloads are shared between callers; this service should only be used
+ * with payload types that are immutable, such as {@link java.util.UUID} or {@link Long}.
+ *
+ * @param <PayloadType> The payload type of the tokens.
+ * @since 2.1
+ */
+public class CachingTokenService<PayloadType> implements TokenService<PayloadType>
+{
+   private final TokenService<PayloadType> delegate;
+   private final long maxAgeMillis;
+
+   private final Map<String, CacheEntry<PayloadType>> cache;
+
+   private final LongAdder hits = new LongAdder();
+   private final LongAdder misses = new LongAdder();
+
+   /**
+    * Construct a new {@link CachingTokenService} for an {@link ExpiringTokenProvider}. Cached
+    * tokens will be retained until the expiration time embedded in the token.
+    *
+    * @param delegate The token service that will be used to create and unpack tokens.
+    * @param maxEntries The maximum number of tokens to retain in the cache.
+    */
+   public CachingTokenService(ExpiringTokenProvider<PayloadType> delegate, int maxEntries)
+   {
+      this(delegate, maxEntries, Long.MAX_VALUE, ChronoUnit.MILLIS);
+   }
+
+   /**
+    * Construct a new {@link CachingTokenService}.
+    *
+    * @param delegate The token service that will be used to create and unpack tokens. If
+    *       this service reports token expiration times, cached tokens will also be evicted
+    *       once the expiration time embedded in the token has been reached.
+    * @param maxEntries The maximum number of tokens to retain in the cache.
+    * @param maxAge The maximum amount of time that a token may be retained in the cache.
+    * @param unit The time units of maxAge.
+    */
+   public CachingTokenService(TokenService<PayloadType> delegate, int maxEntries, long maxAge, ChronoUnit unit)
+   {
+      if (maxEntries <= 0)
+         throw new IllegalArgumentException("Cache size must be positive [" + maxEntries + "]");
+      if (maxAge <= 0)
+         throw new IllegalArgumentException("Maximum age must be positive [" + maxAge + "]");
+
+      this.delegate = Objects.requireNonNull(delegate, "No delegate token service supplied");
+      this.maxAgeMillis = toMillis(maxAge, unit);
+      this.cache = new LinkedHashMap<String, CacheEntry<PayloadType>>(16, 0.75f, true)
+      {
+         private static final long serialVersionUID = 1L;
+
+         @Override
+         protected boolean removeEldestEntry(Map.Entry<String, CacheEntry<PayloadType>> eldest)
+         {
+            return size() > maxEntries;
+         }
+      };
+   }
+
+   private static long toMillis(long maxAge, ChronoUnit unit)
+   {
+      if (maxAge == Long.MAX_VALUE)
+         return Long.MAX_VALUE;
+
+      try
+      {
+         return unit.getDuration().multipliedBy(maxAge).toMillis();
+      }
+      catch (ArithmeticException ex)
+      {
+         return Long.MAX_VALUE;
+      }
+   }
+
+   @Override
+   public TokenData<PayloadType> createTokenData(PayloadType payload)
+   {
+      return delegate.createTokenData(payload);
+   }
+
+   @Override
+   public TokenData<PayloadType> renewTokenData(String token, PayloadType payload)
+   {
+      return delegate.renewTokenData(token, payload);
+   }
+
+   @Override
+   public PayloadType unpackToken(String token)
+   {
+      return unpackTokenData(token).getPayload();
+   }
+
+   /**
+    * {@inheritDoc}
+    * <p>
+    * Cached token data is returned if available.
+    */
+   @Override
+   public TokenData<PayloadType> unpackTokenData(String token)
+   {
+      long now = System.currentTimeMillis();
+      CacheEntry<PayloadType> entry;
+      synchronized (cache)
+      {
+         entry = cache.get(token);
+         if (entry != null && entry.expires <= now)
+         {
+            cache.remove(token);
+            entry = null;
+         }
+      }
+
+      if (entry != null && isRevoked(entry.data))
+      {
+         // the delegate reports the revocation
+         invalidate(token);
+         entry = null;
+      }
+
+      if (entry != null)
+      {
+         hits.increment();
+         return entry.data;
+      }
+
+      misses.increment();
+      TokenData<PayloadType> data = delegate.unpackTokenData(token);
+
+      long expires = getEvictionTime(data, now);
+      if (expires > now)
+      {
+         synchronized (cache)
+         {
+            cache.put(token, new CacheEntry<>(data, expires));
+         }
+      }
+
+      return data;
+   }
+
+   @SuppressWarnings("unchecked")
+   private boolean isRevoked(TokenData<PayloadType> data)
+   {
+      if (delegate instanceof ExpiringTokenProvider)
+         return ((ExpiringTokenProvider<PayloadType>)delegate).isRevoked(data);
+      if (delegate instanceof AdaptingTokenService)
+         return ((AdaptingTokenService<PayloadType, ?>)delegate).isRevoked(data);
+
+      return false;
+   }
+
+   private long getEvictionTime(TokenData<PayloadType> data, long now)
+   {
+      long expires = (maxAgeMillis > Long.MAX_VALUE - now) ? Long.MAX_VALUE : now + maxAgeMillis;
+      if (data.getExpiration() != null)
+         expires = Math.min(expires, data.getExpiration().toInstant().toEpochMilli());
+
+      return expires;
+   }
+
+   @Override
+   public Class<PayloadType> getPayloadType()
+   {
+      return delegate.getPayloadType();
+   }
+
+   /**
+    * Removes the supplied token from the cache, if present. Subsequent attempts to unpack
+    * this token will be processed by the delegate token service.
+    *
+    * @param token The token to remove.
+    */
+   public void invalidate(String token)
+   {
+      synchronized (cache)
+      {
+         cache.remove(token);
+      }
+   }
+
+   /**
+    * Removes all tokens from the cache.
+    */
+   public void invalidateAll()
+   {
+      synchronized (cache)
+      {
+         cache.clear();
+      }
+   }
+
+   /**
+    * @return The number of tokens currently held in the cache. This may include tokens that
+    *       have expired but have not yet been evicted.
+    */
+   public int size()
+   {
+      synchronized (cache)
+      {
+         return cache.size();
+      }
+   }
+
+   /**
+    * @return The number of calls to {@link #unpackToken(String)} that were answered from
+    *       the cache.
+    */
+   public long getHitCount()
+   {
+      return hits.sum();
+   }
+
+   /**
+    * @return The number of calls to {@link #unpackToken(String)} that required the token to
+    *       be unpacked by the delegate token service.
+    */
+   public long getMissCount()
+   {
+      return misses.sum();
+   }
+
+   private static class CacheEntry<PT>
+   {
+      private final TokenData<PT> data;
+      private final long expires;
+
+      private CacheEntry(TokenData<PT> data, long expires)
+      {
+         this.data = data;
+         this.expires = expires;
+      }
+   }
+}
@@ -0,0 +1,175 @@
+package edu.tamu.tcat.account.db;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Objects;
+
+import edu.tamu.tcat.crypto.SecureToken;
+import edu.tamu.tcat.crypto.TokenException;
+
+/**
+ * The compact (version 3) token format. The token content begins with a single version
+ * byte and the expiration time as an unsigned LEB128 varint of whole seconds since
+ * {@link #EPOCH_SECOND}, which occupies 4 bytes for several decades, rather than the 12
+ * byte header of the original format. The content is encrypted using a single
+ * {@link SecureToken} and the result is re-encoded as unpadded URL-safe Base64, so that
+ * tokens may be used in headers, cookies and URLs without further escaping. The Base64 variant
+ * of the secure token is declared on construction, and restored before a token is decrypted.
+ * <p>
+ * Only the canonical encoding of a token is accepted, so that each token has a single
+ * spelling. Version 1 tokens created with the same {@link SecureToken} continue to be accepted.
+ * The content of a version 1 token begins with a zero byte (the high byte of its 4-byte
+ * version), which distinguishes it from the compact layout.
+ */
+class CompactTokenFormat extends TokenFormat
+{
+   static final int VERSION = 3;
+
+   /** 2020-01-01T00:00:00Z; compact expiration times are stored relative to this instant. */
+   static final long EPOCH_SECOND = 1_577_836_800L;
+
+   /** The maximum length of an unsigned LEB128 encoded 64-bit value. */
+   private static final int MAX_VARINT_LENGTH = 10;
+
+   private final SecureToken secureToken;
+
+   /** {@code true} if the {@link SecureToken} uses the standard rather than the URL-safe alphabet. */
+   private final boolean standardAlphabet;
+
+   /** {@code true} if the {@link SecureToken} pads its output. */
+   private final boolean padded;
+
+   /**
+    * @param secureToken The token used to encrypt the content.
+    * @param encoding The Base64 variant written and read by the secure token.
+    */
+   CompactTokenFormat(SecureToken secureToken, CompactTokenProvider.SecureTokenEncoding encoding)
+   {
+      this.secureToken = Objects.requireNonNull(secureToken, "No secure token supplied");
+      Objects.requireNonNull(encoding, "No secure token encoding supplied");
+      this.standardAlphabet = encoding.standardAlphabet;
+      this.padded = encoding.padded;
+   }
+
+   @Override
+   int getHeaderLength()
+   {
+      return 1 + MAX_VARINT_LENGTH;
+   }
+
+   @Override
+   Instant getEffectiveExpiry(Instant expires)
+   {
+      return expires.truncatedTo(ChronoUnit.SECONDS);
+   }
+
+   @Override
+   void writeHeader(ByteBuffer buffer, Instant expires)
+   {
+      long seconds = expires.getEpochSecond() - EPOCH_SECOND;
+      if (seconds < 0)
+         throw new IllegalArgumentException("Expiration time precedes the compact token epoch [" + expires + "]");
+
+      buffer.put((byte)VERSION);
+      while ((seconds & ~0x7FL) != 0)
+      {
+         buffer.put((byte)((seconds & 0x7F) | 0x80));
+         seconds >>>= 7;
+      }
+      buffer.put((byte)seconds);
+   }
+
+   @Override
+   long readHeader(ByteBuffer buffer)
+   {
+      if (!buffer.hasRemaining())
+         throw new IllegalArgumentException("The supplied token is truncated.");
+
+      if (buffer.get(buffer.position()) != VERSION)
+      {
+         readVersion(buffer, SecureTokenFormat.VERSION);
+         return readExpiry(buffer);
+      }
+
+      buffer.get();
+      long seconds = 0;
+      for (int shift = 0; ; shift += 7)
+      {
+         if (!buffer.hasRemaining())
+            throw new IllegalArgumentException("The supplied token is truncated.");
+         if (shift >= 7 * MAX_VARINT_LENGTH)
+            throw new IllegalArgumentException("The supplied token is malformed.");
+
+         byte b = buffer.get();
+         seconds |= (long)(b & 0x7F) << shift;
+         if (b >= 0)
+            break;
+      }
+
+      // saturate rather than overflow for values beyond the range of Instant
+      if (seconds < 0 || seconds > Long.MAX_VALUE / 1000 - EPOCH_SECOND)
+         return Long.MAX_VALUE;
+
+      return (EPOCH_SECOND + seconds) * 1000;
+   }
+
+   @Override
+   String seal(ByteBuffer content, Instant expires) throws TokenException
+   {
+      String token = secureToken.getToken(content);
+      if (!standardAlphabet && !padded)
+         return token;
+
+      StringBuilder sb = new StringBuilder(token.length());
+      for (int i = 0; i < token.length(); i++)
+      {
+         char c = token.charAt(i);
+         if (c == '=')
+            break;
+
+         sb.append(c == '+' ? '-' : c == '/' ? '_' : c);
+      }
+
+      return sb.toString();
+   }
+
+   @Override
+   ByteBuffer open(String token) throws TokenException
+   {
+      if (!standardAlphabet && !padded)
+      {
+         requireCanonicalBase64(token, 0, token.length());
+         return secureToken.getContentFromToken(token);
+      }
+
+      // restores the encoding of the secure token; this leaves tokens that are already in
+      // that encoding, such as version 1 tokens, unchanged
+      int length = token.length();
+      while (length > 0 && token.charAt(length - 1) == '=')
+         length--;
+
+      // padding is accepted only as the secure token writes it, for tokens in its encoding
+      requireCanonicalBase64(token, 0, length);
+      if (length < token.length() && !(padded && token.length() % 4 == 0 && token.length() - length < 3))
+         throw new IllegalArgumentException("The supplied token is malformed.");
+
+      StringBuilder sb = new StringBuilder(length + 3);
+      for (int i = 0; i < length; i++)
+      {
+         char c = token.charAt(i);
+         if (standardAlphabet)
+            c = (c == '-') ? '+' : (c == '_') ? '/' : c;
+
+         sb.append(c);
+      }
+
+      if (padded)
+      {
+         while (sb.length() % 4 != 0)
+            sb.append('=');
+      }
+
+      return secureToken.getContentFromToken(sb.toString());
+   }
+}
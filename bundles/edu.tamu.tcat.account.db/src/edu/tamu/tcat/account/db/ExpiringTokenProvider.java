@@ -1,13 +1,24 @@
 package edu.tamu.tcat.account.db;
 
-import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiPredicate;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 import edu.tamu.tcat.account.token.TokenService;
 import edu.tamu.tcat.crypto.SecureToken;
@@ -21,16 +32,23 @@ import edu.tamu.tcat.crypto.TokenException;
  */
 public class ExpiringTokenProvider<Payload> implements TokenService<Payload>
 {
-   private final SecureToken secureToken;
+   private final TokenFormat format;
    private final Class<Payload> type;
-   private final Function<Payload, byte[]> marshaller;
-   private final Function<byte[], Payload> unmarshaller;
+   private final TokenPayloadCodec<Payload> codec;
    private final long duration;
    private final ChronoUnit unit;
 
    //TODO: make this configurable
    private ZoneId ZONE = ZoneId.of("UTC");
 
+   private volatile Executor batchExecutor = ForkJoinPool.commonPool();
+   private volatile TokenRevocationList revocations;
+   private volatile double renewalThreshold = 0;
+   private volatile BiPredicate<? super Payload, ? super Payload> renewalMatch = Objects::equals;
+
+   /** Per-thread encoding buffers, or {@code null} if buffers are not reused across calls. */
+   private volatile ThreadLocal<ByteBuffer[]> threadBuffers;
+
    /**
     * Constructs a new {@link ExpiringTokenProvider}.
     *
@@ -43,20 +61,95 @@ public class ExpiringTokenProvider<Payload> implements TokenService<Payload>
     * @param duration The amount of type the supplied token should be valid for.
     * @param unit The time units of duration.
     * @param type A Java class indicating the payload type.
+    * @see TokenPayloadCodecs#fromFunctions(Function, Function)
     */
    public ExpiringTokenProvider(SecureToken secureToken,
                                 Function<Payload, byte[]> marshaller,
                                 Function<byte[], Payload> unmarshaller,
                                 long duration, ChronoUnit unit, Class<Payload> type)
    {
-      this.secureToken = secureToken;
-      this.marshaller = marshaller;
-      this.unmarshaller = unmarshaller;
+      this(secureToken, TokenPayloadCodecs.fromFunctions(marshaller, unmarshaller), duration, unit, type);
+   }
+
+   /**
+    * Constructs a new {@link ExpiringTokenProvider}.
+    *
+    * @param secureToken The token to be used to encrypt the data.
+    * @param codec The codec used to write payload data into, and read it from, the
+    *       token content.
+    * @param duration The amount of type the supplied token should be valid for.
+    * @param unit The time units of duration.
+    * @param type A Java class indicating the payload type.
+    * @since 2.1
+    */
+   public ExpiringTokenProvider(SecureToken secureToken,
+                                TokenPayloadCodec<Payload> codec,
+                                long duration, ChronoUnit unit, Class<Payload> type)
+   {
+      this(new SecureTokenFormat(secureToken), codec, duration, unit, type);
+   }
+
+   /**
+    * Constructs a new {@link ExpiringTokenProvider} that supports key rotation. Tokens are
+    * encrypted using the active key of the supplied key ring and identify the key used, so
+    * that they may be unpacked for as long as that key remains in the ring. Tokens created
+    * by a provider constructed with a single {@link SecureToken} are unpacked using the
+    * legacy key of the key ring.
+    *
+    * @param keyRing The keys to be used to encrypt and decrypt the data.
+    * @param codec The codec used to write payload data into, and read it from, the
+    *       token content.
+    * @param duration The amount of type the supplied token should be valid for.
+    * @param unit The time units of duration.
+    * @param type A Java class indicating the payload type.
+    * @since 2.1
+    */
+   public ExpiringTokenProvider(TokenKeyRing keyRing,
+                                TokenPayloadCodec<Payload> codec,
+                                long duration, ChronoUnit unit, Class<Payload> type)
+   {
+      this(new KeyRingTokenFormat(keyRing), codec, duration, unit, type);
+   }
+
+   ExpiringTokenProvider(TokenFormat format,
+                         TokenPayloadCodec<Payload> codec,
+                         long duration, ChronoUnit unit, Class<Payload> type)
+   {
+      this.format = format;
+      this.codec = Objects.requireNonNull(codec, "No payload codec supplied");
       this.duration = duration;
       this.unit = unit;
       this.type = type;
    }
 
+   /**
+    * Creates a provider that issues the same tokens as this provider, prefixed with the
+    * expiration time of the token in plain text and an HMAC-SHA256 tag. The returned
+    * provider checks the prefix before decrypting a token, so that expired or tampered
+    * tokens are rejected without the cost of decryption.
+    * <p>
+    * Tokens created by this provider (that is, without a prefix) continue to be accepted
+    * by the returned provider, subject to the usual expiration check after decryption.
+    *
+    * @param macKey The secret key used to authenticate the prefix. Must be at least 128
+    *       bits, and should be distinct from the key used to encrypt tokens.
+    * @return A new provider that issues tokens with an authenticated expiration prefix.
+    * @since 2.1
+    */
+   public ExpiringTokenProvider<Payload> withAuthenticatedExpiry(byte[] macKey)
+   {
+      ExpiringTokenProvider<Payload> provider = new ExpiringTokenProvider<>(
+            new ExpiryPrefixTokenFormat(format, macKey), codec, duration, unit, type);
+      provider.batchExecutor = batchExecutor;
+      provider.revocations = revocations;
+      provider.renewalThreshold = renewalThreshold;
+      provider.renewalMatch = renewalMatch;
+      if (threadBuffers != null)
+         // buffers are not shared with this provider, so that each may be disposed separately
+         provider.threadBuffers = new ThreadLocal<>();
+      return provider;
+   }
+
    @Override
    public TokenService.TokenData<Payload> createTokenData(Payload payload)
    {
@@ -68,18 +161,201 @@ public class ExpiringTokenProvider<Payload> implements TokenService<Payload>
       return Instant.now().plus(duration, unit);
    }
 
+   /**
+    * Sets the executor used to process the items of {@link #createTokens(List)} and
+    * {@link #unpackTokens(List)} in parallel. Defaults to the common {@link ForkJoinPool}.
+    *
+    * @param executor The executor to use for batch operations.
+    * @since 2.1
+    */
+   public void setBatchExecutor(Executor executor)
+   {
+      this.batchExecutor = Objects.requireNonNull(executor, "No batch executor supplied");
+   }
+
+   /**
+    * Sets the list of revoked tokens. Tokens in the list will not be unpacked.
+    *
+    * @param revocations The revocation list to consult, or {@code null} to accept all
+    *       unexpired tokens.
+    * @since 2.1
+    */
+   public void setRevocationList(TokenRevocationList revocations)
+   {
+      this.revocations = revocations;
+   }
+
+   /**
+    * Revokes the supplied token, so that it will no longer be unpacked by this provider.
+    * Tokens that cannot be unpacked, including those that have already expired, are ignored.
+    *
+    * @param token The token to revoke.
+    * @throws IllegalStateException If no revocation list has been set.
+    * @since 2.1
+    */
+   public void revokeToken(String token)
+   {
+      TokenRevocationList list = revocations;
+      if (list == null)
+         throw new IllegalStateException("No revocation list has been set");
+
+      ByteBuffer content;
+      long expires;
+      try
+      {
+         content = open(token);
+         expires = format.readHeader(content.duplicate());
+      }
+      catch (IllegalArgumentException ex)
+      {
+         return;
+      }
+
+      list.revoke(content, Instant.ofEpochMilli(expires));
+   }
+
+   /**
+    * Enables sliding expiration for {@link #renewTokenData(String, Object)}. A presented
+    * token is renewed only once the supplied fraction of its lifetime has elapsed; until
+    * then the presented token and its expiration are returned unchanged. For example, with a
+    * threshold of {@code 0.5} and a lifetime of 24 hours, clients receive a new token at
+    * most once every 12 hours.
+    * <p>
+    * The presented token is only returned if its payload is equal to the payload supplied for
+    * renewal. Providers of {@link AccountClaims} created by
+    * {@link AccountClaimsTokenProviderFactory} instead compare the claims without their issue
+    * times (see {@link AccountClaims#hasSameClaims(AccountClaims)}), since the claims supplied
+    * for renewal are normally taken afresh.
+    * <p>
+    * Defaults to {@code 0}, in which case a new token is always created.
+    *
+    * @param fraction The fraction of the token lifetime, between {@code 0} and {@code 1},
+    *       after which a presented token is renewed.
+    * @since 2.1
+    */
+   public void setRenewalThreshold(double fraction)
+   {
+      if (!(fraction >= 0 && fraction <= 1))
+         throw new IllegalArgumentException("Renewal threshold must be between 0 and 1 [" + fraction + "]");
+
+      this.renewalThreshold = fraction;
+   }
+
+   /**
+    * {@inheritDoc}
+    * <p>
+    * The presented token is returned if it is valid, contains a payload equal to the
+    * supplied payload and less than the configured renewal threshold of its lifetime has
+    * elapsed.
+    *
+    * @see #setRenewalThreshold(double)
+    */
+   @Override
+   public TokenService.TokenData<Payload> renewTokenData(String token, Payload payload)
+   {
+      double threshold = renewalThreshold;
+      if (threshold > 0 && token != null)
+      {
+         try
+         {
+            TokenService.TokenData<Payload> current = unpackTokenData(token);
+            long lifetime = unit.getDuration().multipliedBy(duration).toMillis();
+            long remaining = current.getExpiration().toInstant().toEpochMilli() - System.currentTimeMillis();
+            if (remaining > lifetime * (1 - threshold) && renewalMatch.test(current.getPayload(), payload))
+               return current;
+         }
+         catch (IllegalArgumentException ex)
+         {
+            // not a current token; issue a new one
+         }
+      }
+
+      return createTokenData(payload);
+   }
+
+   /**
+    * Enables or disables reuse of encoding buffers across calls made by the same thread.
+    * When enabled, each thread that creates tokens retains a small buffer for assembling
+    * token content, avoiding an allocation per token on high-throughput services. Batch
+    * operations reuse buffers regardless of this setting.
+    * <p>
+    * Retained buffers are released by disabling reuse or by calling {@link #dispose()}.
+    *
+    * @param enabled Whether to retain per-thread buffers.
+    * @since 2.1
+    */
+   public void setThreadBufferReuse(boolean enabled)
+   {
+      if (!enabled)
+         threadBuffers = null;
+      else if (threadBuffers == null)
+         // values hold only JDK types so that stale entries do not retain this bundle's classes
+         threadBuffers = new ThreadLocal<>();
+   }
+
+   /**
+    * @return Whether buffers are reused across calls made by the same thread.
+    * @see #setThreadBufferReuse(boolean)
+    * @since 2.1
+    */
+   public boolean isThreadBufferReuse()
+   {
+      return threadBuffers != null;
+   }
+
+   /**
+    * Releases resources retained by this provider, including any per-thread buffers. This
+    * should be called when the component that owns the provider is deactivated. The provider
+    * remains usable, but will no longer reuse buffers across calls.
+    * <p>
+    * The MACs of token formats and the encoders of standard codecs are pooled by the format or
+    * codec rather than held per thread, so they are reclaimed with the provider.
+    *
+    * @since 2.1
+    */
+   public void dispose()
+   {
+      // dropping the only reference to the ThreadLocal allows each thread's entry to be
+      // reclaimed without touching the threads themselves
+      threadBuffers = null;
+   }
+
    public TokenService.TokenData<Payload> createTokenData(Payload payload, Instant expires)
    {
-      byte[] bytes = marshaller.apply(payload);
-      ByteBuffer buffer = ByteBuffer.allocate(4 + 8 + bytes.length);
+      ThreadLocal<ByteBuffer[]> local = threadBuffers;
+      if (local == null)
+         return createTokenData(payload, expires, new EncodeBuffer(null));
+
+      ByteBuffer[] slot = local.get();
+      if (slot == null)
+      {
+         slot = new ByteBuffer[1];
+         local.set(slot);
+      }
 
-      buffer.putInt(1);
-      buffer.putLong(expires.toEpochMilli());
-      buffer.put(bytes);
-      buffer.flip();
+      // take the buffer out of the slot while in use, in case a codec re-enters this provider
+      EncodeBuffer scratch = new EncodeBuffer(slot[0]);
+      slot[0] = null;
       try
       {
-         String stok = secureToken.getToken(buffer);
+         return createTokenData(payload, expires, scratch);
+      }
+      finally
+      {
+         slot[0] = scratch.release();
+      }
+   }
+
+   private TokenService.TokenData<Payload> createTokenData(Payload payload, Instant requested, EncodeBuffer scratch)
+   {
+      Instant expires = format.getEffectiveExpiry(requested);
+      format.writeHeader(scratch.start(format.getHeaderLength()), expires);
+      codec.encode(payload, scratch);
+
+      ByteBuffer buffer = scratch.finish();
+      try
+      {
+         String stok = format.seal(buffer, expires);
          ZonedDateTime zdt = expires.atZone(ZONE);
          return new AccountTokenData<>(stok, payload, zdt);
       }
@@ -92,27 +368,161 @@ public class ExpiringTokenProvider<Payload> implements TokenService<Payload>
    @Override
    public Payload unpackToken(String token)
    {
-      ByteBuffer buffer;
+      return unpackTokenData(token).getPayload();
+   }
+
+   /**
+    * Process the (encrypted) token string from the client, returning both the payload and
+    * the expiration time embedded in the token.
+    *
+    * @param token The (encrypted) token to read.
+    * @return The token data, including payload and expiration, contained in the token.
+    * @throws IllegalArgumentException If the token cannot be unpacked or has expired.
+    * @see #unpackToken(String)
+    */
+   @Override
+   public TokenService.TokenData<Payload> unpackTokenData(String token)
+   {
+      ByteBuffer buffer = open(token);
+      ByteBuffer content = buffer.asReadOnlyBuffer();
+
+      // identified by content, which does not depend on how the token string is spelled
+      TokenRevocationList list = revocations;
+      if (list != null && list.isRevoked(content))
+         throw new IllegalArgumentException("The supplied token has been revoked.");
+
+      long epochMilli = format.readHeader(buffer);
+//      ZonedDateTime expires = ZonedDateTime.from(Instant.ofEpochMilli(epochMilli));
+//      Instant.now().isAfter(Instant.ofEpochMilli(epochMilli))
+      if (Instant.now().isAfter(Instant.ofEpochMilli(epochMilli)))
+         throw new IllegalArgumentException("The supplied token has expired.");
+
+      Payload payload = codec.decode(buffer);
+      ZonedDateTime zdt = Instant.ofEpochMilli(epochMilli).atZone(ZONE);
+      return new AccountTokenData<>(token, payload, zdt, content);
+   }
+
+   /**
+    * Checks whether the token from which the supplied data was unpacked has since been
+    * revoked. Used by {@link CachingTokenService}, which otherwise returns cached data
+    * without consulting this provider.
+    *
+    * @param data Token data returned by {@link #unpackTokenData(String)}.
+    * @return {@code true} if the token has been revoked, or {@code false} if it has not or
+    *       the data was not unpacked by an {@link ExpiringTokenProvider}.
+    */
+   boolean isRevoked(TokenService.TokenData<?> data)
+   {
+      TokenRevocationList list = revocations;
+      if (list == null || !(data instanceof AccountTokenData))
+         return false;
+
+      ByteBuffer content = ((AccountTokenData<?>)data).content;
+      return content != null && list.isRevoked(content);
+   }
+
+   /**
+    * @return The authenticated content of the token, positioned at the start of the header.
+    */
+   private ByteBuffer open(String token)
+   {
       try
       {
-         buffer = secureToken.getContentFromToken(token);
+         return format.open(token);
       }
       catch (TokenException ex)
       {
          throw new IllegalArgumentException("Failed to parse the supplied token.", ex);
       }
+   }
 
-      @SuppressWarnings("unused")
-      int one = buffer.getInt();
-      long epochMilli = buffer.getLong();
-//      ZonedDateTime expires = ZonedDateTime.from(Instant.ofEpochMilli(epochMilli));
-//      Instant.now().isAfter(Instant.ofEpochMilli(epochMilli))
-      if (Instant.now().isAfter(Instant.ofEpochMilli(epochMilli)))
-         throw new IllegalArgumentException("The supplied token has expired.");
+   /**
+    * {@inheritDoc}
+    * <p>
+    * Tokens are created in parallel using the configured batch executor. All tokens in the
+    * batch share the same expiration time.
+    *
+    * @see #setBatchExecutor(Executor)
+    */
+   @Override
+   public List<BatchResult<TokenData<Payload>>> createTokens(List<Payload> payloads)
+   {
+      Instant expires = fromNow(duration, unit);
+      return processBatch(payloads, () -> {
+         // each worker reuses a single encoding buffer for all of the items it processes
+         EncodeBuffer scratch = new EncodeBuffer(null);
+         return payload -> createTokenData(payload, expires, scratch);
+      });
+   }
 
-      byte[] data = new byte[buffer.remaining()];
-      buffer.get(data);
-      return unmarshaller.apply(data);
+   /**
+    * {@inheritDoc}
+    * <p>
+    * Tokens are decrypted in parallel using the configured batch executor.
+    *
+    * @see #setBatchExecutor(Executor)
+    */
+   @Override
+   public List<BatchResult<Payload>> unpackTokens(List<String> tokens)
+   {
+      return processBatch(tokens, () -> this::unpackToken);
+   }
+
+   /**
+    * Splits the supplied items into contiguous chunks, one per available worker, and
+    * processes each chunk on the batch executor.
+    *
+    * @param items The items to process.
+    * @param workers Supplies the function used to process the items of a single chunk.
+    *       Functions are not shared between chunks and so may hold reusable state.
+    * @return The result for each item, in the same order as the supplied list.
+    */
+   private <In, Out> List<BatchResult<Out>> processBatch(List<In> items, Supplier<Function<In, Out>> workers)
+   {
+      List<In> input = (items instanceof RandomAccess) ? items : new ArrayList<>(items);
+      int size = input.size();
+
+      @SuppressWarnings("unchecked")
+      BatchResult<Out>[] results = new BatchResult[size];
+
+      Executor executor = batchExecutor;
+      int parallelism = (executor instanceof ForkJoinPool)
+            ? ((ForkJoinPool)executor).getParallelism()
+            : Runtime.getRuntime().availableProcessors();
+
+      int chunkSize = Math.max(1, (size + parallelism - 1) / parallelism);
+      if (chunkSize >= size)
+      {
+         // not worth the hand-off for a single chunk
+         processChunk(input, 0, size, workers.get(), results);
+         return Arrays.asList(results);
+      }
+
+      List<CompletableFuture<Void>> tasks = new ArrayList<>();
+      for (int from = 0; from < size; from += chunkSize)
+      {
+         int start = from;
+         int end = Math.min(size, from + chunkSize);
+         tasks.add(CompletableFuture.runAsync(() -> processChunk(input, start, end, workers.get(), results), executor));
+      }
+
+      CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[tasks.size()])).join();
+      return Arrays.asList(results);
+   }
+
+   private static <In, Out> void processChunk(List<In> items, int start, int end, Function<In, Out> worker, BatchResult<Out>[] results)
+   {
+      for (int i = start; i < end; i++)
+      {
+         try
+         {
+            results[i] = BatchResult.success(worker.apply(items.get(i)));
+         }
+         catch (RuntimeException ex)
+         {
+            results[i] = BatchResult.failure(ex);
+         }
+      }
    }
 
    @Override
@@ -121,88 +531,238 @@ public class ExpiringTokenProvider<Payload> implements TokenService<Payload>
       return type;
    }
 
-   public static class UuidTokenProviderFactory
+   /**
+    * A growable buffer used to assemble token content prior to encryption. Payload codecs
+    * write directly into this buffer. Batch workers hold a single instance so that the
+    * buffer is reused across the items they process; otherwise the underlying buffer may be
+    * retained per thread.
+    */
+   private static class EncodeBuffer implements TokenPayloadCodec.Output
    {
-      private static byte[] toByteArray(UUID value)
+      /** Initial buffer size; sufficient for the header and most id-based payloads. */
+      private static final int INITIAL_CAPACITY = 64;
+
+      /** The largest buffer that will be retained for reuse by a thread. */
+      private static final int MAX_RETAINED_CAPACITY = 8 * 1024;
+
+      private ByteBuffer buffer;
+
+      private EncodeBuffer(ByteBuffer buffer)
+      {
+         this.buffer = buffer;
+      }
+
+      private ByteBuffer start(int headerLength)
       {
-         ByteBuffer buffer = ByteBuffer.allocate(16);
-         buffer.putLong(value.getMostSignificantBits());
-         buffer.putLong(value.getLeastSignificantBits());
-         return buffer.array();
+         if (buffer == null || buffer.capacity() < headerLength)
+            buffer = ByteBuffer.allocate(Math.max(INITIAL_CAPACITY, headerLength));
+
+         buffer.clear();
+         return buffer;
       }
 
-      private static UUID toUuid(byte[] bytes)
+      @Override
+      public ByteBuffer reserve(int length)
       {
-         ByteBuffer buffer = ByteBuffer.wrap(bytes);
-         return new UUID(buffer.getLong(), buffer.getLong());
+         if (buffer.remaining() < length)
+         {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + length));
+            buffer.flip();
+            larger.put(buffer);
+            buffer = larger;
+         }
+
+         return buffer;
       }
 
+      private ByteBuffer finish()
+      {
+         buffer.flip();
+         return buffer;
+      }
+
+      /**
+       * @return The buffer, if it is small enough to be retained for reuse.
+       */
+      private ByteBuffer release()
+      {
+         return (buffer != null && buffer.capacity() <= MAX_RETAINED_CAPACITY) ? buffer : null;
+      }
+   }
+
+   public static class UuidTokenProviderFactory
+   {
       public static TokenService<UUID> makeProvider(SecureToken token, long duration, ChronoUnit unit)
       {
-         return new ExpiringTokenProvider<>(token,
-               UuidTokenProviderFactory::toByteArray,
-               UuidTokenProviderFactory::toUuid,
-               duration, unit, UUID.class);
+         return new ExpiringTokenProvider<>(token, TokenPayloadCodecs.uuid(), duration, unit, UUID.class);
+      }
+
+      /**
+       * @since 2.1
+       */
+      public static TokenService<UUID> makeProvider(TokenKeyRing keyRing, long duration, ChronoUnit unit)
+      {
+         return new ExpiringTokenProvider<>(keyRing, TokenPayloadCodecs.uuid(), duration, unit, UUID.class);
+      }
+
+      /**
+       * Creates a provider of signed, unencrypted tokens.
+       *
+       * @see SignedTokenProvider
+       * @since 2.1
+       */
+      public static TokenService<UUID> makeSignedProvider(byte[] macKey, long duration, ChronoUnit unit)
+      {
+         return new SignedTokenProvider<>(macKey, TokenPayloadCodecs.uuid(), duration, unit, UUID.class);
+      }
+
+      /**
+       * Creates a provider of encrypted tokens in a compact, URL-safe encoding. Tokens
+       * created by {@link #makeProvider(SecureToken, long, ChronoUnit)} with the same
+       * secure token are also accepted.
+       *
+       * @param encoding The Base64 variant in which the secure token encodes its output.
+       * @see CompactTokenProvider
+       * @since 2.1
+       */
+      public static TokenService<UUID> makeCompactProvider(SecureToken token, CompactTokenProvider.SecureTokenEncoding encoding,
+            long duration, ChronoUnit unit)
+      {
+         return new CompactTokenProvider<>(token, encoding, TokenPayloadCodecs.uuid(), duration, unit, UUID.class);
       }
    }
 
    public static class LongTokenProviderFactory
    {
-      private static byte[] toByteArray(long value)
+      public static TokenService<Long> makeProvider(SecureToken token, long duration, ChronoUnit unit)
       {
-         ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
-         buffer.putLong(value);
-         return buffer.array();
+         return new ExpiringTokenProvider<>(token, TokenPayloadCodecs.longValue(), duration, unit, Long.class);
       }
 
-      private static long toLong(byte[] bytes)
+      /**
+       * @since 2.1
+       */
+      public static TokenService<Long> makeProvider(TokenKeyRing keyRing, long duration, ChronoUnit unit)
       {
-         ByteBuffer buffer = ByteBuffer.wrap(bytes);
-         return buffer.getLong();
+         return new ExpiringTokenProvider<>(keyRing, TokenPayloadCodecs.longValue(), duration, unit, Long.class);
       }
 
-      public static TokenService<Long> makeProvider(SecureToken token, long duration, ChronoUnit unit)
+      /**
+       * Creates a provider of signed, unencrypted tokens.
+       *
+       * @see SignedTokenProvider
+       * @since 2.1
+       */
+      public static TokenService<Long> makeSignedProvider(byte[] macKey, long duration, ChronoUnit unit)
       {
-         return new ExpiringTokenProvider<>(token,
-               LongTokenProviderFactory::toByteArray,
-               LongTokenProviderFactory::toLong,
-               duration, unit, Long.class);
+         return new SignedTokenProvider<>(macKey, TokenPayloadCodecs.longValue(), duration, unit, Long.class);
+      }
+
+      /**
+       * Creates a provider of encrypted tokens in a compact, URL-safe encoding. Tokens
+       * created by {@link #makeProvider(SecureToken, long, ChronoUnit)} with the same
+       * secure token are also accepted.
+       *
+       * @param encoding The Base64 variant in which the secure token encodes its output.
+       * @see CompactTokenProvider
+       * @since 2.1
+       */
+      public static TokenService<Long> makeCompactProvider(SecureToken token, CompactTokenProvider.SecureTokenEncoding encoding,
+            long duration, ChronoUnit unit)
+      {
+         return new CompactTokenProvider<>(token, encoding, TokenPayloadCodecs.longValue(), duration, unit, Long.class);
       }
    }
 
    public static class StringTokenProviderFactory
    {
-      private static byte[] toByteArray(String value, String encoding)
+      public static ExpiringTokenProvider<String> makeProvider(SecureToken token, long duration, ChronoUnit unit)
       {
-         try  {
-            return value.getBytes(encoding);
-         } catch (UnsupportedEncodingException e) {
-            throw new IllegalStateException("Invalid encoding: " + encoding, e);
-         }
+         return makeProvider(token, StandardCharsets.UTF_8, duration, unit);
       }
 
-      private static String toString(byte[] bytes, String encoding)
+      public static ExpiringTokenProvider<String> makeProvider(SecureToken token, String encoding, long duration, ChronoUnit unit)
       {
-         try {
-            return new String(bytes, encoding);
-         } catch (UnsupportedEncodingException e) {
+         Charset charset;
+         try
+         {
+            charset = Charset.forName(encoding);
+         }
+         catch (IllegalArgumentException e)
+         {
             throw new IllegalStateException("Invalid encoding: " + encoding, e);
          }
+
+         return makeProvider(token, charset, duration, unit);
       }
 
-      public static ExpiringTokenProvider<String> makeProvider(SecureToken token, long duration, ChronoUnit unit)
+      /**
+       * @since 2.1
+       */
+      public static ExpiringTokenProvider<String> makeProvider(SecureToken token, Charset charset, long duration, ChronoUnit unit)
       {
-         return makeProvider(token, "UTF-8", duration, unit);
+         return new ExpiringTokenProvider<>(token, TokenPayloadCodecs.string(charset), duration, unit, String.class);
       }
 
-      public static ExpiringTokenProvider<String> makeProvider(SecureToken token, String encoding, long duration, ChronoUnit unit)
+      /**
+       * @since 2.1
+       */
+      public static ExpiringTokenProvider<String> makeProvider(TokenKeyRing keyRing, long duration, ChronoUnit unit)
       {
-         return new ExpiringTokenProvider<>(token,
-               value -> toByteArray(value, encoding),
-               bytes -> toString(bytes, encoding),
-               duration, unit, String.class);
+         return new ExpiringTokenProvider<>(keyRing, TokenPayloadCodecs.string(), duration, unit, String.class);
       }
 
+      /**
+       * Creates a provider of signed, unencrypted tokens.
+       *
+       * @see SignedTokenProvider
+       * @since 2.1
+       */
+      public static ExpiringTokenProvider<String> makeSignedProvider(byte[] macKey, long duration, ChronoUnit unit)
+      {
+         return new SignedTokenProvider<>(macKey, TokenPayloadCodecs.string(), duration, unit, String.class);
+      }
+
+      /**
+       * Creates a provider of encrypted tokens in a compact, URL-safe encoding. Tokens
+       * created by {@link #makeProvider(SecureToken, long, ChronoUnit)} with the same
+       * secure token are also accepted.
+       *
+       * @param encoding The Base64 variant in which the secure token encodes its output.
+       * @see CompactTokenProvider
+       * @since 2.1
+       */
+      public static ExpiringTokenProvider<String> makeCompactProvider(SecureToken token, CompactTokenProvider.SecureTokenEncoding encoding,
+            long duration, ChronoUnit unit)
+      {
+         return new CompactTokenProvider<>(token, encoding, TokenPayloadCodecs.string(), duration, unit, String.class);
+      }
+   }
+
+   /**
+    * Creates providers for tokens that carry {@link AccountClaims}, allowing requests to be
+    * authorized without looking up the account.
+    *
+    * @since 2.1
+    */
+   public static class AccountClaimsTokenProviderFactory
+   {
+      public static ExpiringTokenProvider<AccountClaims> makeProvider(SecureToken token, long duration, ChronoUnit unit)
+      {
+         return withClaimsRenewal(new ExpiringTokenProvider<>(token, TokenPayloadCodecs.accountClaims(), duration, unit, AccountClaims.class));
+      }
+
+      public static ExpiringTokenProvider<AccountClaims> makeProvider(TokenKeyRing keyRing, long duration, ChronoUnit unit)
+      {
+         return withClaimsRenewal(new ExpiringTokenProvider<>(keyRing, TokenPayloadCodecs.accountClaims(), duration, unit, AccountClaims.class));
+      }
+
+      private static ExpiringTokenProvider<AccountClaims> withClaimsRenewal(ExpiringTokenProvider<AccountClaims> provider)
+      {
+         // claims supplied for renewal are issued afresh, so never equal to those presented
+         provider.renewalMatch = (presented, renewed) -> presented != null && presented.hasSameClaims(renewed);
+         return provider;
+      }
    }
 
    private static class AccountTokenData<PT> implements TokenService.TokenData<PT>
@@ -210,12 +770,20 @@ public class ExpiringTokenProvider<Payload> implements TokenService<Payload>
       private String token;
       private ZonedDateTime expiration;
       private PT data;
+      /** The authenticated content of an unpacked token, which identifies it for revocation. */
+      private ByteBuffer content;
 
       public AccountTokenData(String t, PT data, ZonedDateTime expiration)
+      {
+         this(t, data, expiration, null);
+      }
+
+      private AccountTokenData(String t, PT data, ZonedDateTime expiration, ByteBuffer content)
       {
          this.token = t;
          this.data = data;
          this.expiration = expiration;
+         this.content = content;
       }
 
       @Override
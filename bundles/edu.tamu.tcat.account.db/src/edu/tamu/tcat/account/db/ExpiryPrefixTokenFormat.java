@@ -0,0 +1,170 @@
+package edu.tamu.tcat.account.db;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Objects;
+
+import javax.crypto.Mac;
+
+import edu.tamu.tcat.crypto.TokenException;
+
+/**
+ * Wraps another {@link TokenFormat}, prefixing its tokens with the expiration time in
+ * plain text and an HMAC-SHA256 tag that binds that expiration time to the rest of the
+ * token. This allows expired and forged tokens to be rejected before the (comparatively
+ * expensive) decryption performed by the wrapped format.
+ * <p>
+ * The prefix consists of the expiration time in epoch milliseconds as 16 hexadecimal
+ * digits, followed by the first 16 bytes of the tag as 22 characters of unpadded URL-safe
+ * Base64 and a {@code '.'}. The tag is computed over the hexadecimal expiration time and
+ * the wrapped token, including the separating {@code '.'}.
+ * <p>
+ * Tokens without a prefix are passed to the wrapped format unchanged, so that tokens
+ * issued before the prefix was enabled continue to be accepted until they expire. The
+ * expiration time within the encrypted content is checked in either case.
+ */
+class ExpiryPrefixTokenFormat extends TokenFormat
+{
+   private static final int EXPIRY_LENGTH = 16;
+   private static final int TAG_BYTES = 16;
+   private static final int TAG_LENGTH = 22;
+   private static final int PREFIX_LENGTH = EXPIRY_LENGTH + TAG_LENGTH + 1;
+   private static final char SEPARATOR = '.';
+   private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+   private final TokenFormat delegate;
+   private final InstancePool<Mac> macs;
+
+   ExpiryPrefixTokenFormat(TokenFormat delegate, byte[] macKey)
+   {
+      this.delegate = Objects.requireNonNull(delegate, "No token format supplied");
+      this.macs = createHmac(macKey);
+   }
+
+   @Override
+   int getHeaderLength()
+   {
+      return delegate.getHeaderLength();
+   }
+
+   @Override
+   Instant getEffectiveExpiry(Instant expires)
+   {
+      return delegate.getEffectiveExpiry(expires);
+   }
+
+   @Override
+   void writeHeader(ByteBuffer buffer, Instant expires)
+   {
+      delegate.writeHeader(buffer, expires);
+   }
+
+   @Override
+   long readHeader(ByteBuffer buffer)
+   {
+      return delegate.readHeader(buffer);
+   }
+
+   @Override
+   String seal(ByteBuffer content, Instant expires) throws TokenException
+   {
+      String inner = delegate.seal(content, expires);
+
+      StringBuilder sb = new StringBuilder(PREFIX_LENGTH + inner.length());
+      long millis = expires.toEpochMilli();
+      for (int shift = 60; shift >= 0; shift -= 4)
+         sb.append(HEX[(int)(millis >>> shift) & 0xF]);
+
+      byte[] tag;
+      Mac mac = macs.acquire();
+      try
+      {
+         for (int i = 0; i < EXPIRY_LENGTH; i++)
+            mac.update((byte)sb.charAt(i));
+         mac.update((byte)SEPARATOR);
+         tag = mac.doFinal(inner.getBytes(StandardCharsets.ISO_8859_1));
+      }
+      finally
+      {
+         mac.reset();
+         macs.release(mac);
+      }
+      sb.append(Base64.getUrlEncoder().withoutPadding().encodeToString(truncate(tag)));
+      sb.append(SEPARATOR);
+      sb.append(inner);
+      return sb.toString();
+   }
+
+   @Override
+   ByteBuffer open(String token) throws TokenException
+   {
+      if (token.length() <= PREFIX_LENGTH || token.charAt(PREFIX_LENGTH - 1) != SEPARATOR)
+         return delegate.open(token);
+
+      // checked before the tag: claiming an earlier expiry only causes rejection
+      long expires = parseExpiry(token);
+      if (System.currentTimeMillis() > expires)
+         throw new IllegalArgumentException("The supplied token has expired.");
+
+      byte[] bytes = token.getBytes(StandardCharsets.ISO_8859_1);
+      byte[] expected;
+      Mac mac = macs.acquire();
+      try
+      {
+         mac.update(bytes, 0, EXPIRY_LENGTH);
+         mac.update(bytes, PREFIX_LENGTH - 1, bytes.length - PREFIX_LENGTH + 1);
+         expected = truncate(mac.doFinal());
+      }
+      finally
+      {
+         mac.reset();
+         macs.release(mac);
+      }
+
+      byte[] actual;
+      try
+      {
+         requireCanonicalBase64(token, EXPIRY_LENGTH, EXPIRY_LENGTH + TAG_LENGTH);
+         actual = Base64.getUrlDecoder().decode(token.substring(EXPIRY_LENGTH, EXPIRY_LENGTH + TAG_LENGTH));
+      }
+      catch (IllegalArgumentException e)
+      {
+         throw new IllegalArgumentException("The supplied token is malformed.", e);
+      }
+
+      if (!MessageDigest.isEqual(expected, actual))
+         throw new IllegalArgumentException("The supplied token failed authentication.");
+
+      return delegate.open(token.substring(PREFIX_LENGTH));
+   }
+
+   private static byte[] truncate(byte[] tag)
+   {
+      byte[] truncated = new byte[TAG_BYTES];
+      System.arraycopy(tag, 0, truncated, 0, TAG_BYTES);
+      return truncated;
+   }
+
+   private static long parseExpiry(String token)
+   {
+      long value = 0;
+      for (int i = 0; i < EXPIRY_LENGTH; i++)
+      {
+         char c = token.charAt(i);
+         int digit;
+         if (c >= '0' && c <= '9')
+            digit = c - '0';
+         else if (c >= 'a' && c <= 'f')
+            digit = c - 'a' + 10;
+         else
+            throw new IllegalArgumentException("The supplied token is malformed.");
+
+         value = (value << 4) | digit;
+      }
+
+      return value;
+   }
+}
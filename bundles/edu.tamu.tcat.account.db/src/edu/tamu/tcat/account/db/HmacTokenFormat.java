@@ -0,0 +1,120 @@
+package edu.tamu.tcat.account.db;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.Base64;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+
+/**
+ * An integrity-only token format. The token content uses the same layout as the original
+ * format, but rather than being encrypted it is followed by an HMAC-SHA256 tag computed over
+ * the content, and the result is encoded as unpadded URL-safe Base64. The payload of these
+ * tokens can be read by anyone holding the token but cannot be modified without the key.
+ * Only the canonical encoding of the signed content is accepted.
+ */
+class HmacTokenFormat extends TokenFormat
+{
+   static final int VERSION = 1;
+
+   private static final int TAG_LENGTH = 32;
+
+   private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+   private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+   private final InstancePool<Mac> macs;
+
+   HmacTokenFormat(byte[] macKey)
+   {
+      this.macs = createHmac(macKey);
+   }
+
+   @Override
+   int getHeaderLength()
+   {
+      return 4 + 8;
+   }
+
+   @Override
+   void writeHeader(ByteBuffer buffer, Instant expires)
+   {
+      buffer.putInt(VERSION);
+      buffer.putLong(expires.toEpochMilli());
+   }
+
+   @Override
+   long readHeader(ByteBuffer buffer)
+   {
+      readVersion(buffer, VERSION);
+      return readExpiry(buffer);
+   }
+
+   @Override
+   String seal(ByteBuffer content, Instant expires)
+   {
+      int length = content.remaining();
+      byte[] signed = new byte[length + TAG_LENGTH];
+      content.get(signed, 0, length);
+
+      Mac mac = macs.acquire();
+      try
+      {
+         mac.update(signed, 0, length);
+         mac.doFinal(signed, length);
+      }
+      catch (ShortBufferException e)
+      {
+         throw new IllegalStateException("Could not compute token signature", e);
+      }
+      finally
+      {
+         mac.reset();
+         macs.release(mac);
+      }
+
+      return ENCODER.encodeToString(signed);
+   }
+
+   @Override
+   ByteBuffer open(String token)
+   {
+      requireCanonicalBase64(token, 0, token.length());
+
+      byte[] signed;
+      try
+      {
+         signed = DECODER.decode(token);
+      }
+      catch (IllegalArgumentException e)
+      {
+         throw new IllegalArgumentException("The supplied token is malformed.", e);
+      }
+
+      int length = signed.length - TAG_LENGTH;
+      if (length < 0)
+         throw new IllegalArgumentException("The supplied token is truncated.");
+
+      byte[] expected;
+      Mac mac = macs.acquire();
+      try
+      {
+         mac.update(signed, 0, length);
+         expected = mac.doFinal();
+      }
+      finally
+      {
+         mac.reset();
+         macs.release(mac);
+      }
+
+      // constant-time comparison of the trailing tag
+      byte[] actual = new byte[TAG_LENGTH];
+      System.arraycopy(signed, length, actual, 0, TAG_LENGTH);
+      if (!MessageDigest.isEqual(expected, actual))
+         throw new IllegalArgumentException("The supplied token failed authentication.");
+
+      return ByteBuffer.wrap(signed, 0, length).slice();
+   }
+}
@@ -0,0 +1,50 @@
+package edu.tamu.tcat.account.db;
+
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Supplier;
+
+/**
+ * A bounded pool of stateful instances, such as {@link javax.crypto.Mac}s or charset encoders,
+ * that are expensive to create but may not be shared between threads. Instances are created
+ * on demand when none is idle, and those returned while the pool is full are discarded.
+ * <p>
+ * Unlike a {@link ThreadLocal}, the pool keeps nothing reachable from the threads that use it,
+ * so its instances are reclaimed with the object that owns the pool.
+ *
+ * @param <T> The type of pooled instance.
+ */
+final class InstancePool<T>
+{
+   private final Supplier<T> factory;
+   private final BlockingQueue<T> idle;
+
+   /**
+    * @param factory Creates new instances.
+    */
+   InstancePool(Supplier<T> factory)
+   {
+      this.factory = Objects.requireNonNull(factory, "No factory supplied");
+      this.idle = new ArrayBlockingQueue<>(2 * Runtime.getRuntime().availableProcessors());
+   }
+
+   /**
+    * @return An instance for the exclusive use of the caller, who should pass it to
+    *       {@link #release(Object)} once done with it.
+    */
+   T acquire()
+   {
+      T instance = idle.poll();
+      return (instance == null) ? factory.get() : instance;
+   }
+
+   /**
+    * @param instance An instance returned by {@link #acquire()} that the caller no longer uses.
+    *       It must be in its initial state.
+    */
+   void release(T instance)
+   {
+      idle.offer(instance);
+   }
+}
@@ -0,0 +1,119 @@
+package edu.tamu.tcat.account.db;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.Objects;
+
+import edu.tamu.tcat.crypto.SecureToken;
+import edu.tamu.tcat.crypto.TokenException;
+
+/**
+ * The key ring (version 2) token format. The token content has the same layout as the
+ * original format, with a version of {@code 2}, and is encrypted with the active key of a
+ * {@link TokenKeyRing}. The token string is prefixed with the id of that key as two
+ * lower-case hexadecimal digits followed by {@code '.'}, which does not occur in the
+ * encoded output of a {@link SecureToken}, for example {@code "0a.<encrypted content>"}.
+ * <p>
+ * Tokens without a key id prefix are read as version 1 tokens using the legacy key of the
+ * key ring. In either case, exactly one decryption is performed per token.
+ */
+class KeyRingTokenFormat extends TokenFormat
+{
+   static final int VERSION = 2;
+
+   private static final char SEPARATOR = '.';
+   private static final int PREFIX_LENGTH = 3;
+   private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+   private final TokenKeyRing keyRing;
+
+   KeyRingTokenFormat(TokenKeyRing keyRing)
+   {
+      this.keyRing = Objects.requireNonNull(keyRing, "No key ring supplied");
+   }
+
+   @Override
+   int getHeaderLength()
+   {
+      return 4 + 8;
+   }
+
+   @Override
+   void writeHeader(ByteBuffer buffer, Instant expires)
+   {
+      buffer.putInt(VERSION);
+      buffer.putLong(expires.toEpochMilli());
+   }
+
+   @Override
+   long readHeader(ByteBuffer buffer)
+   {
+      // open() has already matched the version to the format declared by the token string
+      readVersion(buffer, SecureTokenFormat.VERSION, VERSION);
+      return readExpiry(buffer);
+   }
+
+   @Override
+   String seal(ByteBuffer content, Instant expires) throws TokenException
+   {
+      TokenKeyRing.State state = keyRing.getState();
+      int keyId = state.activeId;
+      SecureToken key = state.getKey(keyId);
+      if (key == null)
+         throw new IllegalStateException("The key ring has no active key");
+
+      String body = key.getToken(content);
+      return new StringBuilder(PREFIX_LENGTH + body.length())
+            .append(HEX[keyId >> 4])
+            .append(HEX[keyId & 0xF])
+            .append(SEPARATOR)
+            .append(body)
+            .toString();
+   }
+
+   @Override
+   ByteBuffer open(String token) throws TokenException
+   {
+      TokenKeyRing.State state = keyRing.getState();
+      if (token.length() > PREFIX_LENGTH && token.charAt(PREFIX_LENGTH - 1) == SEPARATOR)
+      {
+         int keyId = (hexValue(token.charAt(0)) << 4) | hexValue(token.charAt(1));
+         SecureToken key = state.getKey(keyId);
+         if (key == null)
+            throw new IllegalArgumentException("The supplied token was issued with an unknown or retired key.");
+
+         ByteBuffer content = key.getContentFromToken(token.substring(PREFIX_LENGTH));
+         requireVersion(content, VERSION);
+         return content;
+      }
+
+      SecureToken legacy = state.getKey(state.legacyId);
+      if (legacy == null)
+         throw new IllegalArgumentException("Tokens without a key id are not accepted.");
+
+      ByteBuffer content = legacy.getContentFromToken(token);
+      requireVersion(content, SecureTokenFormat.VERSION);
+      return content;
+   }
+
+   /**
+    * Checks the version without consuming it, so that a token cannot be presented in a
+    * different format from the one in which it was created.
+    */
+   private static void requireVersion(ByteBuffer content, int version)
+   {
+      if (content.remaining() < 4 || content.getInt(content.position()) != version)
+         throw new IllegalArgumentException("The supplied token does not match its declared format.");
+   }
+
+   private static int hexValue(char c)
+   {
+      if (c >= '0' && c <= '9')
+         return c - '0';
+      if (c >= 'a' && c <= 'f')
+         return c - 'a' + 10;
+
+      // out of range; no key will be found
+      return 0x100;
+   }
+}
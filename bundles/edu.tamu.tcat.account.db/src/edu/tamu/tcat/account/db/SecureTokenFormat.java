@@ -0,0 +1,56 @@
+package edu.tamu.tcat.account.db;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.Objects;
+
+import edu.tamu.tcat.crypto.SecureToken;
+import edu.tamu.tcat.crypto.TokenException;
+
+/**
+ * The original (version 1) token format: a 4-byte version, an 8-byte expiration time in
+ * epoch milliseconds and the payload, encrypted using a single {@link SecureToken}.
+ */
+class SecureTokenFormat extends TokenFormat
+{
+   static final int VERSION = 1;
+
+   private final SecureToken secureToken;
+
+   SecureTokenFormat(SecureToken secureToken)
+   {
+      this.secureToken = Objects.requireNonNull(secureToken, "No secure token supplied");
+   }
+
+   @Override
+   int getHeaderLength()
+   {
+      return 4 + 8;
+   }
+
+   @Override
+   void writeHeader(ByteBuffer buffer, Instant expires)
+   {
+      buffer.putInt(VERSION);
+      buffer.putLong(expires.toEpochMilli());
+   }
+
+   @Override
+   long readHeader(ByteBuffer buffer)
+   {
+      readVersion(buffer, VERSION);
+      return readExpiry(buffer);
+   }
+
+   @Override
+   String seal(ByteBuffer content, Instant expires) throws TokenException
+   {
+      return secureToken.getToken(content);
+   }
+
+   @Override
+   ByteBuffer open(String token) throws TokenException
+   {
+      return secureToken.getContentFromToken(token);
+   }
+}
@@ -0,0 +1,38 @@
+package edu.tamu.tcat.account.db;
+
+import java.time.temporal.ChronoUnit;
+
+/**
+ * An {@link ExpiringTokenProvider} that produces integrity-only tokens. Tokens contain the
+ * payload and expiration time followed by an HMAC-SHA256 tag, and are not encrypted. This
+ * is considerably cheaper than encryption, and is appropriate for payloads that have no
+ * confidentiality requirement, such as opaque ids: the bearer of a token can read its
+ * payload but cannot alter it or extend its expiration.
+ * <p>
+ * Providers for common payload types are available from the factory classes of
+ * {@link ExpiringTokenProvider}, for example
+ * {@link ExpiringTokenProvider.UuidTokenProviderFactory#makeSignedProvider(byte[], long, ChronoUnit)}.
+ *
+ * @param <Payload> The payload type of the tokens.
+ * @since 2.1
+ */
+public class SignedTokenProvider<Payload> extends ExpiringTokenProvider<Payload>
+{
+   /**
+    * Constructs a new {@link SignedTokenProvider}.
+    *
+    * @param macKey The secret key used to sign tokens. Must be at least 128 bits; 256 bits
+    *       is recommended.
+    * @param codec The codec used to write payload data into, and read it from, the
+    *       token content.
+    * @param duration The amount of type the supplied token should be valid for.
+    * @param unit The time units of duration.
+    * @param type A Java class indicating the payload type.
+    */
+   public SignedTokenProvider(byte[] macKey,
+                              TokenPayloadCodec<Payload> codec,
+                              long duration, ChronoUnit unit, Class<Payload> type)
+   {
+      super(new HmacTokenFormat(macKey), codec, duration, unit, type);
+   }
+}
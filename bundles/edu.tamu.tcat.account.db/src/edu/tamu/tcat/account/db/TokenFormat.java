@@ -0,0 +1,193 @@
+package edu.tamu.tcat.account.db;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.time.Instant;
+import java.util.Objects;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import edu.tamu.tcat.crypto.TokenException;
+
+/**
+ * Defines the layout of the content within tokens created by an {@link ExpiringTokenProvider}
+ * and how that content is protected and converted to and from the token string.
+ * <p>
+ * Token content consists of a header, written by {@link #writeHeader(ByteBuffer, Instant)},
+ * followed by the encoded payload.
+ */
+abstract class TokenFormat
+{
+   static final String HMAC_ALGORITHM = "HmacSHA256";
+
+   /**
+    * @return The maximum number of bytes written by {@link #writeHeader(ByteBuffer, Instant)}.
+    */
+   abstract int getHeaderLength();
+
+   /**
+    * Returns the expiration time that will be recorded in a token created to expire at the
+    * supplied time. Formats that store the expiration time with reduced precision override
+    * this so that the expiration reported for a new token matches the token itself.
+    *
+    * @param expires The requested expiration time.
+    * @return The expiration time that will be recorded.
+    */
+   Instant getEffectiveExpiry(Instant expires)
+   {
+      return expires;
+   }
+
+   /**
+    * Writes the header fields that precede the payload.
+    *
+    * @param buffer The buffer to write to.
+    * @param expires The time at which the token expires.
+    */
+   abstract void writeHeader(ByteBuffer buffer, Instant expires);
+
+   /**
+    * Reads and validates the header fields, leaving the buffer positioned at the start of
+    * the payload.
+    *
+    * @param buffer The token content.
+    * @return The expiration time of the token, in milliseconds since the epoch.
+    * @throws IllegalArgumentException If the header is not valid for this format.
+    */
+   abstract long readHeader(ByteBuffer buffer);
+
+   /**
+    * Converts the supplied token content into a token string.
+    *
+    * @param content The complete token content.
+    * @param expires The time at which the token expires.
+    * @return The token string.
+    * @throws TokenException If the content cannot be protected.
+    */
+   abstract String seal(ByteBuffer content, Instant expires) throws TokenException;
+
+   /**
+    * Recovers the token content from a token string.
+    *
+    * @param token The token string.
+    * @return The token content, positioned at the start of the header.
+    * @throws TokenException If the token cannot be processed.
+    */
+   abstract ByteBuffer open(String token) throws TokenException;
+
+   /**
+    * Reads the 4-byte version that begins the header and requires it to be one of the
+    * supplied versions.
+    *
+    * @return The version read.
+    */
+   static int readVersion(ByteBuffer buffer, int... accepted)
+   {
+      if (buffer.remaining() < 4)
+         throw new IllegalArgumentException("The supplied token is truncated.");
+
+      int version = buffer.getInt();
+      for (int v : accepted)
+      {
+         if (v == version)
+            return version;
+      }
+
+      throw new IllegalArgumentException("Unsupported token version [" + version + "].");
+   }
+
+   /**
+    * Creates a pool of HMAC-SHA256 instances initialized with the supplied key. {@link Mac}
+    * instances are not thread-safe and are comparatively expensive to create, so they are
+    * reused rather than created for each token. Instances must be reset before they are
+    * released to the pool.
+    *
+    * @param macKey The secret key. Must be at least 128 bits.
+    * @return The pool of {@link Mac} instances.
+    */
+   static InstancePool<Mac> createHmac(byte[] macKey)
+   {
+      Objects.requireNonNull(macKey, "No MAC key supplied");
+      if (macKey.length < 16)
+         throw new IllegalArgumentException("MAC key must be at least 128 bits");
+
+      SecretKeySpec key = new SecretKeySpec(macKey, HMAC_ALGORITHM);
+      InstancePool<Mac> macs = new InstancePool<>(() -> {
+         try
+         {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(key);
+            return mac;
+         }
+         catch (GeneralSecurityException e)
+         {
+            throw new IllegalStateException("Could not initialize " + HMAC_ALGORITHM, e);
+         }
+      });
+
+      // fail on construction rather than on first use if the algorithm is unavailable
+      macs.release(macs.acquire());
+      return macs;
+   }
+
+   /**
+    * Requires part of a token string to be unpadded Base64, in either alphabet, whose final
+    * character has its unused low bits clear. The JDK decoders accept padding and ignore
+    * those bits, so without this check a token could be presented in several spellings.
+    *
+    * @param token The token string.
+    * @param start The index of the first Base64 character.
+    * @param end The index following the last Base64 character.
+    * @throws IllegalArgumentException If the characters are not canonical unpadded Base64.
+    */
+   static void requireCanonicalBase64(String token, int start, int end)
+   {
+      int unusedBits;
+      switch ((end - start) % 4)
+      {
+         case 0:
+            unusedBits = 0;
+            break;
+         case 2:
+            unusedBits = 4;
+            break;
+         case 3:
+            unusedBits = 2;
+            break;
+         default:
+            throw new IllegalArgumentException("The supplied token is malformed.");
+      }
+
+      if (end == start)
+         return;
+
+      int value = base64Value(token.charAt(end - 1));
+      if (value < 0 || (value & ((1 << unusedBits) - 1)) != 0)
+         throw new IllegalArgumentException("The supplied token is malformed.");
+   }
+
+   private static int base64Value(char c)
+   {
+      if (c >= 'A' && c <= 'Z')
+         return c - 'A';
+      if (c >= 'a' && c <= 'z')
+         return c - 'a' + 26;
+      if (c >= '0' && c <= '9')
+         return c - '0' + 52;
+      if (c == '-' || c == '+')
+         return 62;
+      if (c == '_' || c == '/')
+         return 63;
+
+      return -1;
+   }
+
+   static long readExpiry(ByteBuffer buffer)
+   {
+      if (buffer.remaining() < 8)
+         throw new IllegalArgumentException("The supplied token is truncated.");
+
+      return buffer.getLong();
+   }
+}
@@ -0,0 +1,186 @@
+package edu.tamu.tcat.account.db;
+
+import java.util.Objects;
+
+import edu.tamu.tcat.crypto.SecureToken;
+
+/**
+ * A set of {@link SecureToken} keys used to support key rotation for an
+ * {@link ExpiringTokenProvider}. Each key is registered under a numeric id between
+ * {@code 0} and {@link #MAX_KEY_ID}. New tokens are created using the active key and carry
+ * the id of that key so that the key required to unpack a token is found with a single
+ * array lookup rather than by trying each key in turn.
+ * <p>
+ * To rotate keys, add the new key, make it active and, once all tokens issued with the
+ * previous key have expired, retire the previous key.
+ * <p>
+ * Tokens in the original (version 1) format do not identify the key used to create them.
+ * These are unpacked using the key designated by {@link #setLegacyKey(int)}, if any.
+ * <p>
+ * Instances are thread-safe. Changes to the key ring are visible to all providers that use
+ * it and are applied atomically with respect to token creation and unpacking.
+ *
+ * @since 2.1
+ */
+public class TokenKeyRing
+{
+   /** The largest supported key id. */
+   public static final int MAX_KEY_ID = 0xFF;
+
+   private static final int NONE = -1;
+
+   /** Immutable snapshot of the ring; replaced whenever the ring is modified. */
+   private volatile State state = new State(new SecureToken[MAX_KEY_ID + 1], NONE, NONE);
+
+   /**
+    * Construct an empty key ring. At least one key must be added and made active before
+    * the ring can be used to create tokens.
+    */
+   public TokenKeyRing()
+   {
+   }
+
+   /**
+    * Construct a key ring containing a single key that is both the active key and the key
+    * used to unpack tokens in the original format.
+    *
+    * @param keyId The id of the key.
+    * @param key The key.
+    */
+   public TokenKeyRing(int keyId, SecureToken key)
+   {
+      addKey(keyId, key);
+      setActiveKey(keyId);
+      setLegacyKey(keyId);
+   }
+
+   /**
+    * Adds a key to this ring. The key will be accepted when unpacking tokens but will not be
+    * used to create tokens until it is made active.
+    *
+    * @param keyId The id of the key.
+    * @param key The key.
+    * @throws IllegalArgumentException If the key id is out of range or is already in use.
+    */
+   public synchronized void addKey(int keyId, SecureToken key)
+   {
+      Objects.requireNonNull(key, "No key supplied");
+      checkId(keyId);
+
+      State current = state;
+      if (current.keys[keyId] != null)
+         throw new IllegalArgumentException("Key id [" + keyId + "] is already in use");
+
+      SecureToken[] keys = current.keys.clone();
+      keys[keyId] = key;
+      state = new State(keys, current.activeId, current.legacyId);
+   }
+
+   /**
+    * Sets the key that will be used to create new tokens.
+    *
+    * @param keyId The id of a key that has been added to this ring.
+    * @throws IllegalArgumentException If no key with the supplied id is present.
+    */
+   public synchronized void setActiveKey(int keyId)
+   {
+      State current = state;
+      requireKey(current, keyId);
+      state = new State(current.keys, keyId, current.legacyId);
+   }
+
+   /**
+    * Sets the key that will be used to unpack tokens created in the original format, which
+    * does not identify the key used to create the token.
+    *
+    * @param keyId The id of a key that has been added to this ring.
+    * @throws IllegalArgumentException If no key with the supplied id is present.
+    */
+   public synchronized void setLegacyKey(int keyId)
+   {
+      State current = state;
+      requireKey(current, keyId);
+      state = new State(current.keys, current.activeId, keyId);
+   }
+
+   /**
+    * Removes a key from this ring. Tokens created with the key will no longer be accepted.
+    * If the key is used to unpack tokens in the original format, those tokens will no longer
+    * be accepted either.
+    *
+    * @param keyId The id of the key to retire.
+    * @throws IllegalStateException If the key is the active key.
+    */
+   public synchronized void retireKey(int keyId)
+   {
+      checkId(keyId);
+      State current = state;
+      if (current.activeId == keyId)
+         throw new IllegalStateException("Cannot retire the active key [" + keyId + "]");
+
+      SecureToken[] keys = current.keys.clone();
+      keys[keyId] = null;
+      state = new State(keys, current.activeId, current.legacyId == keyId ? NONE : current.legacyId);
+   }
+
+   /**
+    * @return The id of the key used to create new tokens, or {@code -1} if no key is active.
+    */
+   public int getActiveKeyId()
+   {
+      return state.activeId;
+   }
+
+   /**
+    * @param keyId The id of a key.
+    * @return {@code true} if a key with the supplied id is present in this ring.
+    */
+   public boolean hasKey(int keyId)
+   {
+      return keyId >= 0 && keyId <= MAX_KEY_ID && state.keys[keyId] != null;
+   }
+
+   State getState()
+   {
+      return state;
+   }
+
+   private static void checkId(int keyId)
+   {
+      if (keyId < 0 || keyId > MAX_KEY_ID)
+         throw new IllegalArgumentException("Key id [" + keyId + "] must be between 0 and " + MAX_KEY_ID);
+   }
+
+   private static void requireKey(State state, int keyId)
+   {
+      checkId(keyId);
+      if (state.keys[keyId] == null)
+         throw new IllegalArgumentException("No key with id [" + keyId + "] has been added");
+   }
+
+   /**
+    * An immutable view of the keys in the ring at a point in time.
+    */
+   static final class State
+   {
+      private final SecureToken[] keys;
+      final int activeId;
+      final int legacyId;
+
+      private State(SecureToken[] keys, int activeId, int legacyId)
+      {
+         this.keys = keys;
+         this.activeId = activeId;
+         this.legacyId = legacyId;
+      }
+
+      /**
+       * @return The key with the supplied id, or {@code null} if the id is out of range or
+       *       no such key is present.
+       */
+      SecureToken getKey(int keyId)
+      {
+         return (keyId >= 0 && keyId < keys.length) ? keys[keyId] : null;
+      }
+   }
+}
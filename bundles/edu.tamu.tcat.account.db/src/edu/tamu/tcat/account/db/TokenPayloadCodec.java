@@ -0,0 +1,53 @@
+package edu.tamu.tcat.account.db;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Converts token payloads to and from their binary representation within a token. Unlike the
+ * {@code Function}-based marshallers accepted by {@link ExpiringTokenProvider}, codecs write
+ * directly into, and read directly from, the buffer holding the token content so that no
+ * intermediate byte arrays are required.
+ * <p>
+ * Implementations must be thread-safe. Standard codecs are available from
+ * {@link TokenPayloadCodecs}.
+ *
+ * @param <T> The payload type.
+ * @since 2.1
+ */
+public interface TokenPayloadCodec<T>
+{
+   /**
+    * Provides buffer space to a codec while it encodes a payload.
+    */
+   interface Output
+   {
+      /**
+       * Obtain a buffer into which the next {@code length} bytes of the encoded payload may
+       * be written. The returned buffer is positioned immediately after any previously
+       * written content. Callers must not retain the returned buffer; it may be replaced
+       * by a subsequent call to this method.
+       *
+       * @param length The number of bytes that will be written.
+       * @return A buffer with at least {@code length} bytes remaining.
+       */
+      ByteBuffer reserve(int length);
+   }
+
+   /**
+    * Write the binary representation of the supplied payload.
+    *
+    * @param payload The payload to encode. Will not be {@code null}.
+    * @param output The destination for the encoded payload.
+    */
+   void encode(T payload, Output output);
+
+   /**
+    * Read a payload from the supplied buffer. The encoded payload occupies all of the
+    * remaining bytes in the buffer.
+    *
+    * @param buffer The buffer to read.
+    * @return The decoded payload.
+    * @throws IllegalArgumentException If the supplied bytes cannot be parsed.
+    */
+   T decode(ByteBuffer buffer);
+}
@@ -0,0 +1,373 @@
+package edu.tamu.tcat.account.db;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Standard {@link TokenPayloadCodec} implementations.
+ *
+ * @since 2.1
+ */
+public final class TokenPayloadCodecs
+{
+   private static final TokenPayloadCodec<UUID> UUID_CODEC = new UuidCodec();
+   private static final TokenPayloadCodec<Long> LONG_CODEC = new LongCodec();
+   private static final Utf8StringCodec UTF8_CODEC = new Utf8StringCodec();
+   private static final TokenPayloadCodec<AccountClaims> CLAIMS_CODEC = new AccountClaimsCodec();
+
+   private TokenPayloadCodecs()
+   {
+   }
+
+   /**
+    * @return A codec that represents a {@link UUID} as 16 bytes.
+    */
+   public static TokenPayloadCodec<UUID> uuid()
+   {
+      return UUID_CODEC;
+   }
+
+   /**
+    * @return A codec that represents a {@link Long} as 8 bytes.
+    */
+   public static TokenPayloadCodec<Long> longValue()
+   {
+      return LONG_CODEC;
+   }
+
+   /**
+    * @return A codec that represents a {@link String} using the UTF-8 encoding.
+    */
+   public static TokenPayloadCodec<String> string()
+   {
+      return UTF8_CODEC;
+   }
+
+   /**
+    * @param charset The character set used to encode strings.
+    * @return A codec that represents a {@link String} using the supplied character set.
+    */
+   public static TokenPayloadCodec<String> string(Charset charset)
+   {
+      Objects.requireNonNull(charset, "No character set supplied");
+      if (StandardCharsets.UTF_8.equals(charset))
+         return UTF8_CODEC;
+
+      return new StringCodec(charset);
+   }
+
+   /**
+    * Returns a codec for {@link AccountClaims}. The encoding begins with a format version so
+    * that the claims record may be extended in future without invalidating issued tokens.
+    * Claims are encoded as the version byte, the 16-byte account id, a flags byte, the issue
+    * time in epoch milliseconds, the display name as a 2-byte length followed by UTF-8 bytes,
+    * and a 2-byte role count followed by the 16-byte id of each role.
+    *
+    * @return A codec that represents {@link AccountClaims} in a compact binary form.
+    */
+   public static TokenPayloadCodec<AccountClaims> accountClaims()
+   {
+      return CLAIMS_CODEC;
+   }
+
+   /**
+    * Adapts a pair of functions that convert payloads to and from byte arrays into a codec.
+    * The resulting codec requires an intermediate byte array for each payload that is
+    * encoded or decoded.
+    *
+    * @param marshaller A function to convert payload data into a byte-stream for
+    *       tokenization.
+    * @param unmarshaller A function that will convert the byte-stream from a token
+    *       into an instance of the payload type.
+    * @return A codec backed by the supplied functions.
+    */
+   public static <T> TokenPayloadCodec<T> fromFunctions(Function<T, byte[]> marshaller, Function<byte[], T> unmarshaller)
+   {
+      Objects.requireNonNull(marshaller, "No marshaller supplied");
+      Objects.requireNonNull(unmarshaller, "No unmarshaller supplied");
+      return new TokenPayloadCodec<T>()
+      {
+         @Override
+         public void encode(T payload, Output output)
+         {
+            byte[] bytes = marshaller.apply(payload);
+            output.reserve(bytes.length).put(bytes);
+         }
+
+         @Override
+         public T decode(ByteBuffer buffer)
+         {
+            byte[] data = new byte[buffer.remaining()];
+            buffer.get(data);
+            return unmarshaller.apply(data);
+         }
+      };
+   }
+
+   private static void requireRemaining(ByteBuffer buffer, int length)
+   {
+      if (buffer.remaining() != length)
+         throw new IllegalArgumentException("Expected " + length + " bytes of payload data but found " + buffer.remaining());
+   }
+
+   private static void requireAvailable(ByteBuffer buffer, int length)
+   {
+      if (buffer.remaining() < length)
+         throw new IllegalArgumentException("Expected at least " + length + " bytes of payload data but found " + buffer.remaining());
+   }
+
+   private static final class UuidCodec implements TokenPayloadCodec<UUID>
+   {
+      @Override
+      public void encode(UUID payload, Output output)
+      {
+         output.reserve(16)
+               .putLong(payload.getMostSignificantBits())
+               .putLong(payload.getLeastSignificantBits());
+      }
+
+      @Override
+      public UUID decode(ByteBuffer buffer)
+      {
+         requireRemaining(buffer, 16);
+         return new UUID(buffer.getLong(), buffer.getLong());
+      }
+   }
+
+   private static final class LongCodec implements TokenPayloadCodec<Long>
+   {
+      @Override
+      public void encode(Long payload, Output output)
+      {
+         output.reserve(Long.BYTES).putLong(payload.longValue());
+      }
+
+      @Override
+      public Long decode(ByteBuffer buffer)
+      {
+         requireRemaining(buffer, Long.BYTES);
+         return Long.valueOf(buffer.getLong());
+      }
+   }
+
+   /**
+    * Encodes UTF-8 directly into the output buffer. Unpaired surrogates are replaced with
+    * {@code '?'}, matching the behavior of {@link String#getBytes(Charset)}.
+    */
+   private static final class Utf8StringCodec implements TokenPayloadCodec<String>
+   {
+      private static final byte REPLACEMENT = (byte)'?';
+
+      @Override
+      public void encode(String payload, Output output)
+      {
+         int length = payload.length();
+         ByteBuffer buffer = output.reserve(encodedLength(payload));
+         for (int i = 0; i < length; i++)
+         {
+            char c = payload.charAt(i);
+            if (c < 0x80)
+            {
+               buffer.put((byte)c);
+            }
+            else if (c < 0x800)
+            {
+               buffer.put((byte)(0xC0 | (c >> 6)));
+               buffer.put((byte)(0x80 | (c & 0x3F)));
+            }
+            else if (Character.isSurrogate(c))
+            {
+               if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(payload.charAt(i + 1)))
+               {
+                  int cp = Character.toCodePoint(c, payload.charAt(++i));
+                  buffer.put((byte)(0xF0 | (cp >> 18)));
+                  buffer.put((byte)(0x80 | ((cp >> 12) & 0x3F)));
+                  buffer.put((byte)(0x80 | ((cp >> 6) & 0x3F)));
+                  buffer.put((byte)(0x80 | (cp & 0x3F)));
+               }
+               else
+               {
+                  buffer.put(REPLACEMENT);
+               }
+            }
+            else
+            {
+               buffer.put((byte)(0xE0 | (c >> 12)));
+               buffer.put((byte)(0x80 | ((c >> 6) & 0x3F)));
+               buffer.put((byte)(0x80 | (c & 0x3F)));
+            }
+         }
+      }
+
+      private static int encodedLength(String payload)
+      {
+         int length = payload.length();
+         int bytes = 0;
+         for (int i = 0; i < length; i++)
+         {
+            char c = payload.charAt(i);
+            if (c < 0x80)
+               bytes += 1;
+            else if (c < 0x800)
+               bytes += 2;
+            else if (Character.isSurrogate(c))
+            {
+               if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(payload.charAt(i + 1)))
+               {
+                  bytes += 4;
+                  i++;
+               }
+               else
+                  bytes += 1;
+            }
+            else
+               bytes += 3;
+         }
+
+         return bytes;
+      }
+
+      @Override
+      public String decode(ByteBuffer buffer)
+      {
+         return decodeString(buffer, StandardCharsets.UTF_8);
+      }
+   }
+
+   private static final class AccountClaimsCodec implements TokenPayloadCodec<AccountClaims>
+   {
+      private static final byte VERSION = 1;
+      private static final int FLAG_ACTIVE = 0x1;
+      private static final int FLAG_HAS_NAME = 0x2;
+      private static final int MAX_COUNT = 0xFFFF;
+
+      @Override
+      public void encode(AccountClaims claims, Output output)
+      {
+         String name = claims.getDisplayName();
+         List<UUID> roles = claims.getRoleIds();
+         int nameLength = (name == null) ? 0 : Utf8StringCodec.encodedLength(name);
+         if (nameLength > MAX_COUNT)
+            throw new IllegalArgumentException("Display name is too long to encode [" + nameLength + " bytes]");
+         if (roles.size() > MAX_COUNT)
+            throw new IllegalArgumentException("Too many roles to encode [" + roles.size() + "]");
+
+         int flags = (claims.isActive() ? FLAG_ACTIVE : 0) | (name == null ? 0 : FLAG_HAS_NAME);
+         UUID id = claims.getId();
+         output.reserve(1 + 16 + 1 + 8 + 2)
+               .put(VERSION)
+               .putLong(id.getMostSignificantBits())
+               .putLong(id.getLeastSignificantBits())
+               .put((byte)flags)
+               .putLong(claims.getIssuedAt().toEpochMilli())
+               .putShort((short)nameLength);
+
+         if (name != null)
+            UTF8_CODEC.encode(name, output);
+
+         ByteBuffer buffer = output.reserve(2 + 16 * roles.size());
+         buffer.putShort((short)roles.size());
+         for (UUID role : roles)
+         {
+            buffer.putLong(role.getMostSignificantBits());
+            buffer.putLong(role.getLeastSignificantBits());
+         }
+      }
+
+      @Override
+      public AccountClaims decode(ByteBuffer buffer)
+      {
+         requireAvailable(buffer, 1 + 16 + 1 + 8 + 2);
+         byte version = buffer.get();
+         if (version != VERSION)
+            throw new IllegalArgumentException("Unsupported account claims version [" + version + "]");
+
+         UUID id = new UUID(buffer.getLong(), buffer.getLong());
+         int flags = buffer.get();
+         Instant issuedAt = Instant.ofEpochMilli(buffer.getLong());
+
+         int nameLength = buffer.getShort() & 0xFFFF;
+         requireAvailable(buffer, nameLength + 2);
+         String name = null;
+         if ((flags & FLAG_HAS_NAME) != 0)
+         {
+            ByteBuffer nameBytes = buffer.duplicate();
+            nameBytes.limit(nameBytes.position() + nameLength);
+            name = decodeString(nameBytes, StandardCharsets.UTF_8);
+         }
+         buffer.position(buffer.position() + nameLength);
+
+         int roleCount = buffer.getShort() & 0xFFFF;
+         requireRemaining(buffer, 16 * roleCount);
+         List<UUID> roles = new ArrayList<>(roleCount);
+         for (int i = 0; i < roleCount; i++)
+            roles.add(new UUID(buffer.getLong(), buffer.getLong()));
+
+         return new AccountClaims(id, name, (flags & FLAG_ACTIVE) != 0, roles, issuedAt);
+      }
+   }
+
+   private static final class StringCodec implements TokenPayloadCodec<String>
+   {
+      private final Charset charset;
+
+      /** Encoders are stateful, so each is used by one thread at a time. */
+      private final InstancePool<CharsetEncoder> encoders;
+
+      private StringCodec(Charset charset)
+      {
+         this.charset = charset;
+         this.encoders = new InstancePool<>(() -> charset.newEncoder()
+               .onMalformedInput(CodingErrorAction.REPLACE)
+               .onUnmappableCharacter(CodingErrorAction.REPLACE));
+      }
+
+      @Override
+      public void encode(String payload, Output output)
+      {
+         CharsetEncoder encoder = encoders.acquire();
+         try
+         {
+            int maxLength = (int)Math.ceil(encoder.maxBytesPerChar() * (double)payload.length());
+            ByteBuffer buffer = output.reserve(maxLength);
+            encoder.encode(CharBuffer.wrap(payload), buffer, true);
+            encoder.flush(buffer);
+         }
+         finally
+         {
+            encoders.release(encoder.reset());
+         }
+      }
+
+      @Override
+      public String decode(ByteBuffer buffer)
+      {
+         return decodeString(buffer, charset);
+      }
+   }
+
+   private static String decodeString(ByteBuffer buffer, Charset charset)
+   {
+      int length = buffer.remaining();
+      if (buffer.hasArray())
+      {
+         String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, charset);
+         buffer.position(buffer.limit());
+         return value;
+      }
+
+      byte[] data = new byte[length];
+      buffer.get(data);
+      return new String(data, charset);
+   }
+}
@@ -0,0 +1,250 @@
+package edu.tamu.tcat.account.db;
+
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records tokens that have been revoked prior to their expiration, for example on logout
+ * or following a password reset. A revocation list may be attached to an
+ * {@link ExpiringTokenProvider} or an {@link AdaptingTokenService}, which will then refuse
+ * to unpack revoked tokens. Tokens are revoked using
+ * {@link ExpiringTokenProvider#revokeToken(String)}.
+ * <p>
+ * Tokens are identified by a keyed 64-bit fingerprint of a canonical identifier, rather
+ * than of the token string, since a token format may accept more than one spelling of the
+ * same token. Token providers use the authenticated content of the token, so tokens with
+ * identical content (the same payload and expiration time) are revoked together. The
+ * identifier itself is not retained. Each revocation is held until the time at which the
+ * token would have expired, after which it is discarded. Fingerprints are held in a
+ * fixed-capacity hash table fronted by a Bloom filter, so that the check performed for
+ * tokens that have not been revoked (the overwhelming majority) consists of a hash of the
+ * identifier and a few array reads, without locking. Memory use is fixed by the capacity
+ * supplied on construction: the table is sized to the power of two at least twice the
+ * capacity, giving between about 33 and 65 bytes per entry.
+ * <p>
+ * A {@link CachingTokenService} checks its cached tokens against the revocation list of its
+ * delegate service on every hit, so revoked tokens need not be removed from the cache.
+ * <p>
+ * Instances are thread-safe.
+ *
+ * @since 2.1
+ */
+public class TokenRevocationList
+{
+   /** Bloom filter size and number of probes; gives a false positive rate of about 1%. */
+   private static final int BITS_PER_ENTRY = 10;
+   private static final int PROBES = 4;
+
+   private static final long EMPTY = 0;
+
+   private final int capacity;
+   private final long seed;
+
+   /** The Bloom filter. Replaced, never cleared, when expired entries are purged. */
+   private volatile AtomicLongArray filter;
+
+   // exact set; open addressing with linear probing, guarded by this
+   private long[] fingerprints;
+   private long[] expirations;
+   private int size;
+
+   /**
+    * Construct a new revocation list.
+    *
+    * @param capacity The maximum number of unexpired revocations that may be held.
+    */
+   public TokenRevocationList(int capacity)
+   {
+      if (capacity <= 0 || capacity > (1 << 28))
+         throw new IllegalArgumentException("Capacity must be between 1 and 2^28 [" + capacity + "]");
+
+      this.capacity = capacity;
+      this.seed = new SecureRandom().nextLong();
+      this.filter = new AtomicLongArray(filterWords(capacity));
+
+      // keep the load factor at or below one half
+      int slots = Integer.highestOneBit(capacity * 2 - 1) << 1;
+      this.fingerprints = new long[slots];
+      this.expirations = new long[slots];
+   }
+
+   private static int filterWords(int capacity)
+   {
+      long bits = (long)capacity * BITS_PER_ENTRY;
+      return (int)Math.max(1, (bits + 63) / 64);
+   }
+
+   /**
+    * Revokes the token with the supplied identifier.
+    *
+    * @param tokenId The remaining bytes of this buffer identify the token. Its position is
+    *       not changed.
+    * @param expires The time at which the token expires. The revocation is discarded
+    *       after this time.
+    * @throws IllegalStateException If the list already holds the maximum number of
+    *       unexpired revocations.
+    */
+   public void revoke(ByteBuffer tokenId, Instant expires)
+   {
+      Objects.requireNonNull(tokenId, "No token identifier supplied");
+      long expiresMillis = expires.toEpochMilli();
+      if (expiresMillis <= System.currentTimeMillis())
+         return;
+
+      long fp = fingerprint(tokenId);
+      synchronized (this)
+      {
+         int slot = find(fp);
+         if (fingerprints[slot] == fp)
+         {
+            expirations[slot] = Math.max(expirations[slot], expiresMillis);
+            return;
+         }
+
+         if (size >= capacity)
+         {
+            purge();
+            if (size >= capacity)
+               throw new IllegalStateException("Token revocation list is full [" + capacity + "]");
+
+            slot = find(fp);
+         }
+
+         fingerprints[slot] = fp;
+         expirations[slot] = expiresMillis;
+         size++;
+
+         // add to the filter only once the exact entry is visible to readers
+         addToFilter(filter, fp);
+      }
+   }
+
+   /**
+    * @param tokenId The remaining bytes of this buffer identify the token. Its position is
+    *       not changed.
+    * @return {@code true} if the identified token has been revoked and has not yet expired.
+    */
+   public boolean isRevoked(ByteBuffer tokenId)
+   {
+      long fp = fingerprint(tokenId);
+      if (!mightContain(filter, fp))
+         return false;
+
+      synchronized (this)
+      {
+         int slot = find(fp);
+         return fingerprints[slot] == fp && expirations[slot] > System.currentTimeMillis();
+      }
+   }
+
+   /**
+    * @return The number of revocations currently held. This may include revocations for
+    *       tokens that have expired but have not yet been purged.
+    */
+   public synchronized int size()
+   {
+      return size;
+   }
+
+   /**
+    * Discards the revocations of all tokens that have expired. This is performed
+    * automatically when the list reaches its capacity, but may also be called periodically
+    * to keep the false positive rate of the filter low.
+    */
+   public synchronized void purge()
+   {
+      long now = System.currentTimeMillis();
+      long[] oldFingerprints = fingerprints;
+      long[] oldExpirations = expirations;
+
+      fingerprints = new long[oldFingerprints.length];
+      expirations = new long[oldExpirations.length];
+      size = 0;
+
+      AtomicLongArray rebuilt = new AtomicLongArray(filter.length());
+      for (int i = 0; i < oldFingerprints.length; i++)
+      {
+         long fp = oldFingerprints[i];
+         if (fp == EMPTY || oldExpirations[i] <= now)
+            continue;
+
+         int slot = find(fp);
+         fingerprints[slot] = fp;
+         expirations[slot] = oldExpirations[i];
+         size++;
+         addToFilter(rebuilt, fp);
+      }
+
+      filter = rebuilt;
+   }
+
+   /**
+    * @return The slot holding the supplied fingerprint, or the empty slot at which it
+    *       should be inserted.
+    */
+   private int find(long fp)
+   {
+      int mask = fingerprints.length - 1;
+      int slot = (int)(fp ^ (fp >>> 32)) & mask;
+      while (fingerprints[slot] != EMPTY && fingerprints[slot] != fp)
+         slot = (slot + 1) & mask;
+
+      return slot;
+   }
+
+   /** Called only while holding the lock on this list. */
+   private static void addToFilter(AtomicLongArray filter, long fp)
+   {
+      long bits = (long)filter.length() * 64;
+      int h1 = (int)fp;
+      int h2 = (int)(fp >>> 32);
+      for (int i = 0; i < PROBES; i++)
+      {
+         int bit = (int)(((h1 + i * h2) & 0xFFFFFFFFL) % bits);
+         int word = bit >>> 6;
+         filter.set(word, filter.get(word) | (1L << bit));
+      }
+   }
+
+   private static boolean mightContain(AtomicLongArray filter, long fp)
+   {
+      long bits = (long)filter.length() * 64;
+      int h1 = (int)fp;
+      int h2 = (int)(fp >>> 32);
+      for (int i = 0; i < PROBES; i++)
+      {
+         int bit = (int)(((h1 + i * h2) & 0xFFFFFFFFL) % bits);
+         if ((filter.get(bit >>> 6) & (1L << bit)) == 0)
+            return false;
+      }
+
+      return true;
+   }
+
+   /**
+    * Computes a seeded 64-bit hash of the token identifier. The seed is private to this list,
+    * so fingerprint collisions cannot be chosen by clients.
+    */
+   private long fingerprint(ByteBuffer tokenId)
+   {
+      long h = seed ^ 0xcbf29ce484222325L;
+      int limit = tokenId.limit();
+      for (int i = tokenId.position(); i < limit; i++)
+      {
+         h ^= tokenId.get(i) & 0xFF;
+         h *= 0x100000001b3L;
+      }
+
+      // final avalanche (MurmurHash3 fmix64)
+      h ^= h >>> 33;
+      h *= 0xff51afd7ed558ccdL;
+      h ^= h >>> 33;
+      h *= 0xc4ceb9fe1a85ec53L;
+      h ^= h >>> 33;
+
+      return (h == EMPTY) ? 1 : h;
+   }
+}
@@ -20,6 +20,9 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Supplier;
 
 import javax.ws.rs.BeanParam;
 import javax.ws.rs.container.ContainerRequestContext;
@@ -82,7 +85,50 @@ public class ContextBean
    {
       Objects.requireNonNull(type);
       Objects.requireNonNull(label);
-      return getWrapper(ccp, type).get(label);
+      Container<T> container = getWrapper(ccp, type);
+      try
+      {
+         return container.get(label);
+      }
+      catch (RuntimeException e)
+      {
+         // only deferred values may fail when read; see Container#setDeferred and Container#setAsync
+         throw new AccountException("Failed resolving context of type [" + type + "] with label [" + label + "]", e);
+      }
+   }
+
+   /**
+    * Provides the context value for the given type as it becomes available. This should be
+    * used by asynchronous resource methods, since filters may still be computing the value
+    * when the resource method is invoked; see {@link TokenSecured#async()}.
+    *
+    * @param type
+    * @return A stage that completes with the value returned by {@link ContextBean#get(Class)},
+    *         or completes exceptionally if the value cannot be computed.
+    * @since 2.2
+    * @throws AccountException if no context has been set up for the given type
+    */
+   public <T> CompletionStage<T> getAsync(Class<T> type) throws AccountException
+   {
+      return getAsync(type, DEFAULT_LABEL);
+   }
+
+   /**
+    * Provides the context value for the given type and label as it becomes available.
+    *
+    * @param type
+    * @param label
+    * @return A stage that completes with the value returned by {@link ContextBean#get(Class, String)},
+    *         or completes exceptionally if the value cannot be computed.
+    * @since 2.2
+    * @throws AccountException if no context has been set up for the given type
+    * @see #getAsync(Class)
+    */
+   public <T> CompletionStage<T> getAsync(Class<T> type, String label) throws AccountException
+   {
+      Objects.requireNonNull(type);
+      Objects.requireNonNull(label);
+      return getWrapper(ccp, type).getAsync(label);
    }
 
    /**
@@ -155,18 +201,105 @@ public class ContextBean
       getWrapper(ccp, type).set(label, obj);
    }
 
+   /**
+    * Holds the values of a single payload type within the context of a request, by label.
+    * <p>
+    * Containers installed by an {@link Installer} store their values in the per-request
+    * context, in slots that are assigned to each payload type and label when resource
+    * methods are configured, rather than in a map.
+    */
    public static class Container<PT>
    {
-      private final Map<String, PT> payloads = new HashMap<>();
+      private final ContextContainingPrincipal ccp;
+      private final Class<PT> type;
+      // used only by containers that are not installed in a request context
+      private final Map<String, PT> payloads;
 
+      public Container()
+      {
+         this.ccp = null;
+         this.type = null;
+         this.payloads = new HashMap<>();
+      }
+
+      private Container(ContextContainingPrincipal ccp, Class<PT> type)
+      {
+         this.ccp = ccp;
+         this.type = type;
+         this.payloads = null;
+      }
+
+      @SuppressWarnings("unchecked")
       public PT get(String label)
       {
-         return payloads.get(label);
+         if (ccp == null)
+            return payloads.get(label);
+
+         return (PT)ccp.getValue(type, label);
+      }
+
+      /**
+       * @param label The label of the value.
+       * @return A stage that completes with the value, once it is available.
+       * @since 2.2
+       * @see #setAsync(String, CompletionStage)
+       */
+      @SuppressWarnings("unchecked")
+      public CompletionStage<PT> getAsync(String label)
+      {
+         if (ccp == null)
+            return CompletableFuture.completedFuture(payloads.get(label));
+
+         return (CompletionStage<PT>)ccp.getValueAsync(type, label);
       }
 
       public void set(String label, PT obj)
       {
-         payloads.put(label, obj);
+         if (ccp == null)
+            payloads.put(label, obj);
+         else
+            ccp.setValue(type, label, obj);
+      }
+
+      /**
+       * Sets a value that is obtained from the supplier when it is first read, and retained
+       * for the remainder of the request. If the supplier fails, the failure is reported to
+       * the reader, which will cause {@link ContextBean#get(Class, String)} to throw an
+       * {@link AccountException}, and the supplier will be called again on the next read.
+       * <p>
+       * Containers that are not installed in a request context obtain the value immediately.
+       *
+       * @param label The label of the value.
+       * @param supplier Supplies the value.
+       * @since 2.2
+       */
+      public void setDeferred(String label, Supplier<? extends PT> supplier)
+      {
+         if (ccp == null)
+            payloads.put(label, supplier.get());
+         else
+            ccp.setDeferredValue(type, label, supplier);
+      }
+
+      /**
+       * Sets a value that is being computed asynchronously. Readers using
+       * {@link #getAsync(String)} are notified when the stage completes, while readers using
+       * {@link #get(String)} wait for it to complete. If the stage completes exceptionally,
+       * the failure is reported to readers, which will cause
+       * {@link ContextBean#get(Class, String)} to throw an {@link AccountException}.
+       * <p>
+       * Containers that are not installed in a request context wait for the value immediately.
+       *
+       * @param label The label of the value.
+       * @param stage Completes with the value.
+       * @since 2.2
+       */
+      public void setAsync(String label, CompletionStage<? extends PT> stage)
+      {
+         if (ccp == null)
+            payloads.put(label, stage.toCompletableFuture().join());
+         else
+            ccp.setPendingValue(type, label, stage);
       }
    }
 
@@ -192,10 +325,13 @@ public class ContextBean
       {
          try
          {
-            Container<T> wr = new Container<T>();
+            Container<T> existing = (Container)princ.get(payloadType);
+            if (existing != null)
+               return existing;
 
-            Container<T> existing = (Container)princ.putIfAbsent(payloadType, wr);
-            return existing;
+            Container<T> wr = new Container<T>(princ, payloadType);
+            princ.putIfAbsent(payloadType, wr);
+            return wr;
          }
          catch (Exception e)
          {
@@ -264,6 +400,13 @@ public class ContextBean
    public static <T> T getValue(InterceptorContext ctx, Class<T> type, String label) throws AccountException
    {
       Container<T> pw = getWrapper(ContextContainingPrincipal.getPrincipal(ctx), type);
-      return pw.get(label);
+      try
+      {
+         return pw.get(label);
+      }
+      catch (RuntimeException e)
+      {
+         throw new AccountException("Failed resolving context of type [" + type + "] with label [" + label + "]", e);
+      }
    }
 }
@@ -59,4 +59,44 @@ public @interface TokenProviding
     * @return A label used to distinguish this annotation from others of the same type
     */
    String label() default "";
+
+   /**
+    * @return How the token is provided in the response. (default = {@link Delivery#MAP})
+    * @since 2.2
+    */
+   Delivery delivery() default Delivery.MAP;
+
+   /**
+    * The means by which a token is added to the response of a {@link TokenProviding} resource.
+    * In each case the response carries the {@code access_token}, {@code token_type},
+    * {@code expires_in} and {@code expiration} values; see
+    * {@link http://tools.ietf.org/html/rfc6749#section-5.1}
+    *
+    * @since 2.2
+    */
+   enum Delivery
+   {
+      /**
+       * The values are added as keys of the returned entity, which must be a mutable
+       * {@link java.util.Map} serialized as JSON.
+       */
+      MAP,
+
+      /**
+       * The values are written as the first members of the serialized JSON object, as it
+       * is written to the response. The returned entity may be of any type that serializes
+       * to a JSON object, such as a POJO or a streaming entity, and does not need to be
+       * built as a {@link java.util.Map}. The entity should not contain members with the
+       * same names.
+       */
+      JSON_STREAM,
+
+      /**
+       * The values are sent as response headers, leaving the entity unchanged. The entity
+       * may be of any type and media type.
+       *
+       * @see edu.tamu.tcat.account.jaxrs.provider.token.TokenDynamicFeature#HEADER_ACCESS_TOKEN
+       */
+      HEADERS
+   }
 }
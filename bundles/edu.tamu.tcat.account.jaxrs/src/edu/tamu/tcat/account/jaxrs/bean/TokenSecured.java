@@ -85,4 +85,62 @@ public @interface TokenSecured
     * @see edu.tamu.tcat.account.jaxrs.bean.ContextBean#getOptionally
     */
    boolean required() default true;
+
+   /**
+    * Indicates whether the payload of a presented token is resolved lazily. (default = {@code false})
+    *
+    * When {@code true}, the filter only validates the token (for example, its authenticity and
+    * expiration) using {@link edu.tamu.tcat.account.token.TokenService#unpackTokenData(String)},
+    * and any further work that the token service defers, such as the database lookup performed
+    * by an adapting token service, is done when the payload is first read from the
+    * {@link ContextBean}. The payload is then retained for the rest of the request, so resource
+    * methods that do not read it avoid that work entirely.
+    *
+    * Since the payload is resolved after the filter has accepted the request, a failure to
+    * resolve it is reported by {@link ContextBean#get(Class, String)} as an
+    * {@link edu.tamu.tcat.account.AccountException} rather than by rejecting the request.
+    *
+    * @return Whether the payload is resolved when first read ({@code true}) or when the
+    *         request is filtered ({@code false})
+    * @since 2.2
+    */
+   boolean lazy() default false;
+
+   /**
+    * Indicates whether the payload of a presented token is resolved asynchronously, for use by
+    * asynchronous resource methods. (default = {@code false})
+    *
+    * When {@code true}, the filter validates the token (for example, its authenticity,
+    * expiration and revocation) using
+    * {@link edu.tamu.tcat.account.token.TokenService#unpackTokenData(String)}, so requests with
+    * an invalid token are rejected before the resource method is invoked, as they are when
+    * this is {@code false}. Any further work that the token service defers, such as the
+    * database lookup performed by an adapting token service, is then started using the executor
+    * configured on the {@link edu.tamu.tcat.account.jaxrs.provider.token.TokenDynamicFeature}
+    * without waiting for the result, so that blocking payload lookups do not hold the request
+    * thread. This takes precedence over {@link #lazy()}.
+    *
+    * The resource method may be invoked before the payload has been resolved, and should
+    * continue once it is available:
+    * <pre>
+    * &#64;GET &#64;TokenSecured(payloadType=UUID.class, async=true)
+    * public void getObject(&#64;BeanParam ContextBean bean, &#64;Suspended AsyncResponse response) throws AccountException {
+    *    bean.getAsync(UUID.class).whenComplete((accountId, ex) -> {
+    *       if (ex != null)
+    *          response.resume(ex);
+    *       else
+    *          // construct and resume response using authenticated user with id = accountId
+    *    });
+    * }
+    * </pre>
+    * If the payload cannot be resolved, the stage returned by
+    * {@link ContextBean#getAsync(Class, String)} completes exceptionally with the
+    * {@link javax.ws.rs.BadRequestException} that the filter would have thrown. Reading the
+    * payload using {@link ContextBean#get(Class, String)} waits for it to be resolved.
+    *
+    * @return Whether the payload is resolved asynchronously ({@code true}) or as configured
+    *         by {@link #lazy()} ({@code false})
+    * @since 2.2
+    */
+   boolean async() default false;
 }
@@ -16,8 +16,14 @@
 package edu.tamu.tcat.account.jaxrs.internal;
 
 import java.security.Principal;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Supplier;
 
 import javax.ws.rs.container.ContainerRequestContext;
 import javax.ws.rs.core.SecurityContext;
@@ -27,10 +33,17 @@ import javax.ws.rs.ext.InterceptorContext;
 /**
  * A {@link Principal} which contains contexts of arbitrary storage. The arbitrary storage
  * is used by the Account framework to pass information within a JAX-RS invocation.
+ * <p>
+ * Contexts are stored in arrays indexed by the slots assigned by {@link ContextSlots}; one
+ * object per type, which is the container installed for that type, and one value per
+ * (type, label) pair. Types and values that were not assigned a slot are stored in a map.
  */
 public class ContextContainingPrincipal implements Principal
 {
-   Map<Class<?>, Object> contexts = new HashMap<>();
+   private Object[] contexts = new Object[ContextSlots.getTypeCount()];
+   private Object[] values = new Object[ContextSlots.getValueCount()];
+   /** Keyed by type or {@link ValueKey}; created only if some type or value has no slot. */
+   private Map<Object, Object> overflow;
 
    @Override
    public String getName()
@@ -41,7 +54,10 @@ public class ContextContainingPrincipal implements Principal
    @SuppressWarnings("unchecked")
    public <T> T get(Class<T> cls)
    {
-      return (T)contexts.get(cls);
+      int slot = ContextSlots.getTypeSlot(cls);
+      if (slot < 0)
+         return overflow == null ? null : (T)overflow.get(cls);
+      return slot < contexts.length ? (T)contexts[slot] : null;
    }
 
 //   @SuppressWarnings("unchecked")
@@ -53,13 +69,132 @@ public class ContextContainingPrincipal implements Principal
    // NOTE: not atomic. Does this need to be since the request lifecycle is synchronous?
    public Object putIfAbsent(Class<?> cls, Object obj)
    {
-      Object old = contexts.get(cls);
+      int slot = ContextSlots.getTypeSlot(cls);
+      if (slot < 0)
+         return overflow().computeIfAbsent(cls, k -> obj);
+      if (slot >= contexts.length)
+         contexts = grow(contexts, slot, ContextSlots.getTypeCount());
+
+      Object old = contexts[slot];
       if (old != null)
          return old;
-      contexts.put(cls, obj);
+      contexts[slot] = obj;
       return obj;
    }
 
+   /**
+    * @param type The type of the value.
+    * @param label The label of the value.
+    * @return The value stored with the type and label, or {@code null} if none has been stored.
+    */
+   public Object getValue(Class<?> type, String label)
+   {
+      Object value = load(type, label);
+      if (value instanceof Deferred)
+      {
+         // if resolution fails the value remains deferred, and the failure is reported again
+         value = ((Deferred)value).supplier.get();
+         setValue(type, label, value);
+      }
+
+      return value;
+   }
+
+   /**
+    * Stores a value that is computed when it is first read by {@link #getValue(Class, String)},
+    * and retained for the remainder of the request.
+    *
+    * @param type The type of the value.
+    * @param label The label of the value.
+    * @param supplier Supplies the value to store.
+    */
+   public void setDeferredValue(Class<?> type, String label, Supplier<?> supplier)
+   {
+      setValue(type, label, new Deferred(supplier, null));
+   }
+
+   /**
+    * Stores a value that is being computed asynchronously. The value may be read as it
+    * becomes available using {@link #getValueAsync(Class, String)}; reading it using
+    * {@link #getValue(Class, String)} waits for it to be computed.
+    *
+    * @param type The type of the value.
+    * @param label The label of the value.
+    * @param stage Completes with the value to store.
+    */
+   public void setPendingValue(Class<?> type, String label, CompletionStage<?> stage)
+   {
+      CompletableFuture<?> future = stage.toCompletableFuture();
+      setValue(type, label, new Deferred(() -> join(future), future));
+   }
+
+   /**
+    * @param type The type of the value.
+    * @param label The label of the value.
+    * @return A stage that completes with the value stored with the type and label, which is
+    *       {@code null} if none has been stored, or completes exceptionally if the value cannot
+    *       be computed.
+    */
+   public CompletionStage<?> getValueAsync(Class<?> type, String label)
+   {
+      Object value = load(type, label);
+      if (value instanceof Deferred && ((Deferred)value).stage != null)
+         return ((Deferred)value).stage;
+
+      try
+      {
+         return CompletableFuture.completedFuture(getValue(type, label));
+      }
+      catch (RuntimeException e)
+      {
+         CompletableFuture<Object> failed = new CompletableFuture<>();
+         failed.completeExceptionally(e);
+         return failed;
+      }
+   }
+
+   /**
+    * @param type The type of the value.
+    * @param label The label of the value.
+    * @param value The value to store.
+    */
+   public void setValue(Class<?> type, String label, Object value)
+   {
+      int slot = ContextSlots.getValueSlot(type, label);
+      if (slot < 0)
+      {
+         overflow().put(new ValueKey(type, label), value);
+         return;
+      }
+
+      if (slot >= values.length)
+         values = grow(values, slot, ContextSlots.getValueCount());
+
+      values[slot] = value;
+   }
+
+   private Object load(Class<?> type, String label)
+   {
+      int slot = ContextSlots.findValueSlot(type, label);
+      if (slot >= 0)
+         return slot < values.length ? values[slot] : null;
+
+      return overflow == null ? null : overflow.get(new ValueKey(type, label));
+   }
+
+   private Map<Object, Object> overflow()
+   {
+      if (overflow == null)
+         overflow = new HashMap<>();
+      return overflow;
+   }
+
+   // slots assigned after this principal was created are not yet covered by its arrays
+   private static Object[] grow(Object[] array, int slot, int assigned)
+   {
+      return Arrays.copyOf(array, Math.max(slot + 1, assigned));
+   }
+
    @Deprecated
    public static ContextContainingPrincipal setupPrincipal(ContainerRequestContext ctxRequest)
    {
@@ -99,4 +234,59 @@ public class ContextContainingPrincipal implements Principal
 //         throw new NullPointerException();
 //      return Objects.requireNonNull(((ContextContainingPrincipal)principal).get(cls));
 //   }
+
+   // reports the failure of the stage itself, rather than the wrapper added by join()
+   private static Object join(CompletableFuture<?> future)
+   {
+      try
+      {
+         return future.join();
+      }
+      catch (CompletionException e)
+      {
+         if (e.getCause() instanceof RuntimeException)
+            throw (RuntimeException)e.getCause();
+         throw e;
+      }
+   }
+
+   private static final class ValueKey
+   {
+      private final Class<?> type;
+      private final String label;
+
+      private ValueKey(Class<?> type, String label)
+      {
+         this.type = type;
+         this.label = label;
+      }
+
+      @Override
+      public boolean equals(Object obj)
+      {
+         if (!(obj instanceof ValueKey))
+            return false;
+         ValueKey other = (ValueKey)obj;
+         return type.equals(other.type) && Objects.equals(label, other.label);
+      }
+
+      @Override
+      public int hashCode()
+      {
+         return 31 * type.hashCode() + Objects.hashCode(label);
+      }
+   }
+
+   private static final class Deferred
+   {
+      private final Supplier<?> supplier;
+      // non-null if the value is computed asynchronously
+      private final CompletionStage<?> stage;
+
+      private Deferred(Supplier<?> supplier, CompletionStage<?> stage)
+      {
+         this.supplier = supplier;
+         this.stage = stage;
+      }
+   }
 }
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2014-2017 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.tamu.tcat.account.jaxrs.internal;
+
+/**
+ * Assigns integer slots to the types and (type, label) pairs stored in the per-request
+ * context of a {@link ContextContainingPrincipal}, so that the context can be held in small
+ * arrays rather than maps.
+ * <p>
+ * Slots are assigned when the dynamic features configure resource methods, so that the
+ * arrays allocated for each request are already large enough. Slots are assigned on
+ * demand for types and labels that are first used at request time. Once assigned, a slot
+ * is never reused, and lookups do not lock.
+ * <p>
+ * Since slots are never reclaimed, at most {@link #MAX_TYPE_SLOTS} types and
+ * {@link #MAX_VALUE_SLOTS} values are assigned slots, so that neither the per-request arrays
+ * nor this registry grow without bound when types are redeployed or labels are chosen at
+ * request time. Types and values without a slot are kept in a map by the context instead.
+ */
+public final class ContextSlots
+{
+   /**
+    * The maximum number of types assigned slots.
+    */
+   public static final int MAX_TYPE_SLOTS = 64;
+   /**
+    * The maximum number of (type, label) pairs assigned slots.
+    */
+   public static final int MAX_VALUE_SLOTS = 256;
+
+   private static final Object lock = new Object();
+
+   /** Written while holding {@link #lock}. */
+   private static volatile int typeCount;
+   /** Written while holding {@link #lock}. */
+   private static volatile int valueCount;
+
+   // computeValue may run more than once for a type if threads race; only one result is
+   // retained, so a type id may occasionally be skipped, which is harmless
+   private static final ClassValue<TypeSlots> slots = new ClassValue<TypeSlots>()
+   {
+      @Override
+      protected TypeSlots computeValue(Class<?> type)
+      {
+         synchronized (lock)
+         {
+            return new TypeSlots(typeCount < MAX_TYPE_SLOTS ? typeCount++ : -1);
+         }
+      }
+   };
+
+   private ContextSlots()
+   {
+   }
+
+   /**
+    * @return The slot of the supplied type in the per-request context, or {@code -1} if all
+    *       type slots were assigned before the type was first used.
+    */
+   public static int getTypeSlot(Class<?> type)
+   {
+      return slots.get(type).typeSlot;
+   }
+
+   /**
+    * @return The slot of the value with the supplied type and label in the per-request
+    *       context, assigning a slot if none has been assigned, or {@code -1} if the type has
+    *       no slot or all value slots have been assigned.
+    */
+   public static int getValueSlot(Class<?> type, String label)
+   {
+      TypeSlots typeSlots = slots.get(type);
+      int slot = typeSlots.find(label);
+      if (slot >= 0 || typeSlots.typeSlot < 0)
+         return slot;
+
+      synchronized (lock)
+      {
+         slot = typeSlots.find(label);
+         if (slot >= 0 || valueCount >= MAX_VALUE_SLOTS)
+            return slot;
+
+         slot = valueCount++;
+         typeSlots.add(label, slot);
+         return slot;
+      }
+   }
+
+   /**
+    * @return The slot of the value with the supplied type and label in the per-request
+    *       context, or {@code -1} if none has been assigned, in which case any value stored
+    *       for that type and label is not held in a slot.
+    */
+   public static int findValueSlot(Class<?> type, String label)
+   {
+      return slots.get(type).find(label);
+   }
+
+   /**
+    * @return The number of type slots assigned so far.
+    */
+   static int getTypeCount()
+   {
+      return typeCount;
+   }
+
+   /**
+    * @return The number of value slots assigned so far.
+    */
+   static int getValueCount()
+   {
+      return valueCount;
+   }
+
+   private static final class TypeSlots
+   {
+      private final int typeSlot;
+
+      /** Replaced, not modified, while holding {@link ContextSlots#lock}. */
+      private volatile Labels labels = new Labels(new String[0], new int[0]);
+
+      private TypeSlots(int typeSlot)
+      {
+         this.typeSlot = typeSlot;
+      }
+
+      private int find(String label)
+      {
+         Labels current = labels;
+         for (int i = 0; i < current.names.length; i++)
+         {
+            if (current.names[i].equals(label))
+               return current.slots[i];
+         }
+
+         return -1;
+      }
+
+      private void add(String label, int slot)
+      {
+         Labels current = labels;
+         int n = current.names.length;
+         String[] names = new String[n + 1];
+         int[] slots = new int[n + 1];
+         System.arraycopy(current.names, 0, names, 0, n);
+         System.arraycopy(current.slots, 0, slots, 0, n);
+         names[n] = label;
+         slots[n] = slot;
+         labels = new Labels(names, slots);
+      }
+   }
+
+   private static final class Labels
+   {
+      private final String[] names;
+      private final int[] slots;
+
+      private Labels(String[] names, int[] slots)
+      {
+         this.names = names;
+         this.slots = slots;
+      }
+   }
+}
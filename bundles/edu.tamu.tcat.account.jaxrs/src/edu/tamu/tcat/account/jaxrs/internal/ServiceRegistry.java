@@ -0,0 +1,109 @@
+package edu.tamu.tcat.account.jaxrs.internal;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * A registry of services keyed by {@link ClassAndId}, shared by the dynamic features that
+ * bind services supplied by the OSGi container and the filters they register.
+ * <p>
+ * Filters hold a {@link Handle} for the service they use rather than the service itself,
+ * and read it on each request. Reading a handle is a single volatile read, so the request
+ * path does not contend with binding or unbinding services, while rebinding a service
+ * (for example, after its keys are rotated) takes effect on the next request. A handle may
+ * be obtained before any service is bound to its key.
+ *
+ * @param <S> The type of service held by this registry.
+ */
+public class ServiceRegistry<S>
+{
+   private final ConcurrentMap<ClassAndId, Handle<S>> handles = new ConcurrentHashMap<>();
+   private final String serviceName;
+
+   /**
+    * @param serviceName A name for the type of service held, used in error messages.
+    */
+   public ServiceRegistry(String serviceName)
+   {
+      this.serviceName = serviceName;
+   }
+
+   /**
+    * Binds a service to a key, replacing any service previously bound to that key.
+    */
+   public void bind(ClassAndId key, S service)
+   {
+      Handle<S> handle = getHandle(key);
+      synchronized (handle)
+      {
+         handle.service = service;
+      }
+   }
+
+   /**
+    * Unbinds a service from a key. Does nothing if a different service has since been
+    * bound to that key, as the container may bind a replacement service before unbinding
+    * the service it replaces.
+    */
+   public void unbind(ClassAndId key, S service)
+   {
+      Handle<S> handle = handles.get(key);
+      if (handle == null)
+         return;
+
+      synchronized (handle)
+      {
+         if (handle.service == service)
+            handle.service = null;
+      }
+   }
+
+   /**
+    * @return The handle for the service bound to the supplied key. Will not be {@code null},
+    *       although no service may (yet) be bound to the key.
+    */
+   public Handle<S> getHandle(ClassAndId key)
+   {
+      return handles.computeIfAbsent(key, k -> new Handle<>(k, serviceName));
+   }
+
+   /**
+    * A late-bound reference to the service registered for a key. Updates are made while
+    * holding the lock of the handle; reads are not locked.
+    */
+   public static final class Handle<S> implements Supplier<S>
+   {
+      private final ClassAndId key;
+      private final String serviceName;
+      private volatile S service;
+
+      private Handle(ClassAndId key, String serviceName)
+      {
+         this.key = key;
+         this.serviceName = serviceName;
+      }
+
+      /**
+       * @return {@code true} if a service is currently bound to the key of this handle.
+       */
+      public boolean isBound()
+      {
+         return service != null;
+      }
+
+      /**
+       * @return The service currently bound to the key of this handle.
+       * @throws IllegalStateException If no service is bound.
+       */
+      @Override
+      public S get()
+      {
+         S svc = service;
+         if (svc == null)
+            throw new IllegalStateException("Unable to access " + serviceName + "<id:" + key.id + "," + key.cls.getSimpleName() + ">");
+
+         return svc;
+      }
+   }
+}
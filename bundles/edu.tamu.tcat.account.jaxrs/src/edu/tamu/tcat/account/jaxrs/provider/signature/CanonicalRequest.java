@@ -0,0 +1,48 @@
+package edu.tamu.tcat.account.jaxrs.provider.signature;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes the canonical form of a signed request, which precedes its entity in the signed data.
+ * The canonical form is:
+ * <pre>
+ * method SP path LF
+ * name ": " value LF      (for each value of each signed header, ordered by header name)
+ * LF
+ * </pre>
+ * encoded as UTF-8, regardless of the platform default charset.
+ *
+ * @since 2.2
+ */
+public final class CanonicalRequest
+{
+   private CanonicalRequest()
+   {
+   }
+
+   /**
+    * @param method The HTTP method of the request.
+    * @param path The path of the request, beginning with {@code '/'}.
+    * @param signedHeaders The signed headers of the request, as provided by
+    *       {@link edu.tamu.tcat.account.signature.SignatureService.Verifier#getSignedHeaders(Map)}.
+    * @return The canonical form of the request.
+    */
+   public static byte[] encode(String method, String path, Map<String, List<String>> signedHeaders)
+   {
+      String[] names = signedHeaders.keySet().toArray(new String[signedHeaders.size()]);
+      Arrays.sort(names);
+
+      StringBuilder sb = new StringBuilder(method).append(' ').append(path).append('\n');
+      for (String name : names)
+      {
+         for (String value : signedHeaders.get(name))
+            sb.append(name).append(": ").append(value).append('\n');
+      }
+      sb.append('\n');
+
+      return sb.toString().getBytes(StandardCharsets.UTF_8);
+   }
+}
@@ -0,0 +1,214 @@
+package edu.tamu.tcat.account.jaxrs.provider.signature;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import javax.ws.rs.ClientErrorException;
+import javax.ws.rs.core.Response;
+
+import edu.tamu.tcat.account.signature.SignatureException;
+import edu.tamu.tcat.account.signature.SignatureService.Verifier;
+
+/**
+ * Proxy input stream which saves data read through it for later insertion in a verifier.
+ * <p>
+ * Unlike {@link InputStreamByteArrayProxy}, the memory used is bounded: up to a threshold the
+ * data is kept in memory, and any further data is written to a temporary file. The total size
+ * of the data is also limited, and reading beyond that limit fails with a
+ * {@code 413 Request Entity Too Large} response.
+ * <p>
+ * {@link #release()} must be called once the data is no longer needed, to delete the
+ * temporary file. Closing the stream only closes the proxied stream, since message body
+ * readers may close it before the signature is verified.
+ *
+ * @since 2.2
+ */
+public class InputStreamBufferingProxy extends InputStream
+{
+   /**
+    * The default number of bytes kept in memory before data is written to a temporary file.
+    */
+   public static final int DEFAULT_MEMORY_THRESHOLD = 64 * 1024;
+   /**
+    * The default limit on the number of bytes read, 16 MiB. Applications accepting larger
+    * self-signed entities must configure a larger limit explicitly.
+    */
+   public static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024;
+
+   private static final int CHUNK_SIZE = 8 * 1024;
+
+   private final InputStream proxy;
+   private final byte[] startData;
+   private final int memoryThreshold;
+   private final long maxBytes;
+
+   private byte[] memory = new byte[0];
+   private int memoryCount;
+   private long count;
+   private Path file;
+   private OutputStream spill;
+
+   /**
+    * @param proxy The stream to read.
+    * @param startData Data preceding the data of the stream, which is inserted in the verifier
+    *       first. This is not copied, and does not count toward the limits.
+    * @param memoryThreshold The number of bytes to keep in memory.
+    * @param maxBytes The maximum number of bytes that may be read from the stream.
+    */
+   public InputStreamBufferingProxy(InputStream proxy, byte[] startData, int memoryThreshold, long maxBytes)
+   {
+      this.proxy = proxy;
+      this.startData = startData;
+      this.memoryThreshold = memoryThreshold;
+      this.maxBytes = maxBytes;
+   }
+
+   /**
+    * Inserts the data read through this stream, preceded by the start data, into a verifier.
+    *
+    * @param verifier The verifier to insert the data in.
+    */
+   public void writeTo(Verifier verifier) throws IOException, SignatureException
+   {
+      if (startData.length > 0)
+         verifier.processSignedData(startData);
+      if (memoryCount > 0)
+         verifier.processSignedData(memory, 0, memoryCount);
+      if (spill == null)
+         return;
+
+      spill.flush();
+      byte[] chunk = new byte[CHUNK_SIZE];
+      try (InputStream in = Files.newInputStream(file))
+      {
+         int bytesRead;
+         while ((bytesRead = in.read(chunk)) > 0)
+            verifier.processSignedData(chunk, 0, bytesRead);
+      }
+   }
+
+   /**
+    * Discards the data read through this stream, deleting the temporary file if there is one.
+    */
+   public void release() throws IOException
+   {
+      memory = null;
+      if (spill == null)
+         return;
+
+      try
+      {
+         spill.close();
+      }
+      finally
+      {
+         spill = null;
+         Files.deleteIfExists(file);
+      }
+   }
+
+   @Override
+   public int read() throws IOException
+   {
+      int value = proxy.read();
+      if (value > -1)
+      {
+         requireCapacity(1);
+         if (memoryCount < memoryThreshold)
+         {
+            ensureMemory(1);
+            memory[memoryCount++] = (byte)value;
+         }
+         else
+         {
+            getSpill().write(value);
+         }
+      }
+      return value;
+   }
+
+   @Override
+   public int read(byte[] b, int off, int len) throws IOException
+   {
+      int bytesRead = proxy.read(b, off, len);
+      if (bytesRead > 0)
+      {
+         requireCapacity(bytesRead);
+         int inMemory = Math.min(bytesRead, memoryThreshold - memoryCount);
+         if (inMemory > 0)
+         {
+            ensureMemory(inMemory);
+            System.arraycopy(b, off, memory, memoryCount, inMemory);
+            memoryCount += inMemory;
+         }
+         if (inMemory < bytesRead)
+            getSpill().write(b, off + inMemory, bytesRead - inMemory);
+      }
+      return bytesRead;
+   }
+
+   private void requireCapacity(int bytesRead)
+   {
+      count += bytesRead;
+      if (count > maxBytes)
+         throw new ClientErrorException(Response.Status.REQUEST_ENTITY_TOO_LARGE);
+   }
+
+   private void ensureMemory(int bytes)
+   {
+      int required = memoryCount + bytes;
+      if (required > memory.length)
+         memory = Arrays.copyOf(memory, Math.min(memoryThreshold, Math.max(required, Math.max(256, memory.length * 2))));
+   }
+
+   private OutputStream getSpill() throws IOException
+   {
+      if (spill == null)
+      {
+         file = Files.createTempFile("signed-body", ".tmp");
+         spill = new BufferedOutputStream(Files.newOutputStream(file), CHUNK_SIZE);
+      }
+      return spill;
+   }
+
+   @Override
+   public long skip(long n) throws IOException
+   {
+      throw new UnsupportedOperationException("Skipping bytes interferes with signature");
+   }
+
+   @Override
+   public int available() throws IOException
+   {
+      return proxy.available();
+   }
+
+   @Override
+   public void close() throws IOException
+   {
+      proxy.close();
+   }
+
+   @Override
+   public synchronized void mark(int readlimit)
+   {
+      throw new UnsupportedOperationException("Marking interferes with signature");
+   }
+
+   @Override
+   public synchronized void reset() throws IOException
+   {
+      throw new UnsupportedOperationException("Reseting interferes with signature");
+   }
+
+   @Override
+   public boolean markSupported()
+   {
+      return false;
+   }
+}
@@ -2,39 +2,92 @@ package edu.tamu.tcat.account.jaxrs.provider.signature;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 import edu.tamu.tcat.account.signature.SignatureException;
 import edu.tamu.tcat.account.signature.SignatureService.Verifier;
 
 /**
  * Proxy input stream which feeds data through a verifier during read.
+ * <p>
+ * Data is collected in a reusable chunk before it is passed to the verifier, so that readers
+ * making many small reads do not cause a verifier call (and allocation) per read. Reads at
+ * least as large as the chunk are passed to the verifier directly. Data still in the chunk
+ * is passed to the verifier at the end of the stream, when the stream is closed, or by
+ * {@link #flushToVerifier()}, which must be called before verifying the signature.
  */
 public class InputStreamSignatureVerifierProxy extends InputStream
 {
+   /**
+    * The default size of the chunk in which data is collected.
+    * @since 2.2
+    */
+   public static final int DEFAULT_CHUNK_SIZE = 8 * 1024;
+   
    private final InputStream proxy;
    private final Verifier verifier;
+   private final ByteBuffer chunk;
    
    public InputStreamSignatureVerifierProxy(InputStream proxy, Verifier verifier)
+   {
+      this(proxy, verifier, DEFAULT_CHUNK_SIZE);
+   }
+   
+   /**
+    * @param proxy The stream to read.
+    * @param verifier The verifier to pass the data to.
+    * @param chunkSize The number of bytes to collect before passing them to the verifier.
+    * @since 2.2
+    */
+   public InputStreamSignatureVerifierProxy(InputStream proxy, Verifier verifier, int chunkSize)
    {
       this.proxy = proxy;
       this.verifier = verifier;
+      this.chunk = ByteBuffer.allocate(chunkSize);
+   }
+   
+   /**
+    * Passes any data collected but not yet passed to the verifier.
+    * @throws SignatureException Thrown if the verifier cannot process the data.
+    * @since 2.2
+    */
+   public void flushToVerifier() throws SignatureException
+   {
+      if (chunk.position() == 0)
+         return;
+      
+      chunk.flip();
+      try
+      {
+         verifier.processSignedData(chunk);
+      }
+      finally
+      {
+         chunk.clear();
+      }
    }
    
    @Override
    public int read() throws IOException
    {
       int value = proxy.read();
-      if (value > -1)
+      try
       {
-         try
+         if (value > -1)
          {
-            verifier.processSignedData(new byte[]{(byte)value});
+            chunk.put((byte)value);
+            if (!chunk.hasRemaining())
+               flushToVerifier();
          }
-         catch (SignatureException e)
+         else
          {
-            throw new IOException(e);
+            flushToVerifier();
          }
       }
+      catch (SignatureException e)
+      {
+         throw new IOException(e);
+      }
       return value;
    }
    
@@ -42,17 +95,35 @@ public class InputStreamSignatureVerifierProxy extends InputStream
    public int read(byte[] b, int off, int len) throws IOException
    {
       int bytesRead = proxy.read(b, off, len);
-      if (bytesRead > 0)
+      try
       {
-         try
+         if (bytesRead > 0)
          {
-            verifier.processSignedData(b, off, bytesRead);
+            if (bytesRead <= chunk.remaining())
+            {
+               chunk.put(b, off, bytesRead);
+               if (!chunk.hasRemaining())
+                  flushToVerifier();
+            }
+            else
+            {
+               // passed in order, after any data already collected
+               flushToVerifier();
+               if (bytesRead < chunk.capacity())
+                  chunk.put(b, off, bytesRead);
+               else
+                  verifier.processSignedData(b, off, bytesRead);
+            }
          }
-         catch (SignatureException e)
+         else if (bytesRead < 0)
          {
-            throw new IOException(e);
+            flushToVerifier();
          }
       }
+      catch (SignatureException e)
+      {
+         throw new IOException(e);
+      }
       return bytesRead;
    }
    
@@ -71,7 +142,18 @@ public class InputStreamSignatureVerifierProxy extends InputStream
    @Override
    public void close() throws IOException
    {
-      proxy.close();
+      try
+      {
+         flushToVerifier();
+      }
+      catch (SignatureException e)
+      {
+         throw new IOException(e);
+      }
+      finally
+      {
+         proxy.close();
+      }
    }
    
    @Override
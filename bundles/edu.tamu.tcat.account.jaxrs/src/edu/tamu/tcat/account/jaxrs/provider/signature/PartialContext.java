@@ -1,5 +1,6 @@
 package edu.tamu.tcat.account.jaxrs.provider.signature;
 
+import edu.tamu.tcat.account.signature.SignatureService;
 import edu.tamu.tcat.account.signature.SignatureService.Verifier;
 import edu.tamu.tcat.account.signature.SignatureService.SelfSignedVerifier;
 
@@ -9,12 +10,22 @@ import edu.tamu.tcat.account.signature.SignatureService.SelfSignedVerifier;
  */
 class PartialContext<PayloadType>
 {
+   /**
+    * The service that began processing the request. Interceptors use this service so that a
+    * request is processed by a single service, even if the bound service changes meanwhile.
+    */
+   public SignatureService<PayloadType> signatureService;
    public String accountIdentifier;
    public Verifier verifier;
    public SelfSignedVerifier<PayloadType> selfSignedVerifier;
    public PayloadType payload;
    public byte[] signature;
-   public String signPrefix;
+   /** The canonical form of the request; see {@link CanonicalRequest}. */
+   public byte[] signPrefix;
+   /** Records the signed data once verified, or {@code null} if replays are not rejected. */
+   public ReplayGuard replayGuard;
+   /** Digests the data passed to the verifier, if replays are rejected. */
+   public SignedDataDigest<PayloadType> signedData;
    
    public PartialContext(String accountIdentifier, byte[] signature)
    {
@@ -0,0 +1,303 @@
+package edu.tamu.tcat.account.jaxrs.provider.signature;
+
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Remembers the signed data of verified requests for a period of time, so that a captured
+ * request cannot be replayed while its signed date is still accepted. A replay guard may be
+ * set on the {@link SignatureDynamicFeature}, which will then reject any request whose
+ * signed data (the canonical request and any entity) has already been seen for the same
+ * account. Requests are not identified by their signatures, since signature schemes such as
+ * ECDSA allow another valid signature of the same data to be derived from a captured one.
+ * <p>
+ * The window must be at least as long as the period over which the
+ * {@link edu.tamu.tcat.account.signature.SignatureService.Verifier}s of the secured services
+ * accept a signed date, including any allowance for clock skew; a request first seen at the
+ * end of that period could otherwise be replayed once it has been forgotten.
+ * <p>
+ * Requests are identified by a keyed 64-bit fingerprint of the account identifier and a
+ * digest of the signed data, and are held in a ring of buckets, each covering an equal part
+ * of the window. A request is remembered for at least the window, and at most one bucket longer; a bucket
+ * is discarded, and its memory released, once all of its requests are older than the window.
+ * Buckets are split among stripes by fingerprint, each with its own lock, so that concurrent
+ * requests rarely contend. Checking a request probes one table per bucket of one stripe.
+ * <p>
+ * Memory use is bounded by the capacity supplied on construction: at most about 32 bytes for
+ * each request each bucket may hold.
+ * <p>
+ * Instances are thread-safe.
+ *
+ * @since 2.2
+ */
+public class ReplayGuard
+{
+   /** The default number of buckets into which the window is divided. */
+   public static final int DEFAULT_BUCKETS = 16;
+
+   private static final int STRIPES = 16;
+   private static final int INITIAL_TABLE_SIZE = 16;
+   private static final long EMPTY = 0;
+
+   private final Clock clock;
+   private final Duration window;
+   private final int buckets;
+   private final long bucketMillis;
+   private final int stripeCapacity;
+   private final long seed;
+   private final Stripe[] stripes = new Stripe[STRIPES];
+
+   /**
+    * Construct a new replay guard, dividing the window into {@link #DEFAULT_BUCKETS} buckets.
+    *
+    * @param window The period for which requests are remembered.
+    * @param capacity The maximum number of requests that may be recorded in each bucket, that
+    *       is, in each sixteenth of the window.
+    */
+   public ReplayGuard(Duration window, int capacity)
+   {
+      this(window, DEFAULT_BUCKETS, capacity, Clock.systemUTC());
+   }
+
+   /**
+    * Construct a new replay guard.
+    *
+    * @param window The period for which requests are remembered.
+    * @param buckets The number of buckets into which the window is divided. More buckets
+    *       release memory sooner after requests age out, at the cost of more probes for
+    *       each request checked.
+    * @param capacity The maximum number of requests that may be recorded in each bucket.
+    *       Signatures are divided among stripes by fingerprint, and each stripe is limited to
+    *       its share of the capacity, so slightly fewer may be recorded in practice.
+    * @param clock The clock used to determine when requests are seen.
+    */
+   public ReplayGuard(Duration window, int buckets, int capacity, Clock clock)
+   {
+      if (window.isNegative() || window.isZero())
+         throw new IllegalArgumentException("Window must be positive [" + window + "]");
+      if (buckets <= 0 || buckets > 64)
+         throw new IllegalArgumentException("Buckets must be between 1 and 64 [" + buckets + "]");
+      if (capacity <= 0 || capacity > (1 << 28))
+         throw new IllegalArgumentException("Capacity must be between 1 and 2^28 [" + capacity + "]");
+
+      this.clock = Objects.requireNonNull(clock);
+      this.window = window;
+      this.buckets = buckets;
+      // rounded up, so that the buckets together cover at least the window
+      this.bucketMillis = Math.max(1, (window.toMillis() + buckets - 1) / buckets);
+      this.stripeCapacity = (capacity + STRIPES - 1) / STRIPES;
+      this.seed = new SecureRandom().nextLong();
+
+      // one more bucket than covers the window, holding requests while the oldest ages out
+      for (int i = 0; i < STRIPES; i++)
+         stripes[i] = new Stripe(buckets + 1);
+   }
+
+   /**
+    * @return The period for which requests are remembered.
+    */
+   public Duration getWindow()
+   {
+      return window;
+   }
+
+   /**
+    * Records that a request has been seen, if it has not been seen within the window.
+    *
+    * @param identifier The account identifier of the request.
+    * @param signed Identifies what was signed, typically a digest of the signed data. The
+    *       signature itself should not be used if it can be altered without the signing key.
+    * @return {@code true} if the request had not been seen within the window, {@code false}
+    *       if the request is a replay.
+    * @throws IllegalStateException If the current bucket already holds the maximum number of
+    *       requests, in which case it cannot be determined whether later requests are replays.
+    */
+   public boolean record(String identifier, byte[] signed)
+   {
+      long fp = fingerprint(identifier, signed);
+      long bucket = clock.millis() / bucketMillis;
+      Stripe stripe = stripes[(int)(fp >>> 60)];
+      synchronized (stripe)
+      {
+         if (stripe.contains(fp, bucket - buckets))
+            return false;
+
+         stripe.add(fp, bucket, stripeCapacity);
+         return true;
+      }
+   }
+
+   /**
+    * @return The number of requests currently remembered. This may include requests
+    *       older than the window whose buckets have not yet been discarded.
+    */
+   public int size()
+   {
+      int size = 0;
+      for (Stripe stripe : stripes)
+      {
+         synchronized (stripe)
+         {
+            for (int count : stripe.sizes)
+               size += count;
+         }
+      }
+      return size;
+   }
+
+   /**
+    * Discards all buckets whose requests are older than the window. This is performed
+    * for each stripe as requests are recorded, but may also be called periodically to
+    * release memory when few requests are received.
+    */
+   public void purge()
+   {
+      long oldest = clock.millis() / bucketMillis - buckets;
+      for (Stripe stripe : stripes)
+      {
+         synchronized (stripe)
+         {
+            stripe.discardBefore(oldest);
+         }
+      }
+   }
+
+   /**
+    * Computes a seeded 64-bit hash of the identifier and signed data. The seed is private to
+    * this guard, so fingerprint collisions cannot be chosen by clients.
+    */
+   private long fingerprint(String identifier, byte[] signed)
+   {
+      long h = seed ^ 0xcbf29ce484222325L;
+      int length = identifier.length();
+      for (int i = 0; i < length; i++)
+      {
+         h ^= identifier.charAt(i);
+         h *= 0x100000001b3L;
+      }
+
+      // the length separates the identifier from the signed data
+      h ^= length;
+      h *= 0x100000001b3L;
+      for (byte b : signed)
+      {
+         h ^= b & 0xFF;
+         h *= 0x100000001b3L;
+      }
+
+      // final avalanche (MurmurHash3 fmix64)
+      h ^= h >>> 33;
+      h *= 0xff51afd7ed558ccdL;
+      h ^= h >>> 33;
+      h *= 0xc4ceb9fe1a85ec53L;
+      h ^= h >>> 33;
+
+      return (h == EMPTY) ? 1 : h;
+   }
+
+   /**
+    * The ring of buckets for the fingerprints of one stripe. Each bucket is a hash set using
+    * open addressing with linear probing, allocated when first used and released when
+    * discarded. Accessed only while holding the lock on the stripe.
+    */
+   private static final class Stripe
+   {
+      /** The bucket number held in each slot of the ring. */
+      final long[] bucketNumbers;
+      final long[][] tables;
+      final int[] sizes;
+
+      Stripe(int slots)
+      {
+         bucketNumbers = new long[slots];
+         tables = new long[slots][];
+         sizes = new int[slots];
+      }
+
+      /**
+       * @return {@code true} if the fingerprint is held in a bucket numbered {@code oldest}
+       *       or later. Earlier buckets are discarded.
+       */
+      boolean contains(long fp, long oldest)
+      {
+         for (int i = 0; i < tables.length; i++)
+         {
+            long[] table = tables[i];
+            if (table == null)
+               continue;
+
+            if (bucketNumbers[i] < oldest)
+               discard(i);
+            else if (table[find(table, fp)] == fp)
+               return true;
+         }
+         return false;
+      }
+
+      void add(long fp, long bucket, int capacity)
+      {
+         int slot = (int)Math.floorMod(bucket, (long)tables.length);
+         // a later bucket is kept if the clock has been set back, and so is merely retained longer
+         if (bucketNumbers[slot] < bucket)
+         {
+            discard(slot);
+            bucketNumbers[slot] = bucket;
+         }
+
+         if (sizes[slot] >= capacity)
+            throw new IllegalStateException("Replay guard is full [" + capacity + " requests in stripe]");
+
+         long[] table = tables[slot];
+         if (table == null)
+            table = tables[slot] = new long[INITIAL_TABLE_SIZE];
+         else if (sizes[slot] * 2 >= table.length)
+            table = tables[slot] = rehash(table);
+
+         table[find(table, fp)] = fp;
+         sizes[slot]++;
+      }
+
+      void discardBefore(long oldest)
+      {
+         for (int i = 0; i < tables.length; i++)
+         {
+            if (tables[i] != null && bucketNumbers[i] < oldest)
+               discard(i);
+         }
+      }
+
+      private void discard(int slot)
+      {
+         tables[slot] = null;
+         sizes[slot] = 0;
+      }
+
+      /** Doubles the size of a table, keeping the load factor at or below one half. */
+      private static long[] rehash(long[] table)
+      {
+         long[] rehashed = new long[table.length * 2];
+         for (long fp : table)
+         {
+            if (fp != EMPTY)
+               rehashed[find(rehashed, fp)] = fp;
+         }
+         return rehashed;
+      }
+
+      /**
+       * @return The slot holding the supplied fingerprint, or the empty slot at which it
+       *       should be inserted.
+       */
+      private static int find(long[] table, long fp)
+      {
+         int mask = table.length - 1;
+         int slot = (int)(fp ^ (fp >>> 32)) & mask;
+         while (table[slot] != EMPTY && table[slot] != fp)
+            slot = (slot + 1) & mask;
+
+         return slot;
+      }
+   }
+}
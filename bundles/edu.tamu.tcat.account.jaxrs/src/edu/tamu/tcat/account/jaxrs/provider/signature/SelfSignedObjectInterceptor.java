@@ -2,10 +2,14 @@ package edu.tamu.tcat.account.jaxrs.provider.signature;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.function.Supplier;
 
+import javax.ws.rs.ClientErrorException;
 import javax.ws.rs.InternalServerErrorException;
 import javax.ws.rs.NotAuthorizedException;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
 import javax.ws.rs.ext.ReaderInterceptor;
 import javax.ws.rs.ext.ReaderInterceptorContext;
 
@@ -17,45 +21,93 @@ import edu.tamu.tcat.account.signature.SignatureService;
 
 public class SelfSignedObjectInterceptor<PayloadType> implements ReaderInterceptor
 {
-   private final SignatureService<PayloadType> signatureService;
+   private final Supplier<SignatureService<PayloadType>> signatureService;
    private final SignatureSecured annot;
+   private final int memoryThreshold;
+   private final long maxBodySize;
 
    public SelfSignedObjectInterceptor(SignatureService<PayloadType> signatureService, SignatureSecured annot)
+   {
+      this(() -> signatureService, annot);
+   }
+
+   /**
+    * Uses the default limits of {@link InputStreamBufferingProxy} on the retained entity.
+    *
+    * @param signatureService Supplies the signature service for requests that were not
+    *       processed by a {@link SignedObjectFilter}.
+    * @param annot The annotation of the secured resource method.
+    * @since 2.2
+    */
+   public SelfSignedObjectInterceptor(Supplier<SignatureService<PayloadType>> signatureService, SignatureSecured annot)
+   {
+      this(signatureService, annot, InputStreamBufferingProxy.DEFAULT_MEMORY_THRESHOLD, InputStreamBufferingProxy.DEFAULT_MAX_BYTES);
+   }
+
+   /**
+    * Since the payload of a self-signed request is obtained from its entity, the entity is
+    * retained until the signature can be checked, in memory up to the given threshold and in
+    * a temporary file beyond it.
+    *
+    * @param signatureService Supplies the signature service for requests that were not
+    *       processed by a {@link SignedObjectFilter}.
+    * @param annot The annotation of the secured resource method.
+    * @param memoryThreshold The number of bytes of the entity to retain in memory.
+    * @param maxBodySize The maximum size of the entity in bytes. Larger requests are rejected
+    *       with {@code 413 Request Entity Too Large}.
+    * @since 2.2
+    */
+   public SelfSignedObjectInterceptor(Supplier<SignatureService<PayloadType>> signatureService, SignatureSecured annot,
+         int memoryThreshold, long maxBodySize)
    {
       this.signatureService = signatureService;
       this.annot = annot;
+      this.memoryThreshold = memoryThreshold;
+      this.maxBodySize = maxBodySize;
    }
 
    @Override
    public Object aroundReadFrom(ReaderInterceptorContext context) throws IOException, WebApplicationException
    {
-      String authorizationScope = signatureService.getAuthorizationScope();
       try
       {
          @SuppressWarnings("unchecked")
          PartialContext<PayloadType> partialContext = ContextBean.from(context).install(PartialContext.class).get("");
+         SignatureService<PayloadType> signatureService = (partialContext == null)
+               ? SignedObjectFilter.getSignatureService(this.signatureService)
+               : partialContext.signatureService;
+         String authorizationScope = signatureService.getAuthorizationScope();
          if (partialContext == null)
             throw new NotAuthorizedException(authorizationScope);
          PayloadType existingPayload = partialContext.payload;
+         requireContentLength(context);
          
          try (InputStream inputStream = context.getInputStream())
          {
-            SignatureStreamDelayedPublicKeyVerifier<PayloadType> verifier = SignatureVerification.createVerifier(partialContext.selfSignedVerifier, partialContext.signPrefix.getBytes(),
-                  inputStream, authorizationScope);
-            context.setInputStream(verifier.getProxyStream());
-            Object result = context.proceed();
+            SignatureStreamDelayedPublicKeyVerifier<PayloadType> verifier = SignatureVerification.createVerifier(partialContext.selfSignedVerifier, partialContext.signPrefix,
+                  inputStream, authorizationScope, memoryThreshold, maxBodySize);
+            try
+            {
+               context.setInputStream(verifier.getProxyStream());
+               Object result = context.proceed();
             
-            PayloadType payload;
-            if (existingPayload != null)
-               payload = existingPayload;
-            else
-               payload = signatureService.getSelfSigningPayload(result);
+               PayloadType payload;
+               if (existingPayload != null)
+                  payload = existingPayload;
+               else
+                  payload = signatureService.getSelfSigningPayload(result);
             
-            verifier.checkSignature(payload);
+               verifier.checkSignature(payload);
+               SignatureVerification.requireFirstUse(partialContext);
             
-            ContextBean.from(context).install(signatureService.getPayloadType()).set(annot.label(), payload);
+               ContextBean.from(context).install(signatureService.getPayloadType()).set(annot.label(), payload);
             
-            return result;
+               return result;
+            }
+            finally
+            {
+               verifier.release();
+            }
          }
       }
       catch (AccountException e)
@@ -63,4 +115,25 @@ public class SelfSignedObjectInterceptor<PayloadType> implements ReaderIntercept
          throw new InternalServerErrorException();
       }
    }
+
+   /**
+    * Rejects requests that declare an entity larger than permitted before it is read. Entities
+    * of unknown length are limited as they are read.
+    */
+   private void requireContentLength(ReaderInterceptorContext context)
+   {
+      String contentLength = context.getHeaders().getFirst(HttpHeaders.CONTENT_LENGTH);
+      if (contentLength == null)
+         return;
+
+      try
+      {
+         if (Long.parseLong(contentLength.trim()) > maxBodySize)
+            throw new ClientErrorException(Response.Status.REQUEST_ENTITY_TOO_LARGE);
+      }
+      catch (NumberFormatException e)
+      {
+         // left to the container
+      }
+   }
 }
@@ -1,32 +1,81 @@
 package edu.tamu.tcat.account.jaxrs.provider.signature;
 
 import java.lang.reflect.Method;
-import java.util.HashMap;
 import java.util.Map;
-import java.util.Objects;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
 
 import javax.ws.rs.container.DynamicFeature;
 import javax.ws.rs.container.ResourceInfo;
 import javax.ws.rs.core.FeatureContext;
 import javax.ws.rs.ext.Provider;
-import javax.ws.rs.ext.ReaderInterceptor;
 
 import edu.tamu.tcat.account.jaxrs.bean.SignatureSecured;
 import edu.tamu.tcat.account.jaxrs.internal.ClassAndId;
+import edu.tamu.tcat.account.jaxrs.internal.ContextSlots;
+import edu.tamu.tcat.account.jaxrs.internal.ServiceRegistry;
 import edu.tamu.tcat.account.signature.SignatureService;
 
+/**
+ * Registers the signature filter and interceptor for resource methods annotated with
+ * {@link SignatureSecured}.
+ * <p>
+ * As with {@link edu.tamu.tcat.account.jaxrs.provider.token.TokenDynamicFeature}, the
+ * {@link SignatureService} is looked up on each request, so services may be bound or
+ * rebound after the JAX-RS application has been deployed.
+ */
 @Provider
 public class SignatureDynamicFeature implements DynamicFeature
 {
+   private static final Logger debug = Logger.getLogger(SignatureDynamicFeature.class.getName());
+
    private static final String SCOPE_ID_KEY = "scopeId";
    
-   private Map<ClassAndId, SignatureService<?>> signatureServices = new HashMap<>();
+   private final ServiceRegistry<SignatureService<?>> signatureServices = new ServiceRegistry<>("SignatureService");
+   private volatile int selfSignedMemoryThreshold = InputStreamBufferingProxy.DEFAULT_MEMORY_THRESHOLD;
+   private volatile long selfSignedMaxBodySize = InputStreamBufferingProxy.DEFAULT_MAX_BYTES;
+   private volatile ReplayGuard replayGuard;
 
-   public synchronized void bind(SignatureService<?> svc, Map<String, Object> properties)
+   /**
+    * Sets the limits on the request entities retained to verify self-signed requests, whose
+    * signatures can only be checked once the entity has been read. Applies to resource methods
+    * configured after this call.
+    *
+    * @param memoryThreshold The number of bytes of an entity to retain in memory; the remainder
+    *       is written to a temporary file. Defaults to
+    *       {@link InputStreamBufferingProxy#DEFAULT_MEMORY_THRESHOLD}.
+    * @param maxBodySize The maximum size of an entity in bytes. Larger requests are rejected with
+    *       {@code 413 Request Entity Too Large}. Defaults to
+    *       {@link InputStreamBufferingProxy#DEFAULT_MAX_BYTES}.
+    * @since 2.2
+    */
+   public void setSelfSignedBodyLimits(int memoryThreshold, long maxBodySize)
+   {
+      if (memoryThreshold < 0 || maxBodySize < 0)
+         throw new IllegalArgumentException("Limits must not be negative");
+      this.selfSignedMemoryThreshold = memoryThreshold;
+      this.selfSignedMaxBodySize = maxBodySize;
+   }
+
+   /**
+    * Sets the replay guard used to reject requests whose signature has already been seen. Its
+    * window must cover the signed dates accepted by the bound services; see {@link ReplayGuard}.
+    * Applies to resource methods configured after this call. By default no replay guard is used,
+    * and a signed request may be repeated for as long as its signed date is accepted.
+    *
+    * @param replayGuard The replay guard to use, or {@code null} to accept replayed requests.
+    * @since 2.2
+    */
+   public void setReplayGuard(ReplayGuard replayGuard)
+   {
+      this.replayGuard = replayGuard;
+   }
+
+   public void bind(SignatureService<?> svc, Map<String, Object> properties)
    {
       ClassAndId classAndId = getClassAndId(svc, properties);
       
-      signatureServices.put(classAndId, svc);
+      signatureServices.bind(classAndId, svc);
    }
 
    private ClassAndId getClassAndId(SignatureService<?> svc, Map<String, Object> properties)
@@ -41,10 +90,10 @@ public class SignatureDynamicFeature implements DynamicFeature
       return classAndId;
    }
    
-   public synchronized void unbind(SignatureService<?> svc, Map<String, Object> properties)
+   public void unbind(SignatureService<?> svc, Map<String, Object> properties)
    {
       ClassAndId classAndId = getClassAndId(svc, properties);
-      signatureServices.remove(classAndId);
+      signatureServices.unbind(classAndId, svc);
    }
    
    public void activate()
@@ -64,21 +113,26 @@ public class SignatureDynamicFeature implements DynamicFeature
    
    private <T> void registerSecurity(FeatureContext context, SignatureSecured signatureSecured, Class<T> payloadType)
    {
-      SignatureService<T> signatureService = getService(payloadType, signatureSecured.scopeId());
-      context.register(new SignedObjectFilter<T>(signatureService, signatureSecured));
-      ReaderInterceptor interceptor;
-      if (signatureService.mayBeSelfSigned())
-         interceptor = new SelfSignedObjectInterceptor<T>(signatureService, signatureSecured);
-      else
-         interceptor = new SignedObjectInterceptor<T>(signatureService, signatureSecured);
-      context.register(interceptor);
+      Supplier<SignatureService<T>> signatureService = getService(payloadType, signatureSecured.scopeId());
+
+      // assign the per-request context slots used by the filter and interceptor, so that the
+      // context allocated for each request has room for them
+      ContextSlots.getTypeSlot(payloadType);
+      ContextSlots.getValueSlot(payloadType, signatureSecured.label());
+      ContextSlots.getTypeSlot(PartialContext.class);
+      ContextSlots.getValueSlot(PartialContext.class, "");
+
+      context.register(new SignedObjectFilter<T>(signatureService, signatureSecured, replayGuard));
+      context.register(new SignedObjectDispatchingInterceptor<T>(signatureService, signatureSecured, selfSignedMemoryThreshold, selfSignedMaxBodySize));
    }
    
-   private synchronized <T> SignatureService<T> getService(Class<T> payloadType, String scopeId)
+   @SuppressWarnings({ "unchecked", "rawtypes" })
+   private <T> Supplier<SignatureService<T>> getService(Class<T> payloadType, String scopeId)
    {
-      @SuppressWarnings("unchecked")
-      SignatureService<T> signatureService = (SignatureService<T>)signatureServices.get(new ClassAndId(payloadType, scopeId));
-      Objects.requireNonNull(signatureService, "Unable to access SignatureService<id:"+scopeId+","+payloadType.getSimpleName()+">");
-      return signatureService;
+      // services are keyed by their payload type, so the handle only ever holds a SignatureService<T>
+      ServiceRegistry.Handle<SignatureService<?>> handle = signatureServices.getHandle(new ClassAndId(payloadType, scopeId));
+      if (!handle.isBound())
+         debug.info("No SignatureService<id:" + scopeId + "," + payloadType.getSimpleName() + "> is bound yet; requests will fail until one is available");
+      return (Supplier)handle;
    }
 }
@@ -1,5 +1,6 @@
 package edu.tamu.tcat.account.jaxrs.provider.signature;
 
+import java.io.IOException;
 import java.io.InputStream;
 
 import edu.tamu.tcat.account.signature.SignatureException;
@@ -25,6 +26,15 @@ public interface SignatureStreamVerifier
        * @param payload The payload which is used by the underlying verifier.
        */
       void checkSignature(PayloadType payload);
+      
+      /**
+       * Discard any data retained to check the signature. Called once the signature has been checked,
+       * or reading the message has failed.
+       * @since 2.2
+       */
+      default void release() throws IOException
+      {
+      }
    }
    
    /**
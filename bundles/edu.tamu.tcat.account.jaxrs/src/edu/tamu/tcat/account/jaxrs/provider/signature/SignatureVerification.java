@@ -5,6 +5,7 @@ import java.io.InputStream;
 
 import javax.ws.rs.BadRequestException;
 import javax.ws.rs.InternalServerErrorException;
+import javax.ws.rs.ServiceUnavailableException;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
@@ -50,17 +51,66 @@ public class SignatureVerification
    }
    
    /**
-    * Method to fetch a {@link SignatureStreamDelayedPublicKeyVerifier} to check a message's signature
+    * Records the signed data of a verified request with its replay guard, if it has one, and
+    * rejects the request if the same data has been signed by the same account before.
+    * @param partialContext The context of the verified request
+    */
+   static void requireFirstUse(PartialContext<?> partialContext)
+   {
+      ReplayGuard replayGuard = partialContext.replayGuard;
+      if (replayGuard == null)
+         return;
+      
+      boolean firstUse;
+      try
+      {
+         firstUse = replayGuard.record(partialContext.accountIdentifier, partialContext.signedData.digest());
+      }
+      catch (IllegalStateException e)
+      {
+         // replays cannot be detected until older signatures age out
+         throw new ServiceUnavailableException(e.getMessage());
+      }
+      
+      if (!firstUse)
+         throw new BadRequestException(Response.status(Response.Status.BAD_REQUEST)
+               .entity("Replayed request")
+               .type(MediaType.TEXT_PLAIN)
+               .build());
+   }
+   
+   /**
+    * Method to fetch a {@link SignatureStreamDelayedPublicKeyVerifier} to check a message's signature.
+    * The message may be at most {@link InputStreamBufferingProxy#DEFAULT_MAX_BYTES} long.
     * @param verifier The verifier to use
     * @param messageStart The start of the message on which to check the signature
     * @param input An {@link InputStream} through which the rest of the message will be read
     * @param authorizationScope The scope of the authorization (used for HTTP response in case of failure)
     */
    public static <T> SignatureStreamDelayedPublicKeyVerifier<T> createVerifier(SelfSignedVerifier<T> verifier, byte[] messageStart, InputStream input, String authorizationScope) throws IOException
+   {
+      return createVerifier(verifier, messageStart, input, authorizationScope,
+            InputStreamBufferingProxy.DEFAULT_MEMORY_THRESHOLD, InputStreamBufferingProxy.DEFAULT_MAX_BYTES);
+   }
+   
+   /**
+    * Method to fetch a {@link SignatureStreamDelayedPublicKeyVerifier} to check a message's signature.
+    * The rest of the message is retained until the signature is checked, in memory up to the given
+    * threshold and in a temporary file beyond it; see {@link InputStreamBufferingProxy}.
+    * @param verifier The verifier to use
+    * @param messageStart The start of the message on which to check the signature
+    * @param input An {@link InputStream} through which the rest of the message will be read
+    * @param authorizationScope The scope of the authorization (used for HTTP response in case of failure)
+    * @param memoryThreshold The number of bytes of the message to retain in memory
+    * @param maxBytes The maximum number of bytes that may be read from the input
+    * @since 2.2
+    */
+   public static <T> SignatureStreamDelayedPublicKeyVerifier<T> createVerifier(SelfSignedVerifier<T> verifier, byte[] messageStart, InputStream input, String authorizationScope,
+         int memoryThreshold, long maxBytes) throws IOException
    {
       return new SignatureStreamDelayedPublicKeyVerifier<T>()
       {
-         InputStreamByteArrayProxy proxy = new InputStreamByteArrayProxy(input, messageStart);
+         InputStreamBufferingProxy proxy = new InputStreamBufferingProxy(input, messageStart, memoryThreshold, maxBytes);
          
          @Override
          public InputStream getProxyStream()
@@ -71,7 +121,23 @@ public class SignatureVerification
          @Override
          public void checkSignature(T payload)
          {
-            requireValid(verifier, payload, proxy.getBytes(), authorizationScope);
+            try
+            {
+               verifier.usePayload(payload);
+               // streamed from the buffer, rather than copied into a single array
+               proxy.writeTo(verifier);
+               requireVerification(verifier);
+            }
+            catch (IOException | SignatureException e)
+            {
+               throw new InternalServerErrorException("Could not verify signature", e);
+            }
+         }
+         
+         @Override
+         public void release() throws IOException
+         {
+            proxy.release();
          }
       };
    }
@@ -93,7 +159,7 @@ public class SignatureVerification
       {
          throw new InternalServerErrorException("Could not verify signature", e);
       }
-      final InputStream proxy = new InputStreamSignatureVerifierProxy(input, verifier);
+      final InputStreamSignatureVerifierProxy proxy = new InputStreamSignatureVerifierProxy(input, verifier);
       return new SignatureStreamWithPublicKeyVerifier()
       {
          @Override
@@ -105,6 +171,8 @@ public class SignatureVerification
          @Override
          public void checkSignature() throws SignatureException
          {
+            // readers need not read to the end of the stream, where collected data is passed on
+            proxy.flushToVerifier();
             requireVerification(verifier);
          }
       };
@@ -0,0 +1,97 @@
+package edu.tamu.tcat.account.jaxrs.provider.signature;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+
+import edu.tamu.tcat.account.signature.SignatureException;
+import edu.tamu.tcat.account.signature.SignatureService.SelfSignedVerifier;
+import edu.tamu.tcat.account.signature.SignatureService.Verifier;
+
+/**
+ * Passes signed data to a verifier while computing a SHA-256 digest of it, so that a
+ * {@link ReplayGuard} may identify a request by what was signed rather than by its signature.
+ * Signature schemes such as ECDSA allow anyone to derive another valid signature of the same
+ * data, so a request identified by its signature could be replayed with an altered one.
+ *
+ * @param <PayloadType> The type of the payload of a self-signed verifier.
+ */
+class SignedDataDigest<PayloadType> implements SelfSignedVerifier<PayloadType>
+{
+   private final Verifier delegate;
+   private final MessageDigest digest;
+
+   /**
+    * @param delegate The verifier to pass signed data to. If it is a
+    *       {@link SelfSignedVerifier}, payloads are also passed to it.
+    */
+   SignedDataDigest(Verifier delegate)
+   {
+      this.delegate = delegate;
+      try
+      {
+         this.digest = MessageDigest.getInstance("SHA-256");
+      }
+      catch (NoSuchAlgorithmException e)
+      {
+         // every Java platform is required to support SHA-256
+         throw new IllegalStateException(e);
+      }
+   }
+
+   /**
+    * @return The digest of all data passed to the verifier. May be called once.
+    */
+   byte[] digest()
+   {
+      return digest.digest();
+   }
+
+   @Override
+   public Map<String, List<String>> getSignedHeaders(Map<String, List<String>> headers)
+   {
+      return delegate.getSignedHeaders(headers);
+   }
+
+   @Override
+   public void validateAdditionalHeaders(String method, Map<String, List<String>> headers)
+   {
+      delegate.validateAdditionalHeaders(method, headers);
+   }
+
+   @Override
+   public void processSignedData(byte[] data) throws SignatureException
+   {
+      digest.update(data);
+      delegate.processSignedData(data);
+   }
+
+   @Override
+   public void processSignedData(byte[] data, int offset, int bytesToRead) throws SignatureException
+   {
+      digest.update(data, offset, bytesToRead);
+      delegate.processSignedData(data, offset, bytesToRead);
+   }
+
+   @Override
+   public void processSignedData(ByteBuffer data) throws SignatureException
+   {
+      digest.update(data.duplicate());
+      delegate.processSignedData(data);
+   }
+
+   @Override
+   public boolean verify() throws SignatureException
+   {
+      return delegate.verify();
+   }
+
+   @Override
+   @SuppressWarnings("unchecked")
+   public void usePayload(PayloadType payload)
+   {
+      ((SelfSignedVerifier<PayloadType>)delegate).usePayload(payload);
+   }
+}
@@ -0,0 +1,53 @@
+package edu.tamu.tcat.account.jaxrs.provider.signature;
+
+import java.io.IOException;
+import java.util.function.Supplier;
+
+import javax.ws.rs.InternalServerErrorException;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.ext.ReaderInterceptor;
+import javax.ws.rs.ext.ReaderInterceptorContext;
+
+import edu.tamu.tcat.account.AccountException;
+import edu.tamu.tcat.account.jaxrs.bean.ContextBean;
+import edu.tamu.tcat.account.jaxrs.bean.SignatureSecured;
+import edu.tamu.tcat.account.signature.SignatureService;
+
+/**
+ * Delegates to a {@link SelfSignedObjectInterceptor} or a {@link SignedObjectInterceptor}
+ * according to the service that processed the request in the {@link SignedObjectFilter}.
+ * Since services are bound late, whether a service permits self-signed requests is not
+ * known when the interceptor is registered.
+ */
+class SignedObjectDispatchingInterceptor<PayloadType> implements ReaderInterceptor
+{
+   private final SelfSignedObjectInterceptor<PayloadType> selfSigned;
+   private final SignedObjectInterceptor<PayloadType> signed;
+
+   SignedObjectDispatchingInterceptor(Supplier<SignatureService<PayloadType>> signatureService, SignatureSecured annot,
+         int memoryThreshold, long maxBodySize)
+   {
+      this.selfSigned = new SelfSignedObjectInterceptor<>(signatureService, annot, memoryThreshold, maxBodySize);
+      this.signed = new SignedObjectInterceptor<>(signatureService, annot);
+   }
+
+   @Override
+   public Object aroundReadFrom(ReaderInterceptorContext context) throws IOException, WebApplicationException
+   {
+      PartialContext<?> partialContext;
+      try
+      {
+         partialContext = ContextBean.from(context).install(PartialContext.class).get("");
+      }
+      catch (AccountException e)
+      {
+         throw new InternalServerErrorException();
+      }
+
+      // without a partial context both interceptors reject the request in the same way
+      if (partialContext != null && partialContext.selfSignedVerifier != null)
+         return selfSigned.aroundReadFrom(context);
+
+      return signed.aroundReadFrom(context);
+   }
+}
@@ -5,7 +5,7 @@ import java.util.Base64;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -15,11 +15,11 @@ import javax.ws.rs.ForbiddenException;
 import javax.ws.rs.InternalServerErrorException;
 import javax.ws.rs.NotAuthorizedException;
 import javax.ws.rs.ServerErrorException;
+import javax.ws.rs.ServiceUnavailableException;
 import javax.ws.rs.container.ContainerRequestContext;
 import javax.ws.rs.container.ContainerRequestFilter;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
-import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
 
 import edu.tamu.tcat.account.AccountException;
@@ -27,30 +27,115 @@ import edu.tamu.tcat.account.jaxrs.bean.ContextBean;
 import edu.tamu.tcat.account.jaxrs.bean.SignatureSecured;
 import edu.tamu.tcat.account.signature.SignatureException;
 import edu.tamu.tcat.account.signature.SignatureService;
+import edu.tamu.tcat.account.signature.SignatureService.SelfSignedVerifier;
 import edu.tamu.tcat.account.signature.SignatureService.Verifier;
 
 public class SignedObjectFilter<PayloadType> implements ContainerRequestFilter
 {
    private static final Logger debug = Logger.getLogger(SignedObjectFilter.class.getName());
    
-   private SignatureService<PayloadType> signatureService;
+   private Supplier<SignatureService<PayloadType>> signatureService;
    private SignatureSecured annot;
+   private ReplayGuard replayGuard;
    
    public SignedObjectFilter(SignatureService<PayloadType> signatureService, SignatureSecured annot)
+   {
+      this(() -> signatureService, annot);
+   }
+   
+   /**
+    * @param signatureService Supplies the signature service to use for each request. The
+    *       supplier is called on every request, and should throw {@link IllegalStateException}
+    *       if no service is currently available.
+    * @param annot The annotation of the secured resource method.
+    * @since 2.2
+    */
+   public SignedObjectFilter(Supplier<SignatureService<PayloadType>> signatureService, SignatureSecured annot)
+   {
+      this(signatureService, annot, null);
+   }
+   
+   /**
+    * @param signatureService Supplies the signature service to use for each request.
+    * @param annot The annotation of the secured resource method.
+    * @param replayGuard Records the signatures of verified requests, so that requests with a
+    *       signature that has already been seen are rejected. May be {@code null}, in which
+    *       case replayed requests are accepted while their signed date is valid.
+    * @since 2.2
+    * @see #SignedObjectFilter(Supplier, SignatureSecured)
+    */
+   public SignedObjectFilter(Supplier<SignatureService<PayloadType>> signatureService, SignatureSecured annot, ReplayGuard replayGuard)
    {
       this.signatureService = signatureService;
       this.annot = annot;
+      this.replayGuard = replayGuard;
    }
    
    @Override
    public void filter(ContainerRequestContext requestContext) throws IOException
    {
+      SignatureService<PayloadType> signatureService = getSignatureService(this.signatureService);
       PartialContext<PayloadType> partialContext = parseAuthorizationToken(requestContext);
+      partialContext.signatureService = signatureService;
+      partialContext.replayGuard = replayGuard;
+      
+      String method = requestContext.getMethod();
+      String path = requestContext.getUriInfo().getPath();
+      if (!path.startsWith("/"))
+         path = '/' + path;
       
-      PayloadType payload;
       try
       {
-         payload = signatureService.getPayload(partialContext.accountIdentifier);
+         if (method.equals("GET"))
+         {
+            ContextBean.Container<PayloadType> container = ContextBean.from(requestContext).install(signatureService.getPayloadType());
+            container.set(annot.label(), verify(signatureService, partialContext, method, path, requestContext.getHeaders()));
+         }
+         else
+         {
+            PayloadType payload = lookupPayload(signatureService, partialContext);
+            prepareVerifier(signatureService, partialContext, payload, method, path, requestContext.getHeaders());
+            ContextBean.from(requestContext).install(PartialContext.class).set("", partialContext);
+         }
+      }
+      catch (AccountException e)
+      {
+         debug.log(Level.SEVERE, "Could not process signature", e);
+         throw new InternalServerErrorException();
+      }
+   }
+   
+   /**
+    * Verifies a request without an entity, for which the signature covers only the data
+    * prepared by {@link #prepareVerifier}.
+    *
+    * @return The payload of the signature.
+    */
+   private PayloadType verify(SignatureService<PayloadType> signatureService, PartialContext<PayloadType> partialContext,
+         String method, String path, Map<String, List<String>> requestHeaders)
+   {
+      PayloadType payload = lookupPayload(signatureService, partialContext);
+      Verifier verifier = prepareVerifier(signatureService, partialContext, payload, method, path, requestHeaders);
+      try
+      {
+         verifier.processSignedData(partialContext.signPrefix);
+         if (!verifier.verify())
+            throw buildBadRequestException("Failed integrity");
+      }
+      catch (SignatureException e)
+      {
+         throw buildBadRequestException("Could not process signature");
+      }
+      SignatureVerification.requireFirstUse(partialContext);
+      
+      return payload;
+   }
+   
+   private PayloadType lookupPayload(SignatureService<PayloadType> signatureService, PartialContext<PayloadType> partialContext)
+   {
+      try
+      {
+         return signatureService.getPayload(partialContext.accountIdentifier);
       }
       catch (SignatureException e)
       {
@@ -61,72 +146,50 @@ public class SignedObjectFilter<PayloadType> implements ContainerRequestFilter
          debug.log(Level.SEVERE, "Could not process account", e);
          throw new ServerErrorException(Response.Status.INTERNAL_SERVER_ERROR);
       }
-      String method = requestContext.getMethod();
+   }
+   
+   /**
+    * Initializes the verifier and the signed request data of the partial context.
+    *
+    * @param payload The payload identified by the request, or {@code null} if there is none.
+    * @return The verifier for the request.
+    */
+   private Verifier prepareVerifier(SignatureService<PayloadType> signatureService, PartialContext<PayloadType> partialContext,
+         PayloadType payload, String method, String path, Map<String, List<String>> requestHeaders)
+   {
       Verifier verifier;
       if (signatureService.mayBeSelfSigned())
       {
          if (payload == null && method.equals("GET"))
             throw new ForbiddenException();
-         verifier = partialContext.selfSignedVerifier = signatureService.getVerifier(partialContext.signature);
+         SelfSignedVerifier<PayloadType> selfSigned = signatureService.getVerifier(partialContext.signature);
+         if (partialContext.replayGuard != null)
+            selfSigned = partialContext.signedData = new SignedDataDigest<>(selfSigned);
+         verifier = partialContext.selfSignedVerifier = selfSigned;
       }
       else
       {
          if (payload == null)
             throw new ClientErrorException(Response.Status.UNAUTHORIZED);
          partialContext.payload = payload;
-         verifier = partialContext.verifier = signatureService.getVerifier(payload, partialContext.signature);
+         verifier = signatureService.getVerifier(payload, partialContext.signature);
+         if (partialContext.replayGuard != null)
+            verifier = partialContext.signedData = new SignedDataDigest<>(verifier);
+         partialContext.verifier = verifier;
       }
       
-      String path = requestContext.getUriInfo().getPath();
-      if (!path.startsWith("/"))
-         path = '/' + path;
-      
-      MultivaluedMap<String, String> requestHeaders = requestContext.getHeaders();
       verifier.validateAdditionalHeaders(method, requestHeaders);
       
-      StringBuilder buffer = new StringBuilder(method).append(' ').append(path).append('\n');
-      TreeMap<String, List<String>> headers = new TreeMap<>(verifier.getSignedHeaders(new HashMap<>(requestHeaders)));
-      for (Map.Entry<String, List<String>> header : headers.entrySet())
-      {
-         String key = header.getKey();
-         for (String value : header.getValue())
-         {
-            buffer.append(key + ": ").append(value).append("\n");
-         }
-      }
-      
-      String signPrefix = buffer.append('\n').toString();
-      partialContext.signPrefix = signPrefix;
-      
-      try
-      {
-         if (method.equals("GET"))
-         {
-            verifier.processSignedData(signPrefix.getBytes());
-            if (!verifier.verify())
-               throw buildBadRequestException("Failed integrity");
-            ContextBean.from(requestContext).install(signatureService.getPayloadType()).set(annot.label(), payload);
-         }
-         else
-         {
-            ContextBean.from(requestContext).install(PartialContext.class).set("", partialContext);
-         }
-      }
-      catch (SignatureException e)
-      {
-         throw buildBadRequestException("Could not process signature");
-      }
-      catch (AccountException e)
-      {
-         debug.log(Level.SEVERE, "Could not process signature", e);
-         throw new InternalServerErrorException();
-      }
+      // the verifier may modify the map it is given, so it is given a copy
+      Map<String, List<String>> signedHeaders = verifier.getSignedHeaders(new HashMap<>(requestHeaders));
+      partialContext.signPrefix = CanonicalRequest.encode(method, path, signedHeaders);
+      return verifier;
    }
    
    protected PartialContext<PayloadType> parseAuthorizationToken(ContainerRequestContext requestContext)
    {
       String authHeader = requestContext.getHeaderString(HttpHeaders.AUTHORIZATION);
-      String authorizationScope = signatureService.getAuthorizationScope();
+      String authorizationScope = getSignatureService(signatureService).getAuthorizationScope();
       if (authHeader == null)
          throw new NotAuthorizedException(authorizationScope);
       if (!authHeader.startsWith(authorizationScope + " "))
@@ -148,6 +211,18 @@ public class SignedObjectFilter<PayloadType> implements ContainerRequestFilter
       return new PartialContext<>(identifier, signature);
    }
    
+   static <PT> SignatureService<PT> getSignatureService(Supplier<SignatureService<PT>> supplier)
+   {
+      try
+      {
+         return supplier.get();
+      }
+      catch (IllegalStateException e)
+      {
+         throw new ServiceUnavailableException(e.getMessage());
+      }
+   }
+   
    private static BadRequestException buildBadRequestException(String clientMessage)
    {
       return new BadRequestException(Response.status(Response.Status.BAD_REQUEST)
@@ -2,6 +2,7 @@ package edu.tamu.tcat.account.jaxrs.provider.signature;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.function.Supplier;
 
 import javax.ws.rs.InternalServerErrorException;
 import javax.ws.rs.NotAuthorizedException;
@@ -17,10 +18,21 @@ import edu.tamu.tcat.account.signature.SignatureService;
 
 public class SignedObjectInterceptor<PayloadType> implements ReaderInterceptor
 {
-   private final SignatureService<PayloadType> signatureService;
+   private final Supplier<SignatureService<PayloadType>> signatureService;
    private final SignatureSecured annot;
 
    public SignedObjectInterceptor(SignatureService<PayloadType> signatureService, SignatureSecured annot)
+   {
+      this(() -> signatureService, annot);
+   }
+
+   /**
+    * @param signatureService Supplies the signature service for requests that were not
+    *       processed by a {@link SignedObjectFilter}.
+    * @param annot The annotation of the secured resource method.
+    * @since 2.2
+    */
+   public SignedObjectInterceptor(Supplier<SignatureService<PayloadType>> signatureService, SignatureSecured annot)
    {
       this.signatureService = signatureService;
       this.annot = annot;
@@ -29,11 +41,14 @@ public class SignedObjectInterceptor<PayloadType> implements ReaderInterceptor
    @Override
    public Object aroundReadFrom(ReaderInterceptorContext context) throws IOException, WebApplicationException
    {
-      String authorizationScope = signatureService.getAuthorizationScope();
       try
       {
          @SuppressWarnings("unchecked")
          PartialContext<PayloadType> partialContext = ContextBean.from(context).install(PartialContext.class).get("");
+         SignatureService<PayloadType> signatureService = (partialContext == null)
+               ? SignedObjectFilter.getSignatureService(this.signatureService)
+               : partialContext.signatureService;
+         String authorizationScope = signatureService.getAuthorizationScope();
          if (partialContext == null)
             throw new NotAuthorizedException(authorizationScope);
          PayloadType payload = partialContext.payload;
@@ -42,12 +57,13 @@ public class SignedObjectInterceptor<PayloadType> implements ReaderInterceptor
          
          try (InputStream inputStream = context.getInputStream())
          {
-            SignatureStreamWithPublicKeyVerifier verifier = SignatureVerification.createVerifier(partialContext.verifier, partialContext.signPrefix.getBytes(),
+            SignatureStreamWithPublicKeyVerifier verifier = SignatureVerification.createVerifier(partialContext.verifier, partialContext.signPrefix,
                   inputStream, authorizationScope);
             context.setInputStream(verifier.getProxyStream());
             Object result = context.proceed();
             
             verifier.checkSignature();
+            SignatureVerification.requireFirstUse(partialContext);
             
             ContextBean.from(context).install(signatureService.getPayloadType()).set(annot.label(), payload);
             
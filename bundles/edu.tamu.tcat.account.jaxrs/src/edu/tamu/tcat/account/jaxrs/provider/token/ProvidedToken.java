@@ -0,0 +1,22 @@
+package edu.tamu.tcat.account.jaxrs.provider.token;
+
+/**
+ * The token values of a {@link edu.tamu.tcat.account.jaxrs.bean.TokenProviding} response,
+ * passed from the {@link TokenProvidingObjectFilter} to the
+ * {@link TokenProvidingWriterInterceptor} as a request property.
+ */
+class ProvidedToken
+{
+   static final String PROPERTY = ProvidedToken.class.getName();
+
+   public final String token;
+   public final String expiresIn;
+   public final String expiration;
+
+   public ProvidedToken(String token, String expiresIn, String expiration)
+   {
+      this.token = token;
+      this.expiresIn = expiresIn;
+      this.expiration = expiration;
+   }
+}
@@ -16,23 +16,37 @@
 package edu.tamu.tcat.account.jaxrs.provider.token;
 
 import java.lang.reflect.Method;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.ws.rs.container.DynamicFeature;
 import javax.ws.rs.container.ResourceInfo;
 import javax.ws.rs.core.FeatureContext;
+import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.ext.Provider;
 
 import edu.tamu.tcat.account.jaxrs.bean.TokenProviding;
 import edu.tamu.tcat.account.jaxrs.bean.TokenSecured;
 import edu.tamu.tcat.account.jaxrs.internal.ClassAndId;
+import edu.tamu.tcat.account.jaxrs.internal.ContextSlots;
+import edu.tamu.tcat.account.jaxrs.internal.ServiceRegistry;
 import edu.tamu.tcat.account.token.TokenService;
 
 /**
+ * Registers the token filters for resource methods annotated with {@link TokenSecured} or
+ * {@link TokenProviding}.
+ * <p>
+ * Filters look up the {@link TokenService} for their payload type and scope on each
+ * request, so a service that is bound or rebound after the JAX-RS application has been
+ * deployed takes effect immediately. Requests processed while no matching service is bound
+ * fail with a {@code 503 Service Unavailable} response.
+ *
  * @since 2.0
  */
 @Provider
@@ -64,13 +78,110 @@ public class TokenDynamicFeature implements DynamicFeature
     */
    public static final String TOKEN_TYPE_BEARER = "Bearer";
 
-   private Map<ClassAndId, TokenService<?>> tokenServices = new HashMap<>();
+   /**
+    * The response header carrying the {@code access_token} of a {@link TokenProviding}
+    * resource that uses {@link TokenProviding.Delivery#HEADERS}.
+    * @since 2.2
+    */
+   public static final String HEADER_ACCESS_TOKEN = "X-Access-Token";
+   /**
+    * The response header carrying the {@code token_type}; see {@link #HEADER_ACCESS_TOKEN}.
+    * @since 2.2
+    */
+   public static final String HEADER_TOKEN_TYPE = "X-Token-Type";
+   /**
+    * The response header carrying the {@code expires_in} value; see {@link #HEADER_ACCESS_TOKEN}.
+    * @since 2.2
+    */
+   public static final String HEADER_TOKEN_EXPIRES_IN = "X-Token-Expires-In";
+   /**
+    * The response header carrying the {@code expiration}; see {@link #HEADER_ACCESS_TOKEN}.
+    * @since 2.2
+    */
+   public static final String HEADER_TOKEN_EXPIRATION = "X-Token-Expiration";
+
+   private final ServiceRegistry<TokenService<?>> tokenServices = new ServiceRegistry<>("TokenService");
+   private volatile Executor asyncExecutor = ForkJoinPool.commonPool();
+
+   /**
+    * The length of the {@code "Bearer "} scheme prefix of an Authorization header.
+    */
+   static final int BEARER_PREFIX_LENGTH = TOKEN_TYPE_BEARER.length() + 1;
 
-   public synchronized void bind(TokenService<?> svc, Map<String, Object> properties)
+   /**
+    * Finds the Authorization header of a request.
+    *
+    * @param headers The request headers.
+    * @return The first value of the Authorization header, or {@code null} if the request
+    *       does not have one.
+    */
+   static String findAuthorizationHeader(MultivaluedMap<String, String> headers)
+   {
+      // JAX-RS implementations provide case-insensitive header maps, so this normally succeeds
+      // or establishes that the header is absent without iterating over the header names
+      String header = headers.getFirst(HEADER_AUTHZ);
+      if (header != null || headers.containsKey(HEADER_AUTHZ))
+         return header;
+
+      for (Map.Entry<String, List<String>> entry : headers.entrySet())
+      {
+         if (entry.getKey().equalsIgnoreCase(HEADER_AUTHZ))
+         {
+            List<String> values = entry.getValue();
+            return (values == null || values.isEmpty()) ? null : values.get(0);
+         }
+      }
+
+      return null;
+   }
+
+   /**
+    * @param header The value of an Authorization header.
+    * @return {@code true} if the header uses the bearer scheme and supplies a (non-empty)
+    *       token, which begins at {@link #BEARER_PREFIX_LENGTH}.
+    */
+   static boolean isBearerAuthorization(String header)
+   {
+      return header.length() > BEARER_PREFIX_LENGTH
+            && header.regionMatches(true, 0, TOKEN_TYPE_BEARER, 0, TOKEN_TYPE_BEARER.length())
+            && header.charAt(BEARER_PREFIX_LENGTH - 1) == ' ';
+   }
+
+   /**
+    * Finds the bearer token presented in the Authorization header of a request.
+    *
+    * @param headers The request headers.
+    * @return The bearer token, or {@code null} if the request does not contain an
+    *       Authorization header with a bearer token.
+    */
+   static String findBearerToken(MultivaluedMap<String, String> headers)
+   {
+      String header = findAuthorizationHeader(headers);
+      if (header == null || !isBearerAuthorization(header))
+         return null;
+
+      return header.substring(BEARER_PREFIX_LENGTH);
+   }
+
+   /**
+    * Sets the executor used to resolve the payloads of validated tokens for resource methods
+    * annotated with {@link TokenSecured#async()}. Token services whose payload lookups block
+    * should be given an executor sized for their lookups. Applies to resource methods configured
+    * after this call. Defaults to {@link ForkJoinPool#commonPool()}.
+    *
+    * @param executor The executor to use.
+    * @since 2.2
+    */
+   public void setAsyncExecutor(Executor executor)
+   {
+      this.asyncExecutor = Objects.requireNonNull(executor);
+   }
+
+   public void bind(TokenService<?> svc, Map<String, Object> properties)
    {
       ClassAndId classAndId = getClassAndId(svc, properties);
 
-      tokenServices.put(classAndId, svc);
+      tokenServices.bind(classAndId, svc);
    }
 
    private ClassAndId getClassAndId(TokenService<?> svc, Map<String, Object> properties)
@@ -85,10 +196,10 @@ public class TokenDynamicFeature implements DynamicFeature
       return classAndId;
    }
 
-   public synchronized void unbind(TokenService<?> svc, Map<String, Object> properties)
+   public void unbind(TokenService<?> svc, Map<String, Object> properties)
    {
       ClassAndId classAndId = getClassAndId(svc, properties);
-      tokenServices.remove(classAndId);
+      tokenServices.unbind(classAndId, svc);
    }
 
    void activate(Map<String, Object> properties)
@@ -123,22 +234,38 @@ public class TokenDynamicFeature implements DynamicFeature
    // separate method for generic type-safety
    private <T> void registerSecurity(FeatureContext context, TokenSecured tokenSecured, Class<T> payloadType)
    {
-      TokenService<T> tokenService = getService(payloadType, tokenSecured.scopeId());
-      context.register(new TokenSecurityObjectFilter<T>(tokenService, tokenSecured));
+      Supplier<TokenService<T>> tokenService = getService(payloadType, tokenSecured.scopeId());
+      reserveContextSlots(payloadType, tokenSecured.label());
+      context.register(new TokenSecurityObjectFilter<T>(tokenService, tokenSecured, asyncExecutor));
    }
 
    // separate method for generic type-safety
    private <T> void registerProviding(FeatureContext context, TokenProviding annot, Class<T> payloadType)
    {
-      TokenService<T> tokenService = getService(payloadType, annot.scopeId());
+      Supplier<TokenService<T>> tokenService = getService(payloadType, annot.scopeId());
+      reserveContextSlots(payloadType, annot.label());
       context.register(new TokenProvidingObjectFilter<T>(tokenService, annot));
+      if (annot.delivery() == TokenProviding.Delivery.JSON_STREAM)
+         context.register(new TokenProvidingWriterInterceptor());
+   }
+
+   /**
+    * Assigns the per-request context slots used by the filters of a resource method, so that
+    * the context allocated for each request has room for them.
+    */
+   private static void reserveContextSlots(Class<?> payloadType, String label)
+   {
+      ContextSlots.getTypeSlot(payloadType);
+      ContextSlots.getValueSlot(payloadType, label);
    }
 
-   private synchronized <T> TokenService<T> getService(Class<T> payloadType, String scopeId)
+   @SuppressWarnings({ "unchecked", "rawtypes" })
+   private <T> Supplier<TokenService<T>> getService(Class<T> payloadType, String scopeId)
    {
-      @SuppressWarnings("unchecked")
-      TokenService<T> tokenService = (TokenService<T>)tokenServices.get(new ClassAndId(payloadType, scopeId));
-      Objects.requireNonNull(tokenService, "Unable to access TokenService<id:"+scopeId+","+payloadType.getSimpleName()+">");
-      return tokenService;
+      // services are keyed by their payload type, so the handle only ever holds a TokenService<T>
+      ServiceRegistry.Handle<TokenService<?>> handle = tokenServices.getHandle(new ClassAndId(payloadType, scopeId));
+      if (!handle.isBound())
+         debug.info("No TokenService<id:" + scopeId + "," + payloadType.getSimpleName() + "> is bound yet; requests will fail until one is available");
+      return (Supplier)handle;
    }
 }
@@ -0,0 +1,312 @@
+/*
+ * Copyright 2014 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.tamu.tcat.account.jaxrs.provider.token;
+
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.FormParam;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+
+import edu.tamu.tcat.account.token.TokenService;
+import edu.tamu.tcat.account.token.TokenService.TokenData;
+
+/**
+ * A resource that implements token introspection as defined by
+ * {@link https://tools.ietf.org/html/rfc7662}, allowing services that do not hold the key of a
+ * {@link TokenService} to determine whether a token is active and obtain its payload.
+ * <p>
+ * This class is not a root resource; applications expose it through a sub-resource locator,
+ * for example:
+ * <pre>
+ *   &#64;Path("introspect")
+ *   public TokenIntrospectionResource&lt;UUID&gt; introspect() { return introspection; }
+ * </pre>
+ * Per section 4 of the specification, the endpoint must itself be protected so that only
+ * authorized services may introspect tokens.
+ * <p>
+ * Introspection results are held in a bounded cache for no longer than the configured
+ * maximum age or, for active tokens, the expiration time of the token, so that repeated
+ * requests for the same token do not require it to be unpacked again. Tokens that become
+ * invalid before they expire (for example, because they were revoked) may therefore continue
+ * to be reported as active for up to the maximum age. Tokens that cannot be introspected for
+ * other reasons, such as a failure to resolve their payload, are reported as inactive but
+ * are not cached.
+ * <p>
+ * In addition to the single-token endpoint, a batch endpoint accepts a JSON array of tokens
+ * and returns a JSON array of introspection responses in the same order.
+ *
+ * @param <PayloadType> The payload type of the tokens.
+ * @since 2.2
+ */
+public class TokenIntrospectionResource<PayloadType>
+{
+   private static final Logger debug = Logger.getLogger(TokenIntrospectionResource.class.getName());
+
+   /** The maximum number of tokens that may be introspected by a single batch request. */
+   private static final int MAX_BATCH_SIZE = 1000;
+
+   /** The response for tokens that are not active; see section 2.2 of RFC 7662. */
+   private static final Map<String, Object> INACTIVE = Collections.singletonMap("active", Boolean.FALSE);
+
+   private final TokenService<PayloadType> tokenService;
+   private final Function<PayloadType, Map<String, Object>> claims;
+   private final long maxAgeMillis;
+   private final Map<String, CachedResponse> cache;
+
+   private final LongAdder hits = new LongAdder();
+   private final LongAdder misses = new LongAdder();
+
+   /**
+    * Construct an introspection resource that reports the payload of active tokens as the
+    * {@code sub} (subject) claim. Results are cached for up to one minute.
+    *
+    * @param tokenService The token service used to unpack tokens.
+    * @param maxEntries The maximum number of introspection results to cache.
+    */
+   public TokenIntrospectionResource(TokenService<PayloadType> tokenService, int maxEntries)
+   {
+      this(tokenService, payload -> Collections.singletonMap("sub", String.valueOf(payload)), maxEntries, 1, ChronoUnit.MINUTES);
+   }
+
+   /**
+    * Construct an introspection resource.
+    *
+    * @param tokenService The token service used to unpack tokens.
+    * @param claims A function that supplies the claims to report for the payload of an
+    *       active token. The returned values must be serializable to JSON.
+    * @param maxEntries The maximum number of introspection results to cache.
+    * @param maxAge The maximum amount of time that a result may be cached.
+    * @param unit The time units of maxAge.
+    */
+   public TokenIntrospectionResource(TokenService<PayloadType> tokenService,
+                                     Function<PayloadType, Map<String, Object>> claims,
+                                     int maxEntries, long maxAge, ChronoUnit unit)
+   {
+      if (maxEntries <= 0)
+         throw new IllegalArgumentException("Cache size must be positive [" + maxEntries + "]");
+
+      this.tokenService = Objects.requireNonNull(tokenService, "No token service supplied");
+      this.claims = Objects.requireNonNull(claims, "No claims function supplied");
+      this.maxAgeMillis = unit.getDuration().multipliedBy(maxAge).toMillis();
+      this.cache = new LinkedHashMap<String, CachedResponse>(16, 0.75f, true)
+      {
+         private static final long serialVersionUID = 1L;
+
+         @Override
+         protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest)
+         {
+            return size() > maxEntries;
+         }
+      };
+   }
+
+   /**
+    * Introspects a single token, as defined by section 2.1 of RFC 7662.
+    *
+    * @param token The token to introspect.
+    * @param tokenTypeHint Ignored; this resource supports a single token type.
+    * @return The introspection response.
+    */
+   @POST
+   @Consumes(MediaType.APPLICATION_FORM_URLENCODED)
+   @Produces(MediaType.APPLICATION_JSON)
+   public Map<String, Object> introspect(@FormParam("token") String token, @FormParam("token_type_hint") String tokenTypeHint)
+   {
+      if (token == null || token.isEmpty())
+         throw new BadRequestException("The [token] parameter is required");
+
+      return introspect(token);
+   }
+
+   /**
+    * Introspects a batch of tokens. Empty or {@code null} entries are reported as inactive.
+    *
+    * @param tokens The tokens to introspect.
+    * @return The introspection response for each token, in the same order.
+    */
+   @POST
+   @Path("batch")
+   @Consumes(MediaType.APPLICATION_JSON)
+   @Produces(MediaType.APPLICATION_JSON)
+   public List<Map<String, Object>> introspectAll(List<String> tokens)
+   {
+      if (tokens == null)
+         throw new BadRequestException("A list of tokens is required");
+      if (tokens.size() > MAX_BATCH_SIZE)
+         throw new BadRequestException("At most " + MAX_BATCH_SIZE + " tokens may be introspected at once");
+
+      List<Map<String, Object>> results = new ArrayList<>(tokens.size());
+      long now = System.currentTimeMillis();
+      for (String token : tokens)
+      {
+         if (token == null || token.isEmpty())
+         {
+            results.add(INACTIVE);
+            continue;
+         }
+
+         Map<String, Object> cached = getCached(token, now);
+         results.add(cached != null ? cached : respond(token, now));
+      }
+
+      return results;
+   }
+
+   /**
+    * @return The number of introspection requests answered from the cache.
+    */
+   public long getHitCount()
+   {
+      return hits.sum();
+   }
+
+   /**
+    * @return The number of introspection requests that required a token to be unpacked.
+    */
+   public long getMissCount()
+   {
+      return misses.sum();
+   }
+
+   /**
+    * Removes all introspection results from the cache.
+    */
+   public void invalidateAll()
+   {
+      synchronized (cache)
+      {
+         cache.clear();
+      }
+   }
+
+   private Map<String, Object> introspect(String token)
+   {
+      long now = System.currentTimeMillis();
+      Map<String, Object> cached = getCached(token, now);
+      if (cached != null)
+         return cached;
+
+      return respond(token, now);
+   }
+
+   private Map<String, Object> getCached(String token, long now)
+   {
+      CachedResponse entry;
+      synchronized (cache)
+      {
+         entry = cache.get(token);
+         if (entry != null && entry.expires <= now)
+         {
+            cache.remove(token);
+            entry = null;
+         }
+      }
+
+      if (entry == null)
+         return null;
+
+      hits.increment();
+      return entry.response;
+   }
+
+   private Map<String, Object> respond(String token, long now)
+   {
+      misses.increment();
+
+      TokenData<PayloadType> data;
+      Map<String, Object> response;
+      try
+      {
+         data = tokenService.unpackTokenData(token);
+         // payloads may be resolved lazily, so this may also fail
+         response = new HashMap<>(claims.apply(data.getPayload()));
+      }
+      catch (IllegalArgumentException e)
+      {
+         debug.log(Level.FINE, "Introspected token is not active", e);
+         return cacheInactive(token, now);
+      }
+      catch (Exception e)
+      {
+         // possibly transient, such as an unavailable account store, so not cached
+         debug.log(Level.WARNING, "Could not introspect token", e);
+         return INACTIVE;
+      }
+
+      response.put("active", Boolean.TRUE);
+      response.put("token_type", TokenDynamicFeature.TOKEN_TYPE_BEARER);
+
+      long expires = (maxAgeMillis > Long.MAX_VALUE - now) ? Long.MAX_VALUE : now + maxAgeMillis;
+      ZonedDateTime expiration = data.getExpiration();
+      if (expiration != null)
+      {
+         long exp = expiration.toInstant().getEpochSecond();
+         response.put("exp", Long.valueOf(exp));
+         expires = Math.min(expires, expiration.toInstant().toEpochMilli());
+      }
+
+      response = Collections.unmodifiableMap(response);
+      cache(token, response, expires, now);
+      return response;
+   }
+
+   private Map<String, Object> cacheInactive(String token, long now)
+   {
+      long expires = (maxAgeMillis > Long.MAX_VALUE - now) ? Long.MAX_VALUE : now + maxAgeMillis;
+      cache(token, INACTIVE, expires, now);
+      return INACTIVE;
+   }
+
+   private void cache(String token, Map<String, Object> response, long expires, long now)
+   {
+      if (expires <= now)
+         return;
+
+      synchronized (cache)
+      {
+         cache.put(token, new CachedResponse(response, expires));
+      }
+   }
+
+   private static class CachedResponse
+   {
+      private final Map<String, Object> response;
+      private final long expires;
+
+      private CachedResponse(Map<String, Object> response, long expires)
+      {
+         this.response = response;
+         this.expires = expires;
+      }
+   }
+}
@@ -20,6 +20,7 @@ import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Map;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -29,6 +30,7 @@ import javax.ws.rs.container.ContainerRequestFilter;
 import javax.ws.rs.container.ContainerResponseContext;
 import javax.ws.rs.container.ContainerResponseFilter;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
 
 import edu.tamu.tcat.account.AccountException;
 import edu.tamu.tcat.account.jaxrs.bean.ContextBean;
@@ -40,12 +42,21 @@ import edu.tamu.tcat.account.token.TokenService.TokenData;
  * A response filter that implements the Authorization endpoint defined by {@link http://tools.ietf.org/html/rfc6749#section-3.1}
  * and using the grant mechanism of {@link http://tools.ietf.org/html/rfc6749#section-4.3}.
  * <p>
- * For this implementation, the return type of the (java) method must be Map&lt;String,Object&gt; so the annotation processor
+ * By default, the return type of the (java) method must be Map&lt;String,Object&gt; so the annotation processor
  * can inject the additional keys into the map before its serialization to JSON. This is used to follow the OAuth2 spec
  * such that a response to the HTTP request contains the auth information and not a header. See
  * {@link http://tools.ietf.org/html/rfc6749#section-5}
  * <p>
+ * Resources returning other entity types may instead have the token written into the serialized JSON
+ * object by a {@link TokenProvidingWriterInterceptor}, or sent as response headers; see
+ * {@link TokenProviding#delivery()}.
+ * <p>
  * The HTTP Method should be GET to support the spec requirement in section 3.1.
+ * <p>
+ * If the request presents a bearer token, the token service may return that token rather
+ * than creating a new one; see {@link TokenService#renewTokenData(String, Object)}. This
+ * allows token services to implement sliding expiration without creating a new token on
+ * every response.
  *
  * @param <PayloadType>
  * @see TokenProviding
@@ -53,10 +64,22 @@ import edu.tamu.tcat.account.token.TokenService.TokenData;
 public class TokenProvidingObjectFilter<PayloadType> implements ContainerRequestFilter, ContainerResponseFilter
 {
    private static final Logger debug = Logger.getLogger(TokenProvidingObjectFilter.class.getName());
-   private final TokenService<PayloadType> tokenService;
+   private final Supplier<TokenService<PayloadType>> tokenService;
    private final TokenProviding annot;
 
    public TokenProvidingObjectFilter(TokenService<PayloadType> tokenService, TokenProviding annot)
+   {
+      this(() -> tokenService, annot);
+   }
+
+   /**
+    * @param tokenService Supplies the token service to use for each request. The supplier
+    *       is called on every request, and should throw {@link IllegalStateException} if no
+    *       service is currently available.
+    * @param annot The annotation of the token providing resource method.
+    * @since 2.2
+    */
+   public TokenProvidingObjectFilter(Supplier<TokenService<PayloadType>> tokenService, TokenProviding annot)
    {
       this.tokenService = tokenService;
       this.annot = annot;
@@ -65,6 +88,7 @@ public class TokenProvidingObjectFilter<PayloadType> implements ContainerRequest
    @Override
    public void filter(ContainerRequestContext requestContext) throws IOException
    {
+      TokenService<PayloadType> tokenService = TokenSecurityObjectFilter.getTokenService(this.tokenService);
       try
       {
          ContextBean.from(requestContext).install(tokenService.getPayloadType());
@@ -88,21 +112,43 @@ public class TokenProvidingObjectFilter<PayloadType> implements ContainerRequest
             break;
       }
 
+      TokenService<PayloadType> tokenService = TokenSecurityObjectFilter.getTokenService(this.tokenService);
       try
       {
          PayloadType payload = ContextBean.getValue(requestContext, tokenService.getPayloadType(), annot.label());
          if (payload == null)
             throw new IllegalStateException("TokenProviding has no payload set in context");
 
-         TokenData<PayloadType> data = tokenService.createTokenData(payload);
+         // a client presenting a current token for the same payload may keep it; see TokenService#renewTokenData
+         String presented = TokenDynamicFeature.findBearerToken(requestContext.getHeaders());
+         TokenData<PayloadType> data = tokenService.renewTokenData(presented, payload);
          String token = data.getToken();
          Duration dur = Duration.between(LocalDateTime.now(), data.getExpiration());
          String expireStr = DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(data.getExpiration());
          // Per the spec, the "expires_in" property is seconds from response generation; see http://tools.ietf.org/html/rfc6749#section-4.2.2
          String expiresIn = String.valueOf(dur.getSeconds());
 
-         if (!responseContext.getMediaType().toString().equals(MediaType.APPLICATION_JSON))
-            throw new IllegalStateException("TokenProviding must apply to MediaType of " + MediaType.APPLICATION_JSON +" but is " + responseContext.getMediaType());
+         switch (annot.delivery())
+         {
+            case HEADERS:
+               MultivaluedMap<String, Object> headers = responseContext.getHeaders();
+               headers.putSingle(TokenDynamicFeature.HEADER_ACCESS_TOKEN, token);
+               headers.putSingle(TokenDynamicFeature.HEADER_TOKEN_TYPE, TokenDynamicFeature.TOKEN_TYPE_BEARER);
+               headers.putSingle(TokenDynamicFeature.HEADER_TOKEN_EXPIRES_IN, expiresIn);
+               headers.putSingle(TokenDynamicFeature.HEADER_TOKEN_EXPIRATION, expireStr);
+               return;
+
+            case JSON_STREAM:
+               requireJson(responseContext.getMediaType());
+               // written into the entity by the TokenProvidingWriterInterceptor
+               requestContext.setProperty(ProvidedToken.PROPERTY, new ProvidedToken(token, expiresIn, expireStr));
+               return;
+
+            default:
+               break;
+         }
+
+         requireJson(responseContext.getMediaType());
 
          Object entity = responseContext.getEntity();
          if (entity instanceof Map)
@@ -132,4 +178,16 @@ public class TokenProvidingObjectFilter<PayloadType> implements ContainerRequest
          throw new InternalServerErrorException("Could not provide token", e);
       }
    }
+
+   /**
+    * Checks that a response is JSON. Parameters such as the charset are ignored, as is the
+    * case of the type and subtype.
+    */
+   static void requireJson(MediaType mediaType)
+   {
+      if (mediaType == null
+            || !MediaType.APPLICATION_JSON_TYPE.getType().equalsIgnoreCase(mediaType.getType())
+            || !MediaType.APPLICATION_JSON_TYPE.getSubtype().equalsIgnoreCase(mediaType.getSubtype()))
+         throw new IllegalStateException("TokenProviding must apply to MediaType of " + MediaType.APPLICATION_JSON +" but is " + mediaType);
+   }
 }
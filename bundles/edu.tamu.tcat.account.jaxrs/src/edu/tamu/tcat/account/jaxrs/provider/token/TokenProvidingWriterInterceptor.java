@@ -0,0 +1,165 @@
+/*
+ * Copyright 2014 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.tamu.tcat.account.jaxrs.provider.token;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import javax.ws.rs.InternalServerErrorException;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+import edu.tamu.tcat.account.jaxrs.bean.TokenProviding;
+
+/**
+ * Writes the token provided by a {@link TokenProvidingObjectFilter} into the JSON object
+ * serialized as the entity of the response, for resources using
+ * {@link TokenProviding.Delivery#JSON_STREAM}.
+ * <p>
+ * The token values are inserted as the first members of the object as it is written, so
+ * that the entity may be of any type and is not buffered. The entity must serialize to a
+ * JSON object, encoded as UTF-8.
+ *
+ * @since 2.2
+ */
+public class TokenProvidingWriterInterceptor implements WriterInterceptor
+{
+   @Override
+   public void aroundWriteTo(WriterInterceptorContext context) throws IOException, WebApplicationException
+   {
+      ProvidedToken token = (ProvidedToken)context.getProperty(ProvidedToken.PROPERTY);
+      if (token == null)
+      {
+         // no token is provided for error responses
+         context.proceed();
+         return;
+      }
+
+      String charset = context.getMediaType() == null ? null : context.getMediaType().getParameters().get(MediaType.CHARSET_PARAMETER);
+      if (charset != null && !charset.equalsIgnoreCase(StandardCharsets.UTF_8.name()))
+         throw new InternalServerErrorException("TokenProviding requires a JSON entity encoded as UTF-8 but is " + charset);
+
+      // the entity grows by the token members
+      context.getHeaders().remove(HttpHeaders.CONTENT_LENGTH);
+      OutputStream stream = context.getOutputStream();
+      context.setOutputStream(new MemberInsertingOutputStream(stream, getMembers(token)));
+      try
+      {
+         context.proceed();
+      }
+      finally
+      {
+         context.setOutputStream(stream);
+      }
+   }
+
+   /**
+    * @return The token values as JSON object members, without enclosing braces.
+    */
+   private static byte[] getMembers(ProvidedToken token)
+   {
+      // See http://tools.ietf.org/html/rfc6750#section-4
+      // and http://tools.ietf.org/html/rfc6749#section-4.2.2
+      StringBuilder sb = new StringBuilder(128 + token.token.length());
+      appendMember(sb, "access_token", token.token).append(',');
+      appendMember(sb, "token_type", TokenDynamicFeature.TOKEN_TYPE_BEARER).append(',');
+      appendMember(sb, "expires_in", token.expiresIn).append(',');
+      appendMember(sb, "expiration", token.expiration);
+      return sb.toString().getBytes(StandardCharsets.US_ASCII);
+   }
+
+   private static StringBuilder appendMember(StringBuilder sb, String name, String value)
+   {
+      sb.append('"').append(name).append("\":\"");
+      for (int i = 0; i < value.length(); i++)
+      {
+         char c = value.charAt(i);
+         // escapes anything that is not printable ASCII, so the members may be written as bytes
+         if (c == '"' || c == '\\')
+            sb.append('\\').append(c);
+         else if (c < 0x20 || c > 0x7E)
+            sb.append(String.format("\\u%04x", (int)c));
+         else
+            sb.append(c);
+      }
+      return sb.append('"');
+   }
+
+   /**
+    * Inserts members at the start of the JSON object written to the stream. The separating
+    * {@code ','} is written once the first member of the object (if any) is encountered.
+    */
+   private static class MemberInsertingOutputStream extends FilterOutputStream
+   {
+      private static final int BEFORE_OBJECT = 0;
+      private static final int BEFORE_FIRST_MEMBER = 1;
+      private static final int DONE = 2;
+
+      private final byte[] members;
+      private int state = BEFORE_OBJECT;
+
+      MemberInsertingOutputStream(OutputStream out, byte[] members)
+      {
+         super(out);
+         this.members = members;
+      }
+
+      @Override
+      public void write(int b) throws IOException
+      {
+         if (state != DONE && !isWhitespace(b))
+         {
+            if (state == BEFORE_OBJECT)
+            {
+               if (b != '{')
+                  throw new IOException("TokenProviding entity is not a JSON object");
+               out.write(b);
+               out.write(members);
+               state = BEFORE_FIRST_MEMBER;
+               return;
+            }
+
+            if (b != '}')
+               out.write(',');
+            state = DONE;
+         }
+
+         out.write(b);
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException
+      {
+         // once the members have been inserted, the remainder of the entity is passed through
+         int i = 0;
+         while (state != DONE && i < len)
+            write(b[off + i++]);
+
+         if (i < len)
+            out.write(b, off + i, len - i);
+      }
+
+      private static boolean isWhitespace(int b)
+      {
+         return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+      }
+   }
+}
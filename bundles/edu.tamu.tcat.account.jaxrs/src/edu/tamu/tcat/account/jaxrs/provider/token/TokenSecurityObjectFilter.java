@@ -16,19 +16,24 @@
 package edu.tamu.tcat.account.jaxrs.provider.token;
 
 import java.io.IOException;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
 
 import javax.ws.rs.BadRequestException;
+import javax.ws.rs.ServiceUnavailableException;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.container.ContainerRequestContext;
 import javax.ws.rs.container.ContainerRequestFilter;
 import javax.ws.rs.core.MediaType;
-import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
 
 import edu.tamu.tcat.account.jaxrs.bean.ContextBean;
 import edu.tamu.tcat.account.jaxrs.bean.TokenSecured;
 import edu.tamu.tcat.account.token.TokenService;
+import edu.tamu.tcat.account.token.TokenService.TokenData;
 
 /**
  * A request filter that implements the Authorization bearer token usage defined by
@@ -39,56 +44,153 @@ import edu.tamu.tcat.account.token.TokenService;
  */
 public class TokenSecurityObjectFilter<PayloadType> implements ContainerRequestFilter
 {
-   private final TokenService<PayloadType> tokenService;
-   private final TokenSecured annot;
+   private final Supplier<TokenService<PayloadType>> tokenService;
+   // copied from the annotation, since annotation members are read through a dynamic proxy
+   private final boolean required;
+   private final String label;
+   private final boolean lazy;
+   private final boolean async;
+   private final Executor executor;
 
    public TokenSecurityObjectFilter(TokenService<PayloadType> svc, TokenSecured annot)
+   {
+      this(() -> svc, annot);
+   }
+
+   /**
+    * @param svc Supplies the token service to use for each request. The supplier is called
+    *       on every request, and should throw {@link IllegalStateException} if no service is
+    *       currently available.
+    * @param annot The annotation of the secured resource method.
+    * @since 2.2
+    */
+   public TokenSecurityObjectFilter(Supplier<TokenService<PayloadType>> svc, TokenSecured annot)
+   {
+      this(svc, annot, ForkJoinPool.commonPool());
+   }
+
+   /**
+    * @param svc Supplies the token service to use for each request.
+    * @param annot The annotation of the secured resource method.
+    * @param executor The executor used to resolve the payloads of validated tokens for
+    *       resource methods that are {@link TokenSecured#async() asynchronous}.
+    * @since 2.2
+    * @see #TokenSecurityObjectFilter(Supplier, TokenSecured)
+    */
+   public TokenSecurityObjectFilter(Supplier<TokenService<PayloadType>> svc, TokenSecured annot, Executor executor)
    {
       this.tokenService = svc;
-      this.annot = annot;
+      this.required = annot.required();
+      this.label = annot.label();
+      this.lazy = annot.lazy();
+      this.async = annot.async();
+      this.executor = executor;
    }
 
    @Override
    public void filter(ContainerRequestContext requestContext) throws IOException
    {
-      MultivaluedMap<String, String> map = requestContext.getHeaders();
-      List<String> authKeys = map.keySet().stream()
-         .filter(s -> s.equalsIgnoreCase(TokenDynamicFeature.HEADER_AUTHZ))
-         .collect(Collectors.toList());
-
-      Response.ResponseBuilder badRequest = Response.status(Response.Status.BAD_REQUEST)
-         //TODO: if "realm" config provided, add it here
-         .header(TokenDynamicFeature.HEADER_WWWAUTHN, "Bearer")
-         .type(MediaType.TEXT_PLAIN);
-
-      if (authKeys.isEmpty() && annot.required())
-         throw new BadRequestException(badRequest.entity("Token not provided to service requiring token").build());
+      TokenService<PayloadType> tokenService = getTokenService(this.tokenService);
+      String header = TokenDynamicFeature.findAuthorizationHeader(requestContext.getHeaders());
+      if (header == null && required)
+         throw badRequest("Token not provided to service requiring token");
 
       // request context container is required regardless of whether the token payload is present or not:
       // we set up this container here and populate it later if we have a token.
       ContextBean.Installer installer = ContextBean.from(requestContext);
       ContextBean.Container<PayloadType> container = installer.install(tokenService.getPayloadType());
 
-      if (!authKeys.isEmpty())
+      if (header != null)
       {
-         String header = map.getFirst(authKeys.get(0));
-         if (header == null || header.length() < 8 ||
-             // Get the substring of the token instead of toLowerCase on the whole token for a minor optimization
-             !header.substring(0,7).toLowerCase().equals(TokenDynamicFeature.TOKEN_TYPE_BEARER.toLowerCase()+" "))
-            throw new BadRequestException(badRequest.entity("No Bearer token provided").build());
+         if (!TokenDynamicFeature.isBearerAuthorization(header))
+            throw badRequest("No Bearer token provided");
 
          // if the client provides a token, it should be valid
          // see documentation on {@link TokenSecured} for more details.
          try
          {
-            String token = header.substring(7);
-            PayloadType tokenPayload = tokenService.unpackToken(token);
-            container.set(annot.label(), tokenPayload);
+            String token = header.substring(TokenDynamicFeature.BEARER_PREFIX_LENGTH);
+            if (async || lazy)
+            {
+               // the token is validated here; the service may defer resolving the payload
+               TokenData<PayloadType> data = tokenService.unpackTokenData(token);
+               if (async)
+                  container.setAsync(label, resolveAsync(data));
+               else
+                  container.setDeferred(label, data::getPayload);
+            }
+            else
+            {
+               PayloadType tokenPayload = tokenService.unpackToken(token);
+               container.set(label, tokenPayload);
+            }
+         }
+         catch (WebApplicationException e)
+         {
+            throw e;
          }
          catch (Exception e)
          {
-            throw new BadRequestException(badRequest.entity("Invalid token provided").build());
+            throw badRequest("Invalid token provided");
          }
       }
    }
+
+   /**
+    * Resolves the payload of a validated token using the configured executor, without waiting
+    * for the result. Failures are reported as the {@link BadRequestException} that would have
+    * been thrown by a synchronous filter.
+    *
+    * @throws ServiceUnavailableException If the executor does not accept the task.
+    */
+   private CompletableFuture<PayloadType> resolveAsync(TokenData<PayloadType> data)
+   {
+      CompletableFuture<PayloadType> result = new CompletableFuture<>();
+      try
+      {
+         executor.execute(() -> {
+            try
+            {
+               result.complete(data.getPayload());
+            }
+            catch (Throwable e)
+            {
+               result.completeExceptionally(badRequest("Invalid token provided"));
+               if (e instanceof Error)
+                  throw (Error)e;
+            }
+         });
+      }
+      catch (RejectedExecutionException e)
+      {
+         throw new ServiceUnavailableException();
+      }
+      return result;
+   }
+
+   /**
+    * Builds the response for a rejected request. This is only done on failure, so that
+    * accepted requests do not pay for constructing it.
+    */
+   private static BadRequestException badRequest(String message)
+   {
+      return new BadRequestException(Response.status(Response.Status.BAD_REQUEST)
+         //TODO: if "realm" config provided, add it here
+         .header(TokenDynamicFeature.HEADER_WWWAUTHN, TokenDynamicFeature.TOKEN_TYPE_BEARER)
+         .type(MediaType.TEXT_PLAIN)
+         .entity(message)
+         .build());
+   }
+
+   static <PT> TokenService<PT> getTokenService(Supplier<TokenService<PT>> supplier)
+   {
+      try
+      {
+         return supplier.get();
+      }
+      catch (IllegalStateException e)
+      {
+         throw new ServiceUnavailableException(e.getMessage());
+      }
+   }
 }
@@ -15,6 +15,7 @@
  */
 package edu.tamu.tcat.account.signature;
 
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Map;
 
@@ -123,6 +124,36 @@ public interface SignatureService<PayloadType>
        */
       void processSignedData(byte[] data, int offset, int bytesToRead) throws SignatureException;
 
+      /**
+       * Process signature bytes. The bytes between the position and the limit of the buffer are
+       * processed, and its position is advanced to its limit.
+       * <p>
+       * The default implementation passes the backing array of heap buffers to
+       * {@link #processSignedData(byte[], int, int)} without copying; the contents of direct
+       * buffers are copied in chunks. Implementations that can consume buffers directly, such
+       * as those based on {@link java.security.Signature#update(ByteBuffer)}, may override it.
+       * @param data The data to process
+       * @throws SignatureException Thrown if the verifier cannot process the data.
+       * @since 2.2
+       */
+      default void processSignedData(ByteBuffer data) throws SignatureException
+      {
+         if (data.hasArray())
+         {
+            processSignedData(data.array(), data.arrayOffset() + data.position(), data.remaining());
+            data.position(data.limit());
+            return;
+         }
+
+         byte[] chunk = new byte[Math.min(data.remaining(), 8192)];
+         while (data.hasRemaining())
+         {
+            int length = Math.min(chunk.length, data.remaining());
+            data.get(chunk, 0, length);
+            processSignedData(chunk, 0, length);
+         }
+      }
+
       /**
        * Verify the signature.  No futher operations will be performed on this verifier after this method
        * @return <code>true</code> if the signature is valid, <code>false</code> otherwise.
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2014 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.tamu.tcat.account.token;
+
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+
+import edu.tamu.tcat.account.token.TokenService.TokenData;
+
+/**
+ * A non-blocking counterpart to {@link TokenService}. Operations return a
+ * {@link CompletionStage} rather than blocking the calling thread, allowing services whose
+ * payloads are resolved from remote or database-backed stores to release container threads
+ * while those lookups are in progress.
+ * <p>
+ * Existing synchronous services may be used through this API by means of
+ * {@link #adapt(TokenService)} or {@link #adapt(TokenService, Executor)}.
+ *
+ * @param <PayloadType> The payload type of the tokens.
+ * @since 2.2
+ */
+public interface AsyncTokenService<PayloadType>
+{
+   /**
+    * Create a {@link TokenData} from a payload.
+    *
+    * @param payload The payload to encode in the token.
+    * @return A stage that completes with a new data instance containing an expiring token's
+    *       (encrypted) content and expiration timestamp, or completes exceptionally if the
+    *       token cannot be created.
+    * @see TokenService#createTokenData(Object)
+    */
+   CompletionStage<TokenData<PayloadType>> createTokenDataAsync(PayloadType payload);
+
+   /**
+    * Process the (encrypted) token string from the client.
+    *
+    * @param token The (encrypted) token to read.
+    * @return A stage that completes with the payload contained in the token, or completes
+    *       exceptionally if the token cannot be unpacked.
+    * @see TokenService#unpackToken(String)
+    */
+   CompletionStage<PayloadType> unpackTokenAsync(String token);
+
+   /**
+    * @return The payload type. Does not return {@code null}
+    * @see TokenService#getPayloadType()
+    */
+   Class<PayloadType> getPayloadType();
+
+   /**
+    * Adapts a synchronous {@link TokenService} whose operations do not block, such as one
+    * that only performs cryptographic operations. The returned service invokes the
+    * delegate on the calling thread and returns an already completed stage.
+    *
+    * @param delegate The service to adapt.
+    * @return An asynchronous view of the supplied service.
+    */
+   static <PT> AsyncTokenService<PT> adapt(TokenService<PT> delegate)
+   {
+      return new SyncTokenServiceAdapter<>(delegate, null);
+   }
+
+   /**
+    * Adapts a synchronous {@link TokenService} whose operations may block. The returned
+    * service invokes the delegate using the supplied executor.
+    *
+    * @param delegate The service to adapt.
+    * @param executor The executor on which to invoke the delegate.
+    * @return An asynchronous view of the supplied service.
+    */
+   static <PT> AsyncTokenService<PT> adapt(TokenService<PT> delegate, Executor executor)
+   {
+      return new SyncTokenServiceAdapter<>(delegate, executor);
+   }
+}
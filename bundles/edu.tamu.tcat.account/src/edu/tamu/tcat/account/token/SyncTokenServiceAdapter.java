@@ -0,0 +1,82 @@
+/*
+ * Copyright 2014 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.tamu.tcat.account.token;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+import edu.tamu.tcat.account.token.TokenService.TokenData;
+
+/**
+ * Presents a synchronous {@link TokenService} as an {@link AsyncTokenService}.
+ *
+ * @see AsyncTokenService#adapt(TokenService, Executor)
+ */
+class SyncTokenServiceAdapter<PayloadType> implements AsyncTokenService<PayloadType>
+{
+   private final TokenService<PayloadType> delegate;
+   private final Executor executor;
+
+   /**
+    * @param delegate The service to adapt.
+    * @param executor The executor on which to invoke the delegate, or {@code null} to
+    *       invoke it on the calling thread.
+    */
+   SyncTokenServiceAdapter(TokenService<PayloadType> delegate, Executor executor)
+   {
+      this.delegate = Objects.requireNonNull(delegate, "No token service supplied");
+      this.executor = executor;
+   }
+
+   @Override
+   public CompletionStage<TokenData<PayloadType>> createTokenDataAsync(PayloadType payload)
+   {
+      return call(() -> delegate.createTokenData(payload));
+   }
+
+   @Override
+   public CompletionStage<PayloadType> unpackTokenAsync(String token)
+   {
+      return call(() -> delegate.unpackToken(token));
+   }
+
+   @Override
+   public Class<PayloadType> getPayloadType()
+   {
+      return delegate.getPayloadType();
+   }
+
+   private <T> CompletionStage<T> call(Supplier<T> operation)
+   {
+      if (executor != null)
+         return CompletableFuture.supplyAsync(operation, executor);
+
+      CompletableFuture<T> result = new CompletableFuture<>();
+      try
+      {
+         result.complete(operation.get());
+      }
+      catch (RuntimeException ex)
+      {
+         result.completeExceptionally(ex);
+      }
+
+      return result;
+   }
+}
@@ -16,6 +16,10 @@
 package edu.tamu.tcat.account.token;
 
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
 
 /**
  * An API for creating and unpacking tokens of a particular "payload type".
@@ -56,6 +60,92 @@ public interface TokenService<PayloadType>
       ZonedDateTime getExpiration();
    }
 
+   /**
+    * The outcome of processing a single item within a batch operation such as
+    * {@link TokenService#unpackTokens(List)}. Each item of a batch succeeds or fails
+    * independently of the others.
+    *
+    * @param <T> The type of value produced for a successfully processed item.
+    * @since 2.2
+    */
+   interface BatchResult<T>
+   {
+      /**
+       * @return {@code true} if the associated item was processed successfully.
+       */
+      boolean isSuccess();
+
+      /**
+       * @return The value produced for the associated item.
+       * @throws RuntimeException The error that caused the associated item to fail, if
+       *       it was not processed successfully.
+       */
+      T get();
+
+      /**
+       * @return The error that caused the associated item to fail. Will be empty if the
+       *       item was processed successfully.
+       */
+      Optional<RuntimeException> getError();
+
+      /**
+       * @param value The value produced for an item.
+       * @return A successful result for the supplied value.
+       */
+      static <T> BatchResult<T> success(T value)
+      {
+         return new BatchResult<T>()
+         {
+            @Override
+            public boolean isSuccess()
+            {
+               return true;
+            }
+
+            @Override
+            public T get()
+            {
+               return value;
+            }
+
+            @Override
+            public Optional<RuntimeException> getError()
+            {
+               return Optional.empty();
+            }
+         };
+      }
+
+      /**
+       * @param error The error that caused an item to fail.
+       * @return A failed result for the supplied error.
+       */
+      static <T> BatchResult<T> failure(RuntimeException error)
+      {
+         Objects.requireNonNull(error);
+         return new BatchResult<T>()
+         {
+            @Override
+            public boolean isSuccess()
+            {
+               return false;
+            }
+
+            @Override
+            public T get()
+            {
+               throw error;
+            }
+
+            @Override
+            public Optional<RuntimeException> getError()
+            {
+               return Optional.of(error);
+            }
+         };
+      }
+   }
+
    /**
     * Create a {@link TokenData} from a payload. The token may be used to
     * construct headers or cookies for client/server applications.
@@ -81,6 +171,127 @@ public interface TokenService<PayloadType>
     */
    PayloadType unpackToken(String token);
 
+   /**
+    * Process the (encrypted) token string from the client, returning both the payload and,
+    * where available, the expiration time of the token.
+    * <p>
+    * Implementations must validate the token before returning, but may defer any further
+    * work needed to produce the payload, such as a database lookup, until
+    * {@link TokenData#getPayload()} is first called.
+    * <p>
+    * The default implementation calls {@link #unpackToken(String)} and reports a
+    * {@code null} expiration time.
+    *
+    * @param token The (encrypted) token to read.
+    * @return The token data contained in the token. The {@link TokenData#getExpiration()}
+    *       of the returned data may be {@code null} if the service does not expose it.
+    * @throws RuntimeException If the token cannot be unpacked.
+    * @since 2.2
+    */
+   default TokenData<PayloadType> unpackTokenData(String token)
+   {
+      PayloadType payload = unpackToken(token);
+      return new TokenData<PayloadType>()
+      {
+         @Override
+         public PayloadType getPayload()
+         {
+            return payload;
+         }
+
+         @Override
+         public String getToken()
+         {
+            return token;
+         }
+
+         @Override
+         public ZonedDateTime getExpiration()
+         {
+            return null;
+         }
+      };
+   }
+
+   /**
+    * Provide a {@link TokenData} for a client that has presented a previously issued token
+    * and is to be issued a token for the supplied payload, for example on each response of
+    * a session with sliding expiration. Implementations may return the presented token,
+    * with its original expiration, if it remains valid for the supplied payload and is not
+    * yet due to be renewed; otherwise a new token is created.
+    * <p>
+    * The default implementation always calls {@link #createTokenData(Object)}.
+    *
+    * @param token The (encrypted) token presented by the client. May be {@code null} if the
+    *       client did not present a token.
+    * @param payload The payload that the returned token must contain.
+    * @return A data instance for the presented token or for a newly created token.
+    * @throws RuntimeException If a new token is required but cannot be created.
+    * @since 2.2
+    */
+   default TokenData<PayloadType> renewTokenData(String token, PayloadType payload)
+   {
+      return createTokenData(payload);
+   }
+
+   /**
+    * Create a {@link TokenData} for each of the supplied payloads. A failure to create the
+    * token for one payload does not affect the processing of the others.
+    * <p>
+    * The default implementation calls {@link #createTokenData(Object)} for each payload in
+    * turn. Implementations may override this to process the batch more efficiently.
+    *
+    * @param payloads The payloads to encode in tokens.
+    * @return The result for each payload, in the same order as the supplied list.
+    * @since 2.2
+    */
+   default List<BatchResult<TokenData<PayloadType>>> createTokens(List<PayloadType> payloads)
+   {
+      List<BatchResult<TokenData<PayloadType>>> results = new ArrayList<>(payloads.size());
+      for (PayloadType payload : payloads)
+      {
+         try
+         {
+            results.add(BatchResult.success(createTokenData(payload)));
+         }
+         catch (RuntimeException ex)
+         {
+            results.add(BatchResult.failure(ex));
+         }
+      }
+
+      return results;
+   }
+
+   /**
+    * Process a batch of (encrypted) token strings from clients. A failure to unpack one
+    * token does not affect the processing of the others.
+    * <p>
+    * The default implementation calls {@link #unpackToken(String)} for each token in turn.
+    * Implementations may override this to process the batch more efficiently.
+    *
+    * @param tokens The (encrypted) tokens to read.
+    * @return The result for each token, in the same order as the supplied list.
+    * @since 2.2
+    */
+   default List<BatchResult<PayloadType>> unpackTokens(List<String> tokens)
+   {
+      List<BatchResult<PayloadType>> results = new ArrayList<>(tokens.size());
+      for (String token : tokens)
+      {
+         try
+         {
+            results.add(BatchResult.success(unpackToken(token)));
+         }
+         catch (RuntimeException ex)
+         {
+            results.add(BatchResult.failure(ex));
+         }
+      }
+
+      return results;
+   }
+
    /**
     * Provide a Class representing {@code <PayloadType>}. This is used to validate this service can handle
     * type of payload available when both are retrieved anonymously.
@@ -0,0 +1,51 @@
+package edu.tamu.tcat.account.test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+
+/**
+ * Reads the per-thread allocation counter exposed by HotSpot JVMs. Used by {@link Benchmarks}
+ * to report bytes allocated per operation, and by tests that bound allocation.
+ */
+final class AllocationMeter
+{
+   private static final Method ALLOCATED_BYTES;
+
+   static {
+      Method m;
+      try
+      {
+         m = Class.forName("com.sun.management.ThreadMXBean").getMethod("getThreadAllocatedBytes", long.class);
+      }
+      catch (Exception e)
+      {
+         m = null;
+      }
+      ALLOCATED_BYTES = m;
+   }
+
+   private AllocationMeter()
+   {
+   }
+
+   /**
+    * @return The total number of bytes allocated by the current thread, or {@code 0} if
+    *       allocation tracking is not supported by this JVM.
+    */
+   static long allocatedBytes()
+   {
+      if (ALLOCATED_BYTES == null)
+         return 0;
+
+      ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+      try
+      {
+         return ((Long)ALLOCATED_BYTES.invoke(bean, Long.valueOf(Thread.currentThread().getId()))).longValue();
+      }
+      catch (Exception e)
+      {
+         return 0;
+      }
+   }
+}
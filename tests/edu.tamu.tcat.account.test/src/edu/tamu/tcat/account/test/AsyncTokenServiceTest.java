@@ -0,0 +1,80 @@
+package edu.tamu.tcat.account.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.tamu.tcat.account.db.AsyncAdaptingTokenService;
+import edu.tamu.tcat.account.db.ExpiringTokenProvider;
+import edu.tamu.tcat.account.token.AsyncTokenService;
+import edu.tamu.tcat.account.token.TokenService;
+import edu.tamu.tcat.crypto.TokenException;
+
+public class AsyncTokenServiceTest
+{
+   private TokenService<UUID> uuidTokens;
+
+   @Before
+   public void setup() throws TokenException
+   {
+      uuidTokens = ExpiringTokenProvider.UuidTokenProviderFactory.makeProvider(TestKeys.secureToken(), 1, ChronoUnit.HOURS);
+   }
+
+   @Test
+   public void testAdapter() throws Exception
+   {
+      ExecutorService executor = Executors.newSingleThreadExecutor();
+      try
+      {
+         AsyncTokenService<UUID> svc = AsyncTokenService.adapt(uuidTokens, executor);
+         UUID id = UUID.randomUUID();
+         String token = svc.createTokenDataAsync(id).toCompletableFuture().get().getToken();
+         assertEquals("Did not recover input id.", id, svc.unpackTokenAsync(token).toCompletableFuture().get());
+
+         CompletableFuture<UUID> invalid = svc.unpackTokenAsync("not a token").toCompletableFuture();
+         try
+         {
+            invalid.get();
+            assertFalse("Invalid token was unpacked", true);
+         }
+         catch (ExecutionException ex)
+         {
+            // expected exception
+         }
+      }
+      finally
+      {
+         executor.shutdown();
+      }
+   }
+
+   @Test
+   public void testAsyncResolution() throws Exception
+   {
+      CompletableFuture<String> lookup = new CompletableFuture<>();
+      AsyncAdaptingTokenService<String, UUID> svc = new AsyncAdaptingTokenService<>(String.class, uuidTokens,
+            UUID::fromString, id -> lookup);
+
+      UUID id = UUID.randomUUID();
+      String token = svc.createTokenDataAsync(id.toString()).toCompletableFuture().get().getToken();
+
+      // the caller is not blocked while the item is being resolved
+      CompletionStage<String> result = svc.unpackTokenAsync(token);
+      assertFalse("Completed before the item was resolved", result.toCompletableFuture().isDone());
+
+      lookup.complete(id.toString());
+      assertTrue(result.toCompletableFuture().isDone());
+      assertEquals("Did not recover input id.", id.toString(), result.toCompletableFuture().get());
+   }
+}
@@ -0,0 +1,284 @@
+package edu.tamu.tcat.account.test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.core.SecurityContext;
+
+import edu.tamu.tcat.account.db.CachingTokenService;
+import edu.tamu.tcat.account.db.CompactTokenProvider.SecureTokenEncoding;
+import edu.tamu.tcat.account.db.ExpiringTokenProvider;
+import edu.tamu.tcat.account.db.TokenKeyRing;
+import edu.tamu.tcat.account.jaxrs.bean.ContextBean;
+import edu.tamu.tcat.account.jaxrs.internal.ClassAndId;
+import edu.tamu.tcat.account.jaxrs.internal.ServiceRegistry;
+import edu.tamu.tcat.account.jaxrs.provider.signature.ReplayGuard;
+import edu.tamu.tcat.account.jaxrs.provider.token.TokenSecurityObjectFilter;
+import edu.tamu.tcat.account.test.mock.MockRequestContext;
+import edu.tamu.tcat.account.token.TokenService;
+import edu.tamu.tcat.crypto.SecureToken;
+
+/**
+ * Reports the time and memory used by the operations whose behavior is covered by the tests.
+ * Measurements depend on the machine and JVM, so they are not part of the test suite; run
+ * {@link #main(String[])} to print them.
+ */
+public final class Benchmarks
+{
+   /**
+    * An operation to measure.
+    */
+   @FunctionalInterface
+   interface Operation
+   {
+      /**
+       * @param i The index of the call, which is distinct for each call.
+       */
+      void run(int i) throws Exception;
+   }
+
+   private Benchmarks()
+   {
+   }
+
+   public static void main(String[] args) throws Exception
+   {
+      tokenCache();
+      tokenFormats();
+      expiredTokens();
+      keyRing();
+      payloadCodecs();
+      tokenFilter();
+      requestContext();
+      serviceLookup();
+      replayGuard();
+      signedBody();
+   }
+
+   /**
+    * Calls the operation to warm up, then measures further calls.
+    *
+    * @return The average time of a call in nanoseconds.
+    */
+   static long nanosPerOp(int iterations, Operation op) throws Exception
+   {
+      for (int i = 0; i < iterations; i++)
+         op.run(i);
+
+      long start = System.nanoTime();
+      for (int i = iterations; i < 2 * iterations; i++)
+         op.run(i);
+      return (System.nanoTime() - start) / iterations;
+   }
+
+   /**
+    * Calls the operation to warm up, then measures further calls.
+    *
+    * @return The average number of bytes allocated by a call, or {@code 0} if allocation is
+    *       not measured by this JVM.
+    */
+   static long bytesPerOp(int iterations, Operation op) throws Exception
+   {
+      for (int i = 0; i < iterations; i++)
+         op.run(i);
+
+      long bytes = AllocationMeter.allocatedBytes();
+      for (int i = iterations; i < 2 * iterations; i++)
+         op.run(i);
+      return (AllocationMeter.allocatedBytes() - bytes) / iterations;
+   }
+
+   private static void report(String format, Object... args)
+   {
+      System.out.println(String.format(format, args));
+   }
+
+   private static Operation createAndUnpack(TokenService<UUID> svc)
+   {
+      UUID id = UUID.randomUUID();
+      return i -> svc.unpackToken(svc.createTokenData(id).getToken());
+   }
+
+   private static void tokenCache() throws Exception
+   {
+      ExpiringTokenProvider<UUID> provider = (ExpiringTokenProvider<UUID>)ExpiringTokenProvider.UuidTokenProviderFactory.makeProvider(TestKeys.secureToken(), 1, ChronoUnit.HOURS);
+      CachingTokenService<UUID> cached = new CachingTokenService<>(provider, 1_000);
+      String[] tokens = new String[100];
+      for (int i = 0; i < tokens.length; i++)
+         tokens[i] = provider.createTokenData(UUID.randomUUID()).getToken();
+
+      int iterations = 200_000;
+      report("Repeated-token unpack: uncached %d ns/op, cached %d ns/op",
+            nanosPerOp(iterations, i -> provider.unpackToken(tokens[i % tokens.length])),
+            nanosPerOp(iterations, i -> cached.unpackToken(tokens[i % tokens.length])));
+   }
+
+   private static void tokenFormats() throws Exception
+   {
+      SecureToken secureToken = TestKeys.secureToken();
+      TokenService<UUID> v1 = ExpiringTokenProvider.UuidTokenProviderFactory.makeProvider(secureToken, 1, ChronoUnit.HOURS);
+      TokenService<UUID> compact = ExpiringTokenProvider.UuidTokenProviderFactory.makeCompactProvider(secureToken, SecureTokenEncoding.URL_SAFE_PADDED, 1, ChronoUnit.HOURS);
+      TokenService<UUID> signed = ExpiringTokenProvider.UuidTokenProviderFactory.makeSignedProvider(TestKeys.randomKey(), 1, ChronoUnit.HOURS);
+
+      UUID id = UUID.randomUUID();
+      int iterations = 100_000;
+      report("UUID token length: encrypted %d chars, compact %d chars, signed %d chars",
+            v1.createTokenData(id).getToken().length(),
+            compact.createTokenData(id).getToken().length(),
+            signed.createTokenData(id).getToken().length());
+      report("Create+unpack: encrypted %d ns/op, compact %d ns/op, signed %d ns/op",
+            nanosPerOp(iterations, createAndUnpack(v1)),
+            nanosPerOp(iterations, createAndUnpack(compact)),
+            nanosPerOp(iterations, createAndUnpack(signed)));
+   }
+
+   private static void expiredTokens() throws Exception
+   {
+      ExpiringTokenProvider<UUID> plain = (ExpiringTokenProvider<UUID>)ExpiringTokenProvider.UuidTokenProviderFactory.makeProvider(TestKeys.secureToken(), 1, ChronoUnit.HOURS);
+      ExpiringTokenProvider<UUID> prefixed = plain.withAuthenticatedExpiry(TestKeys.randomKey());
+      String plainToken = plain.createTokenData(UUID.randomUUID(), Instant.now().minusSeconds(1)).getToken();
+      String prefixedToken = prefixed.createTokenData(UUID.randomUUID(), Instant.now().minusSeconds(1)).getToken();
+
+      int iterations = 100_000;
+      report("Expired token rejection: decrypt-then-check %d ns/op, authenticated prefix %d ns/op",
+            nanosPerOp(iterations, i -> reject(plain, plainToken)),
+            nanosPerOp(iterations, i -> reject(prefixed, prefixedToken)));
+   }
+
+   private static void reject(TokenService<UUID> svc, String token)
+   {
+      try
+      {
+         svc.unpackToken(token);
+         throw new IllegalStateException("Expired token accepted");
+      }
+      catch (IllegalArgumentException ex)
+      {
+         // expected exception
+      }
+   }
+
+   private static void keyRing() throws Exception
+   {
+      SecureToken keyA = TestKeys.secureToken();
+      SecureToken keyB = TestKeys.secureToken();
+      TokenService<UUID> single = ExpiringTokenProvider.UuidTokenProviderFactory.makeProvider(keyA, 1, ChronoUnit.HOURS);
+      TokenKeyRing ring = new TokenKeyRing();
+      for (int i = 0; i < 16; i++)
+         ring.addKey(i, i == 15 ? keyA : keyB);
+      ring.setActiveKey(15);
+      TokenService<UUID> rotating = ExpiringTokenProvider.UuidTokenProviderFactory.makeProvider(ring, 1, ChronoUnit.HOURS);
+
+      String singleToken = single.createTokenData(UUID.randomUUID()).getToken();
+      String ringToken = rotating.createTokenData(UUID.randomUUID()).getToken();
+
+      int iterations = 100_000;
+      report("Unpack: single key %d ns/op, key ring (16 keys) %d ns/op",
+            nanosPerOp(iterations, i -> single.unpackToken(singleToken)),
+            nanosPerOp(iterations, i -> rotating.unpackToken(ringToken)));
+   }
+
+   private static void payloadCodecs() throws Exception
+   {
+      SecureToken secureToken = TestKeys.secureToken();
+      ExpiringTokenProvider<String> adapted = new ExpiringTokenProvider<>(secureToken,
+            value -> value.getBytes(StandardCharsets.UTF_8),
+            bytes -> new String(bytes, StandardCharsets.UTF_8),
+            1, ChronoUnit.HOURS, String.class);
+      ExpiringTokenProvider<String> codec = ExpiringTokenProvider.StringTokenProviderFactory.makeProvider(secureToken, 1, ChronoUnit.HOURS);
+
+      String payload = "account.user.0123456789";
+      String token = codec.createTokenData(payload).getToken();
+      int iterations = 50_000;
+      long adaptedBytes = bytesPerOp(iterations, i -> { adapted.createTokenData(payload); adapted.unpackToken(token); });
+      long codecBytes = bytesPerOp(iterations, i -> { codec.createTokenData(payload); codec.unpackToken(token); });
+      codec.setThreadBufferReuse(true);
+      long reusedBytes = bytesPerOp(iterations, i -> { codec.createTokenData(payload); codec.unpackToken(token); });
+      codec.dispose();
+
+      report("Create+unpack: function adapter %d bytes/op, payload codec %d bytes/op, with per-thread buffers %d bytes/op",
+            adaptedBytes, codecBytes, reusedBytes);
+   }
+
+   private static void tokenFilter() throws Exception
+   {
+      TokenSecurityObjectFilter<UUID> filter = new TokenSecurityObjectFilter<>(new TokenSecurityObjectFilterTest.FixedTokenService(),
+            TokenSecurityObjectFilterTest.annotation("required"));
+
+      // the context is reused so that the measurement excludes the per-request context store
+      ContainerRequestContext ctx = MockRequestContext.create("GET",
+            "Accept", "application/json",
+            "Host", "example.com",
+            "User-Agent", "test",
+            "Authorization", "Bearer valid-token");
+
+      int iterations = 1_000_000;
+      report("TokenSecurityObjectFilter.filter: %d ns/op, %d bytes/op",
+            nanosPerOp(iterations, i -> filter.filter(ctx)),
+            bytesPerOp(iterations, i -> filter.filter(ctx)));
+   }
+
+   private static void requestContext() throws Exception
+   {
+      ContainerRequestContext ctx = MockRequestContext.create("GET");
+      SecurityContext anonymous = ctx.getSecurityContext();
+      UUID id = UUID.randomUUID();
+
+      // the use of the context by a token filter and resource method in one request
+      Operation request = i -> {
+         ctx.setSecurityContext(anonymous);
+         ContextBean.from(ctx).install(UUID.class).set("", id);
+         if (new ContextBean(ctx.getSecurityContext()).get(UUID.class) != id)
+            throw new IllegalStateException("Value not found");
+      };
+
+      int iterations = 1_000_000;
+      report("Per-request context install, set and get: %d ns/op, %d bytes/op",
+            nanosPerOp(iterations, request), bytesPerOp(iterations, request));
+   }
+
+   private static void serviceLookup() throws Exception
+   {
+      ServiceRegistry<TokenService<?>> registry = new ServiceRegistry<>("TokenService");
+      ClassAndId key = new ClassAndId(UUID.class, "");
+      ServiceRegistry.Handle<TokenService<?>> handle = registry.getHandle(key);
+      registry.bind(key, ExpiringTokenProvider.UuidTokenProviderFactory.makeProvider(TestKeys.secureToken(), 1, ChronoUnit.HOURS));
+
+      report("Service handle lookup: %d ns/op", nanosPerOp(10_000_000, i -> {
+         if (handle.get() == null)
+            throw new IllegalStateException("Lookup failed");
+      }));
+   }
+
+   private static void replayGuard() throws Exception
+   {
+      int iterations = 200_000;
+      ReplayGuard guard = new ReplayGuard(Duration.ofMinutes(16), 4 * iterations);
+      String identifier = UUID.randomUUID().toString();
+      byte[][] signatures = new byte[2 * iterations][];
+      for (int i = 0; i < signatures.length; i++)
+         signatures[i] = ReplayGuardTest.signature(i);
+
+      // each signature is recorded once, then each is replayed
+      long recordNanos = nanosPerOp(iterations, i -> guard.record(identifier, signatures[i]));
+      long replayNanos = nanosPerOp(iterations, i -> guard.record(identifier, signatures[i]));
+      report("Replay guard: record %d ns/op, reject replay %d ns/op, %d signatures held",
+            recordNanos, replayNanos, guard.size());
+   }
+
+   private static void signedBody() throws Exception
+   {
+      byte[] body = InputStreamSignatureVerifierProxyTest.body(16 * 1024 * 1024);
+      for (int readSize : new int[] { 1, 64, 8192 })
+      {
+         report("Verifying 16 MiB signed PUT body in %d byte reads: %d ms, %d KiB allocated",
+               readSize,
+               nanosPerOp(1, i -> InputStreamSignatureVerifierProxyTest.verify(body, readSize)) / 1_000_000,
+               bytesPerOp(1, i -> InputStreamSignatureVerifierProxyTest.verify(body, readSize)) / 1024);
+      }
+   }
+}
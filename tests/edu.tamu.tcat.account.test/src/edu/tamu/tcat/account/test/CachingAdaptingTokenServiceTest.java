@@ -0,0 +1,164 @@
+package edu.tamu.tcat.account.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.tamu.tcat.account.db.CachingAdaptingTokenService;
+import edu.tamu.tcat.account.db.ExpiringTokenProvider;
+import edu.tamu.tcat.account.token.TokenService;
+import edu.tamu.tcat.crypto.TokenException;
+
+public class CachingAdaptingTokenServiceTest
+{
+   private TokenService<Long> longTokens;
+   private final AtomicInteger lookups = new AtomicInteger();
+
+   @Before
+   public void setup() throws TokenException
+   {
+      longTokens = ExpiringTokenProvider.LongTokenProviderFactory.makeProvider(TestKeys.secureToken(), 1, ChronoUnit.HOURS);
+   }
+
+   private String lookup(Long id)
+   {
+      lookups.incrementAndGet();
+      try
+      {
+         // simulate a database round trip
+         Thread.sleep(50);
+      }
+      catch (InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+      }
+
+      return "account-" + id;
+   }
+
+   private CachingAdaptingTokenService<String, Long> makeService(long ttl, ChronoUnit unit)
+   {
+      return new CachingAdaptingTokenService<>(String.class, longTokens,
+            s -> Long.valueOf(s.substring("account-".length())), this::lookup, 100, ttl, unit);
+   }
+
+   @Test
+   public void testCachedAndInvalidated()
+   {
+      CachingAdaptingTokenService<String, Long> svc = makeService(1, ChronoUnit.HOURS);
+      String token = svc.createTokenData("account-7").getToken();
+
+      for (int i = 0; i < 5; i++)
+         assertEquals("account-7", svc.unpackToken(token));
+      assertEquals("Item was resolved more than once", 1, lookups.get());
+
+      svc.invalidate(Long.valueOf(7));
+      assertEquals("account-7", svc.unpackToken(token));
+      assertEquals("Invalidated item was not resolved again", 2, lookups.get());
+   }
+
+   @Test
+   public void testExpiry() throws InterruptedException
+   {
+      CachingAdaptingTokenService<String, Long> svc = makeService(100, ChronoUnit.MILLIS);
+      String token = svc.createTokenData("account-3").getToken();
+
+      svc.unpackToken(token);
+      Thread.sleep(200);
+      svc.unpackToken(token);
+      assertEquals("Expired item was not resolved again", 2, lookups.get());
+   }
+
+   @Test
+   public void testSingleFlight() throws Exception
+   {
+      CachingAdaptingTokenService<String, Long> svc = makeService(1, ChronoUnit.HOURS);
+      String token = svc.createTokenData("account-42").getToken();
+
+      int threads = 16;
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      try
+      {
+         CountDownLatch start = new CountDownLatch(1);
+         List<Future<String>> results = new ArrayList<>();
+         for (int i = 0; i < threads; i++)
+         {
+            results.add(executor.submit(() -> {
+               start.await();
+               return svc.unpackToken(token);
+            }));
+         }
+
+         start.countDown();
+         for (Future<String> result : results)
+            assertEquals("account-42", result.get());
+
+         assertEquals("Concurrent misses made more than one backend call", 1, lookups.get());
+      }
+      finally
+      {
+         executor.shutdown();
+      }
+   }
+
+   @Test
+   public void testFailuresNotCached()
+   {
+      AtomicInteger attempts = new AtomicInteger();
+      CachingAdaptingTokenService<String, Long> svc = new CachingAdaptingTokenService<>(String.class, longTokens,
+            s -> Long.valueOf(7), id -> {
+               if (attempts.incrementAndGet() == 1)
+                  throw new IllegalStateException("unavailable");
+               return "account-" + id;
+            }, 100, 1, ChronoUnit.HOURS);
+
+      String token = longTokens.createTokenData(Long.valueOf(7)).getToken();
+      try
+      {
+         svc.unpackToken(token);
+      }
+      catch (IllegalStateException ex)
+      {
+         // expected exception
+      }
+
+      assertEquals("account-7", svc.unpackToken(token));
+      assertEquals(2, attempts.get());
+   }
+
+   @Test
+   public void testErrorsNotCached()
+   {
+      AtomicInteger attempts = new AtomicInteger();
+      CachingAdaptingTokenService<String, Long> svc = new CachingAdaptingTokenService<>(String.class, longTokens,
+            s -> Long.valueOf(7), id -> {
+               if (attempts.incrementAndGet() == 1)
+                  throw new LinkageError("unavailable");
+               return "account-" + id;
+            }, 100, 1, ChronoUnit.HOURS);
+
+      String token = longTokens.createTokenData(Long.valueOf(7)).getToken();
+      try
+      {
+         svc.unpackToken(token);
+      }
+      catch (LinkageError ex)
+      {
+         // expected exception
+      }
+
+      // a failed entry left in the cache would block this call indefinitely
+      assertEquals("account-7", svc.unpackToken(token));
+      assertEquals(2, attempts.get());
+   }
+}
@@ -0,0 +1,285 @@
+package edu.tamu.tcat.account.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.security.PublicKey;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import edu.tamu.tcat.account.db.CachingSignatureService;
+import edu.tamu.tcat.account.signature.SignatureException;
+import edu.tamu.tcat.account.signature.SignatureService;
+import edu.tamu.tcat.account.test.mock.MockClock;
+import edu.tamu.tcat.account.test.mock.MockDigestVerifier;
+
+public class CachingSignatureServiceTest
+{
+   private static final Duration MAX_AGE = Duration.ofMinutes(10);
+   private static final Duration NEGATIVE_MAX_AGE = Duration.ofMinutes(1);
+
+   private static final UUID KNOWN = UUID.randomUUID();
+
+   /**
+    * A signature service knowing a single account, which counts payload lookups, key loads and
+    * verifiers built without a cached key.
+    */
+   private static class CountingSignatureService implements SignatureService<UUID>, CachingSignatureService.PublicKeyLoader<UUID>
+   {
+      final AtomicInteger lookups = new AtomicInteger();
+      final AtomicInteger keyLoads = new AtomicInteger();
+      final AtomicInteger uncachedVerifiers = new AtomicInteger();
+
+      @Override
+      public UUID getPayload(String identifier)
+      {
+         lookups.incrementAndGet();
+         UUID id;
+         try
+         {
+            id = UUID.fromString(identifier);
+         }
+         catch (IllegalArgumentException e)
+         {
+            throw new SignatureException("Identifier [" + identifier + "] is not a UUID", e);
+         }
+         return id.equals(KNOWN) ? id : null;
+      }
+
+      @Override
+      public PublicKey loadPublicKey(UUID payload)
+      {
+         keyLoads.incrementAndGet();
+         return new MockKey(payload);
+      }
+
+      @Override
+      public Verifier getVerifier(PublicKey key, byte[] signature)
+      {
+         return new MockDigestVerifier(signature);
+      }
+
+      @Override
+      public Verifier getVerifier(UUID account, byte[] signature)
+      {
+         uncachedVerifiers.incrementAndGet();
+         return getVerifier(loadPublicKey(account), signature);
+      }
+
+      @Override
+      public Class<UUID> getPayloadType()
+      {
+         return UUID.class;
+      }
+
+      @Override
+      public boolean mayBeSelfSigned()
+      {
+         return false;
+      }
+
+      @Override
+      public UUID getSelfSigningPayload(Object result)
+      {
+         throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public String getAuthorizationScope()
+      {
+         return "MOCK";
+      }
+
+      @Override
+      public SelfSignedVerifier<UUID> getVerifier(byte[] signature)
+      {
+         throw new UnsupportedOperationException();
+      }
+   }
+
+   private static class MockKey implements PublicKey
+   {
+      private static final long serialVersionUID = 1L;
+
+      private final UUID account;
+
+      MockKey(UUID account)
+      {
+         this.account = account;
+      }
+
+      @Override
+      public String getAlgorithm()
+      {
+         return "mock";
+      }
+
+      @Override
+      public String getFormat()
+      {
+         return null;
+      }
+
+      @Override
+      public byte[] getEncoded()
+      {
+         return account.toString().getBytes();
+      }
+   }
+
+   @Test
+   public void testPayloadCaching()
+   {
+      CountingSignatureService delegate = new CountingSignatureService();
+      CachingSignatureService<UUID> svc = new CachingSignatureService<>(delegate, 100, MAX_AGE, NEGATIVE_MAX_AGE);
+
+      for (int i = 0; i < 5; i++)
+         assertEquals("Unexpected payload", KNOWN, svc.getPayload(KNOWN.toString()));
+
+      assertEquals("Unexpected delegate lookups", 1, delegate.lookups.get());
+      assertEquals("Unexpected hit count", 4, svc.getHitCount());
+      assertEquals("Unexpected miss count", 1, svc.getMissCount());
+
+      // without a key loader, verifiers are built by the delegate
+      svc.getVerifier(svc.getPayload(KNOWN.toString()), new byte[] { 1 });
+      assertEquals("Verifier not built by delegate", 1, delegate.uncachedVerifiers.get());
+   }
+
+   @Test
+   public void testNegativeCaching()
+   {
+      MockClock clock = new MockClock();
+      CountingSignatureService delegate = new CountingSignatureService();
+      CachingSignatureService<UUID> svc = new CachingSignatureService<>(delegate, delegate, 100, MAX_AGE, NEGATIVE_MAX_AGE, clock);
+
+      String unknown = UUID.randomUUID().toString();
+      assertNull("Unexpected payload", svc.getPayload(unknown));
+      assertNull("Unexpected payload", svc.getPayload(unknown));
+      assertEquals("Unknown identifier not cached", 1, delegate.lookups.get());
+
+      clock.advance(NEGATIVE_MAX_AGE);
+      assertNull("Unexpected payload", svc.getPayload(unknown));
+      assertEquals("Unknown identifier not evicted", 2, delegate.lookups.get());
+
+      // malformed identifiers are rejected on each request
+      for (int i = 0; i < 2; i++)
+      {
+         try
+         {
+            svc.getPayload("not-a-uuid");
+            assertFalse("Malformed identifier accepted", true);
+         }
+         catch (SignatureException ex)
+         {
+            // expected exception
+         }
+      }
+      assertEquals("Malformed identifier cached", 4, delegate.lookups.get());
+
+      // with no negative caching, unknown identifiers are looked up each time
+      delegate = new CountingSignatureService();
+      svc = new CachingSignatureService<>(delegate, 100, MAX_AGE, Duration.ZERO);
+      svc.getPayload(unknown);
+      svc.getPayload(unknown);
+      assertEquals("Unknown identifier cached", 2, delegate.lookups.get());
+   }
+
+   @Test
+   public void testKeyCaching()
+   {
+      CountingSignatureService delegate = new CountingSignatureService();
+      CachingSignatureService<UUID> svc = new CachingSignatureService<>(delegate, delegate, 100, MAX_AGE, NEGATIVE_MAX_AGE);
+
+      for (int i = 0; i < 5; i++)
+      {
+         byte[] signature = { (byte)i };
+         SignatureService.Verifier verifier = svc.getVerifier(svc.getPayload(KNOWN.toString()), signature);
+         verifier.processSignedData(signature);
+         assertTrue("Verifier not built for signature", verifier.verify());
+      }
+      assertEquals("Key not cached", 1, delegate.keyLoads.get());
+      assertEquals("Unexpected uncached verifiers", 0, delegate.uncachedVerifiers.get());
+
+      // payloads not returned from the cache are passed to the delegate
+      assertNotNull("No verifier", svc.getVerifier(UUID.fromString(KNOWN.toString()), new byte[] { 1 }));
+      assertEquals("Verifier not built by delegate", 1, delegate.uncachedVerifiers.get());
+   }
+
+   @Test
+   public void testEvictionAndInvalidation()
+   {
+      MockClock clock = new MockClock();
+      CountingSignatureService delegate = new CountingSignatureService();
+      CachingSignatureService<UUID> svc = new CachingSignatureService<>(delegate, delegate, 100, MAX_AGE, NEGATIVE_MAX_AGE, clock);
+
+      svc.getVerifier(svc.getPayload(KNOWN.toString()), new byte[] { 1 });
+      clock.advance(MAX_AGE.minusMillis(1));
+      svc.getVerifier(svc.getPayload(KNOWN.toString()), new byte[] { 1 });
+      assertEquals("Payload evicted early", 1, delegate.lookups.get());
+      assertEquals("Key evicted early", 1, delegate.keyLoads.get());
+
+      clock.advance(Duration.ofMillis(1));
+      svc.getVerifier(svc.getPayload(KNOWN.toString()), new byte[] { 1 });
+      assertEquals("Payload not evicted", 2, delegate.lookups.get());
+      assertEquals("Key not evicted", 2, delegate.keyLoads.get());
+
+      // following key rotation
+      svc.invalidate(KNOWN.toString());
+      svc.getVerifier(svc.getPayload(KNOWN.toString()), new byte[] { 1 });
+      assertEquals("Payload not invalidated", 3, delegate.lookups.get());
+      assertEquals("Key not invalidated", 3, delegate.keyLoads.get());
+
+      svc.invalidateAll();
+      assertEquals("Cache not cleared", 0, svc.size());
+   }
+
+   @Test
+   public void testInvalidationDuringLookup()
+   {
+      List<CachingSignatureService<UUID>> services = new ArrayList<>();
+      CountingSignatureService delegate = new CountingSignatureService()
+      {
+         @Override
+         public UUID getPayload(String identifier)
+         {
+            UUID payload = super.getPayload(identifier);
+            // the key is rotated after the old payload was read, but before it is cached
+            if (lookups.get() == 1)
+               services.get(0).invalidate(identifier);
+            return payload;
+         }
+      };
+      CachingSignatureService<UUID> svc = new CachingSignatureService<>(delegate, delegate, 100, MAX_AGE, NEGATIVE_MAX_AGE);
+      services.add(svc);
+
+      svc.getPayload(KNOWN.toString());
+      assertEquals("Payload cached despite invalidation", 0, svc.size());
+      svc.getPayload(KNOWN.toString());
+      svc.getPayload(KNOWN.toString());
+      assertEquals("Payload not cached after invalidation", 2, delegate.lookups.get());
+   }
+
+   @Test
+   public void testMaxEntries()
+   {
+      CountingSignatureService delegate = new CountingSignatureService();
+      CachingSignatureService<UUID> svc = new CachingSignatureService<>(delegate, delegate, 10, MAX_AGE, NEGATIVE_MAX_AGE);
+
+      UUID payload = svc.getPayload(KNOWN.toString());
+      for (int i = 0; i < 20; i++)
+         svc.getPayload(UUID.randomUUID().toString());
+      assertEquals("Cache size not bounded", 10, svc.size());
+
+      // the evicted payload no longer has a cached key
+      svc.getVerifier(payload, new byte[] { 1 });
+      assertEquals("Key cached for evicted payload", 1, delegate.uncachedVerifiers.get());
+   }
+}
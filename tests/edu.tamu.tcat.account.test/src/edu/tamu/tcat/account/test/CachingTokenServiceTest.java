@@ -0,0 +1,144 @@
+package edu.tamu.tcat.account.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.UUID;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.tamu.tcat.account.db.AdaptingTokenService;
+import edu.tamu.tcat.account.db.CachingTokenService;
+import edu.tamu.tcat.account.db.ExpiringTokenProvider;
+import edu.tamu.tcat.account.db.TokenRevocationList;
+import edu.tamu.tcat.account.token.TokenService.TokenData;
+import edu.tamu.tcat.crypto.SecureToken;
+import edu.tamu.tcat.crypto.TokenException;
+
+public class CachingTokenServiceTest
+{
+   private SecureToken secureToken;
+
+   @Before
+   public void setup() throws TokenException
+   {
+      secureToken = TestKeys.secureToken();
+   }
+
+   private ExpiringTokenProvider<UUID> makeProvider(long duration, ChronoUnit unit)
+   {
+      return (ExpiringTokenProvider<UUID>)ExpiringTokenProvider.UuidTokenProviderFactory.makeProvider(secureToken, duration, unit);
+   }
+
+   @Test
+   public void testCacheHits()
+   {
+      CachingTokenService<UUID> svc = new CachingTokenService<>(makeProvider(1, ChronoUnit.HOURS), 10);
+      UUID id = UUID.randomUUID();
+      String token = svc.createTokenData(id).getToken();
+
+      for (int i = 0; i < 5; i++)
+         assertEquals("Did not recover input id.", id, svc.unpackToken(token));
+
+      assertEquals("Unexpected miss count", 1, svc.getMissCount());
+      assertEquals("Unexpected hit count", 4, svc.getHitCount());
+   }
+
+   @Test
+   public void testLruEviction()
+   {
+      CachingTokenService<UUID> svc = new CachingTokenService<>(makeProvider(1, ChronoUnit.HOURS), 2);
+      String a = svc.createTokenData(UUID.randomUUID()).getToken();
+      String b = svc.createTokenData(UUID.randomUUID()).getToken();
+      String c = svc.createTokenData(UUID.randomUUID()).getToken();
+
+      svc.unpackToken(a);
+      svc.unpackToken(b);
+      svc.unpackToken(a);     // b is now least recently used
+      svc.unpackToken(c);     // evicts b
+      assertEquals("Cache exceeded its bound", 2, svc.size());
+
+      svc.unpackToken(a);
+      assertEquals("Recently used token was evicted", 2, svc.getHitCount());
+      svc.unpackToken(b);
+      assertEquals("Least recently used token was not evicted", 4, svc.getMissCount());
+   }
+
+   @Test
+   public void testRevokedWhileCached()
+   {
+      ExpiringTokenProvider<UUID> provider = makeProvider(1, ChronoUnit.HOURS);
+      provider.setRevocationList(new TokenRevocationList(10));
+      CachingTokenService<UUID> svc = new CachingTokenService<>(provider, 10);
+      AdaptingTokenService<String, UUID> adapting = new AdaptingTokenService<>(String.class, provider, UUID::fromString, UUID::toString);
+      CachingTokenService<String> adapted = new CachingTokenService<>(adapting, 10, 1, ChronoUnit.HOURS);
+
+      UUID id = UUID.randomUUID();
+      String token = svc.createTokenData(id).getToken();
+      assertEquals("Did not recover input id.", id, svc.unpackToken(token));
+      assertEquals("Did not recover input id.", id.toString(), adapted.unpackToken(token));
+
+      // the cached entries are checked by content, so every cached spelling of the token is rejected
+      provider.revokeToken(token);
+      for (CachingTokenService<?> cache : Arrays.asList(svc, adapted))
+      {
+         try
+         {
+            cache.unpackToken(token);
+            assertFalse("Cached token was used after it was revoked", true);
+         }
+         catch (IllegalArgumentException ex)
+         {
+            // expected exception
+         }
+         assertEquals("Revoked token still cached", 0, cache.size());
+      }
+   }
+
+   @Test
+   public void testEvictedAtTokenExpiry() throws InterruptedException
+   {
+      ExpiringTokenProvider<UUID> provider = makeProvider(1, ChronoUnit.HOURS);
+      CachingTokenService<UUID> svc = new CachingTokenService<>(provider, 10);
+      TokenData<UUID> data = provider.createTokenData(UUID.randomUUID(), Instant.now().plusMillis(500));
+
+      svc.unpackToken(data.getToken());
+      Thread.sleep(600);
+      try
+      {
+         svc.unpackToken(data.getToken());
+         assertFalse("Cached token was used after it expired", true);
+      }
+      catch (Exception ex)
+      {
+         // expected exception
+      }
+   }
+
+   @Test
+   public void testRepeatedTokenWorkload()
+   {
+      ExpiringTokenProvider<UUID> provider = makeProvider(1, ChronoUnit.HOURS);
+      String[] tokens = new String[100];
+      for (int i = 0; i < tokens.length; i++)
+         tokens[i] = provider.createTokenData(UUID.randomUUID()).getToken();
+
+      // each token is unpacked once while the working set fits in the cache
+      CachingTokenService<UUID> cached = new CachingTokenService<>(provider, 1_000);
+      for (int i = 0; i < 10 * tokens.length; i++)
+         cached.unpackToken(tokens[i % tokens.length]);
+      assertEquals("Unexpected miss count", tokens.length, cached.getMissCount());
+      assertEquals("Unexpected hit count", 9 * tokens.length, cached.getHitCount());
+
+      // cycling through more tokens than the cache holds evicts each before it is reused
+      CachingTokenService<UUID> small = new CachingTokenService<>(provider, tokens.length / 2);
+      for (int i = 0; i < 10 * tokens.length; i++)
+         small.unpackToken(tokens[i % tokens.length]);
+      assertEquals("Unexpected hit count", 0, small.getHitCount());
+      assertEquals("Cache exceeded its bound", tokens.length / 2, small.size());
+   }
+}
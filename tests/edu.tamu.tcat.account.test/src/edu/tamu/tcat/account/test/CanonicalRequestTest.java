@@ -0,0 +1,56 @@
+package edu.tamu.tcat.account.test;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import edu.tamu.tcat.account.jaxrs.provider.signature.CanonicalRequest;
+
+public class CanonicalRequestTest
+{
+   /**
+    * The canonical form as previously built by the signed object filter, but encoded as UTF-8.
+    */
+   private static byte[] expected(String method, String path, Map<String, List<String>> signedHeaders)
+   {
+      StringBuilder buffer = new StringBuilder(method).append(' ').append(path).append('\n');
+      for (Map.Entry<String, List<String>> header : new TreeMap<>(signedHeaders).entrySet())
+      {
+         for (String value : header.getValue())
+            buffer.append(header.getKey()).append(": ").append(value).append('\n');
+      }
+      return buffer.append('\n').toString().getBytes(StandardCharsets.UTF_8);
+   }
+
+   @Test
+   public void testEncoding()
+   {
+      Map<String, List<String>> headers = new HashMap<>();
+      assertArrayEquals("GET /", expected("GET", "/", headers), CanonicalRequest.encode("GET", "/", headers));
+
+      headers.put("Date", Collections.singletonList("Thu, 01 Jan 2026 00:00:00 GMT"));
+      headers.put("X-Multi", Arrays.asList("one", "two"));
+      headers.put("Content-Type", Collections.singletonList("application/json"));
+      headers.put("X-Empty", Collections.emptyList());
+      assertArrayEquals("Headers", expected("PUT", "/a/b", headers), CanonicalRequest.encode("PUT", "/a/b", headers));
+
+      // two, three and four byte characters, and unpaired surrogates
+      String text = "caf\u00e9 \u20ac \ud83d\ude00 \ud83d \ude00 end\ud83d";
+      headers.put("X-Text", Collections.singletonList(text));
+      assertArrayEquals("Non-ASCII", expected("PUT", "/" + text, headers), CanonicalRequest.encode("PUT", "/" + text, headers));
+
+      // large header values
+      char[] large = new char[20_000];
+      Arrays.fill(large, '\u00e9');
+      headers.put("X-Large", Collections.singletonList(new String(large)));
+      assertArrayEquals("Large", expected("PUT", "/", headers), CanonicalRequest.encode("PUT", "/", headers));
+   }
+}
@@ -0,0 +1,137 @@
+package edu.tamu.tcat.account.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.tamu.tcat.account.db.CompactTokenProvider.SecureTokenEncoding;
+import edu.tamu.tcat.account.db.ExpiringTokenProvider;
+import edu.tamu.tcat.account.token.TokenService;
+import edu.tamu.tcat.account.token.TokenService.TokenData;
+import edu.tamu.tcat.crypto.SecureToken;
+import edu.tamu.tcat.crypto.TokenException;
+
+public class CompactTokenProviderTest
+{
+   private SecureToken secureToken;
+
+   @Before
+   public void setup() throws TokenException
+   {
+      secureToken = TestKeys.secureToken();
+   }
+
+   @Test
+   public void testCompactTokenService()
+   {
+      TokenService<UUID> svc = ExpiringTokenProvider.UuidTokenProviderFactory.makeCompactProvider(secureToken, SecureTokenEncoding.URL_SAFE_PADDED, 1, ChronoUnit.HOURS);
+      UUID id = UUID.randomUUID();
+      TokenData<UUID> data = svc.createTokenData(id);
+      assertUrlSafe(data.getToken());
+
+      TokenData<UUID> unpacked = svc.unpackTokenData(data.getToken());
+      assertEquals("Did not recover input id.", id, unpacked.getPayload());
+      assertEquals("Reported expiration does not match the token", data.getExpiration(), unpacked.getExpiration());
+      assertEquals("Expiration not stored in whole seconds", 0, data.getExpiration().getNano());
+
+      TokenService<String> strings = ExpiringTokenProvider.StringTokenProviderFactory.makeCompactProvider(secureToken, SecureTokenEncoding.URL_SAFE_PADDED, 1, ChronoUnit.HOURS);
+      assertEquals("Did not recover input string.", "user@example.com", strings.unpackToken(strings.createTokenData("user@example.com").getToken()));
+   }
+
+   @Test
+   public void testVersion1TokensAccepted()
+   {
+      TokenService<UUID> v1 = ExpiringTokenProvider.UuidTokenProviderFactory.makeProvider(secureToken, 1, ChronoUnit.HOURS);
+      TokenService<UUID> compact = ExpiringTokenProvider.UuidTokenProviderFactory.makeCompactProvider(secureToken, SecureTokenEncoding.URL_SAFE_PADDED, 1, ChronoUnit.HOURS);
+      UUID id = UUID.randomUUID();
+      assertEquals("Version 1 token not accepted", id, compact.unpackToken(v1.createTokenData(id).getToken()));
+
+      // the same must hold for a secure token that uses the standard, padded alphabet
+      SecureToken standard = new StandardAlphabetSecureToken(secureToken);
+      v1 = ExpiringTokenProvider.UuidTokenProviderFactory.makeProvider(standard, 1, ChronoUnit.HOURS);
+      compact = ExpiringTokenProvider.UuidTokenProviderFactory.makeCompactProvider(standard, SecureTokenEncoding.STANDARD_PADDED, 1, ChronoUnit.HOURS);
+      for (int i = 0; i < 20; i++)
+      {
+         String token = compact.createTokenData(id).getToken();
+         assertUrlSafe(token);
+         assertEquals("Did not recover input id.", id, compact.unpackToken(token));
+         assertEquals("Version 1 token not accepted", id, compact.unpackToken(v1.createTokenData(id).getToken()));
+      }
+   }
+
+   @Test
+   public void testExpiredTokenRejected()
+   {
+      ExpiringTokenProvider<UUID> svc = (ExpiringTokenProvider<UUID>)ExpiringTokenProvider.UuidTokenProviderFactory.makeCompactProvider(secureToken, SecureTokenEncoding.URL_SAFE_PADDED, 1, ChronoUnit.HOURS);
+      String token = svc.createTokenData(UUID.randomUUID(), Instant.now().minusSeconds(2)).getToken();
+      try
+      {
+         svc.unpackToken(token);
+         assertFalse("Expired token was unpacked", true);
+      }
+      catch (IllegalArgumentException ex)
+      {
+         // expected exception
+      }
+   }
+
+   @Test
+   public void testTokenSize()
+   {
+      TokenService<UUID> v1 = ExpiringTokenProvider.UuidTokenProviderFactory.makeProvider(secureToken, 1, ChronoUnit.HOURS);
+      TokenService<UUID> compact = ExpiringTokenProvider.UuidTokenProviderFactory.makeCompactProvider(secureToken, SecureTokenEncoding.URL_SAFE_PADDED, 1, ChronoUnit.HOURS);
+
+      UUID id = UUID.randomUUID();
+      int v1Length = v1.createTokenData(id).getToken().length();
+      int compactLength = compact.createTokenData(id).getToken().length();
+      assertTrue("Compact token is not shorter", compactLength < v1Length);
+   }
+
+   private static void assertUrlSafe(String token)
+   {
+      for (int i = 0; i < token.length(); i++)
+      {
+         char c = token.charAt(i);
+         boolean safe = (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '-' || c == '_';
+         assertTrue("Token is not unpadded URL-safe Base64 [" + token + "]", safe);
+      }
+   }
+
+   /**
+    * Presents the output of a URL-safe secure token in the standard, padded Base64 alphabet.
+    */
+   private static class StandardAlphabetSecureToken implements SecureToken
+   {
+      private final SecureToken delegate;
+
+      StandardAlphabetSecureToken(SecureToken delegate)
+      {
+         this.delegate = delegate;
+      }
+
+      @Override
+      public String getToken(ByteBuffer content) throws TokenException
+      {
+         String token = delegate.getToken(content).replace('-', '+').replace('_', '/');
+         while (token.length() % 4 != 0)
+            token += "=";
+         return token;
+      }
+
+      @Override
+      public ByteBuffer getContentFromToken(String token) throws TokenException
+      {
+         if (token.indexOf('-') >= 0 || token.indexOf('_') >= 0 || token.length() % 4 != 0)
+            throw new TokenException("Not standard Base64");
+         return delegate.getContentFromToken(token.replace('+', '-').replace('/', '_'));
+      }
+   }
+}
@@ -0,0 +1,105 @@
+package edu.tamu.tcat.account.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.core.SecurityContext;
+
+import org.junit.Test;
+
+import edu.tamu.tcat.account.AccountException;
+import edu.tamu.tcat.account.jaxrs.bean.ContextBean;
+import edu.tamu.tcat.account.jaxrs.internal.ContextSlots;
+import edu.tamu.tcat.account.test.mock.MockRequestContext;
+
+public class ContextBeanTest
+{
+   @Test
+   public void testInstallGetSet() throws Exception
+   {
+      ContainerRequestContext ctx = MockRequestContext.create("GET");
+      UUID id = UUID.randomUUID();
+
+      ContextBean.Container<UUID> container = ContextBean.from(ctx).install(UUID.class);
+      assertEquals("Installing twice created a new container", container, ContextBean.from(ctx).install(UUID.class));
+      container.set("", id);
+      container.set("other", UUID.randomUUID());
+
+      ContextBean bean = new ContextBean(ctx.getSecurityContext());
+      assertEquals("Value not found", id, bean.get(UUID.class));
+      assertEquals("Value not found by label", id, ContextBean.getValue(ctx, UUID.class, ""));
+      assertFalse("Labels not distinguished", id.equals(bean.get(UUID.class, "other")));
+      assertNull("Unset label has a value", bean.get(UUID.class, "unset-label"));
+      assertFalse("Unset label has a value", bean.getOptionally(UUID.class, "unset-label").isPresent());
+
+      ContextBean.from(ctx).install(String.class);
+      bean.set("text");
+      assertEquals("Value set through bean not found", "text", bean.get(String.class));
+
+      try
+      {
+         bean.get(Long.class);
+         assertFalse("Value returned for a type without a container", true);
+      }
+      catch (AccountException ex)
+      {
+         // expected exception
+      }
+
+      // each request has its own context
+      ContainerRequestContext other = MockRequestContext.create("GET");
+      ContextBean.from(other).install(UUID.class);
+      assertNull("Value shared between requests", ContextBean.getValue(other, UUID.class, ""));
+   }
+
+   @Test
+   public void testLabelsBeyondSlots() throws Exception
+   {
+      // labels chosen at request time exhaust the slots, after which values are kept in a map
+      ContainerRequestContext ctx = MockRequestContext.create("GET");
+      ContextBean.Container<UUID> container = ContextBean.from(ctx).install(UUID.class);
+      int labels = ContextSlots.MAX_VALUE_SLOTS + 10;
+      UUID[] ids = new UUID[labels];
+      for (int i = 0; i < labels; i++)
+      {
+         ids[i] = UUID.randomUUID();
+         container.set("label-" + i, ids[i]);
+      }
+
+      assertEquals("Slot assigned beyond the limit", -1, ContextSlots.getValueSlot(UUID.class, "label-" + labels));
+      ContextBean bean = new ContextBean(ctx.getSecurityContext());
+      for (int i = 0; i < labels; i++)
+         assertEquals("Value not found for label " + i, ids[i], bean.get(UUID.class, "label-" + i));
+      assertNull("Unset label has a value", bean.get(UUID.class, "label-" + labels));
+
+      CompletableFuture<UUID> pending = new CompletableFuture<>();
+      container.setAsync("pending", pending);
+      CompletionStage<UUID> stage = bean.getAsync(UUID.class, "pending");
+      pending.complete(ids[0]);
+      assertEquals("Pending value not found", ids[0], stage.toCompletableFuture().join());
+   }
+
+   @Test
+   public void testRepeatedRequests() throws Exception
+   {
+      // each request starts with the container's security context, without the installed values
+      ContainerRequestContext ctx = MockRequestContext.create("GET");
+      SecurityContext anonymous = ctx.getSecurityContext();
+      for (int i = 0; i < 3; i++)
+      {
+         ctx.setSecurityContext(anonymous);
+         ContextBean.Container<UUID> container = ContextBean.from(ctx).install(UUID.class);
+         assertNull("Value retained from previous request", container.get(""));
+
+         UUID id = UUID.randomUUID();
+         container.set("", id);
+         assertEquals("Value not found", id, new ContextBean(ctx.getSecurityContext()).get(UUID.class));
+      }
+   }
+}
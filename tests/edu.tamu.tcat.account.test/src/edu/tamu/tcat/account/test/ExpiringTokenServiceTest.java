@@ -2,19 +2,31 @@ package edu.tamu.tcat.account.test;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.security.SecureRandom;
 import java.text.MessageFormat;
+import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import edu.tamu.tcat.account.db.AccountClaims;
+import edu.tamu.tcat.account.db.AdaptingTokenService;
 import edu.tamu.tcat.account.db.ExpiringTokenProvider;
+import edu.tamu.tcat.account.db.TokenRevocationList;
 import edu.tamu.tcat.account.token.TokenService;
+import edu.tamu.tcat.account.token.TokenService.BatchResult;
 import edu.tamu.tcat.account.token.TokenService.TokenData;
 import edu.tamu.tcat.crypto.CryptoProvider;
 import edu.tamu.tcat.crypto.SecureToken;
@@ -118,4 +130,97 @@ public class ExpiringTokenServiceTest
          // expected exception -- TODO provide more specific sub-class
       }
    }
+
+   @Test
+   public void testBatchTokenService()
+   {
+      ExpiringTokenProvider<UUID> svc = (ExpiringTokenProvider<UUID>)ExpiringTokenProvider.UuidTokenProviderFactory.makeProvider(secureToken, 1, ChronoUnit.HOURS);
+      ExecutorService executor = Executors.newFixedThreadPool(4);
+      try
+      {
+         svc.setBatchExecutor(executor);
+         List<UUID> ids = IntStream.range(0, 100).mapToObj(i -> UUID.randomUUID()).collect(Collectors.toList());
+         List<BatchResult<TokenData<UUID>>> created = svc.createTokens(ids);
+         assertEquals("Unexpected number of tokens", ids.size(), created.size());
+
+         List<String> tokens = new ArrayList<>();
+         created.forEach(result -> tokens.add(result.get().getToken()));
+         tokens.set(50, "not a token");
+
+         List<BatchResult<UUID>> unpacked = svc.unpackTokens(tokens);
+         for (int i = 0; i < ids.size(); i++)
+         {
+            if (i == 50)
+            {
+               assertFalse("Invalid token was unpacked", unpacked.get(i).isSuccess());
+               assertTrue("Missing error for invalid token", unpacked.get(i).getError().isPresent());
+            }
+            else
+               assertEquals("Did not recover input id.", ids.get(i), unpacked.get(i).get());
+         }
+      }
+      finally
+      {
+         executor.shutdown();
+      }
+   }
+
+   @Test
+   public void testSlidingRenewal() throws InterruptedException
+   {
+      ExpiringTokenProvider<UUID> svc = (ExpiringTokenProvider<UUID>)ExpiringTokenProvider.UuidTokenProviderFactory.makeProvider(secureToken, 2, ChronoUnit.SECONDS);
+      UUID id = UUID.randomUUID();
+      TokenData<UUID> issued = svc.createTokenData(id);
+
+      // by default, a new token is always issued
+      assertFalse("Token was not renewed", issued.getToken().equals(svc.renewTokenData(issued.getToken(), id).getToken()));
+
+      svc.setRenewalThreshold(0.5);
+      TokenData<UUID> echoed = svc.renewTokenData(issued.getToken(), id);
+      assertEquals("Fresh token was renewed", issued.getToken(), echoed.getToken());
+      assertEquals("Expiration of presented token was changed", issued.getExpiration().toInstant().toEpochMilli(), echoed.getExpiration().toInstant().toEpochMilli());
+
+      assertFalse("Token was issued for a different payload", issued.getToken().equals(svc.renewTokenData(issued.getToken(), UUID.randomUUID()).getToken()));
+      assertFalse("Invalid token was echoed", "garbage".equals(svc.renewTokenData("garbage", id).getToken()));
+
+      Thread.sleep(1100);
+      TokenData<UUID> renewed = svc.renewTokenData(issued.getToken(), id);
+      assertFalse("Token past the renewal threshold was not renewed", issued.getToken().equals(renewed.getToken()));
+      assertEquals("Did not recover input id.", id, svc.unpackToken(renewed.getToken()));
+   }
+
+   @Test
+   public void testSlidingRenewalOfClaims()
+   {
+      ExpiringTokenProvider<AccountClaims> svc = ExpiringTokenProvider.AccountClaimsTokenProviderFactory.makeProvider(secureToken, 1, ChronoUnit.HOURS);
+      svc.setRenewalThreshold(0.5);
+      UUID id = UUID.randomUUID();
+      UUID role = UUID.randomUUID();
+      TokenData<AccountClaims> issued = svc.createTokenData(new AccountClaims(id, "user", true, Collections.singleton(role), Instant.now().minusSeconds(1)));
+
+      // claims taken afresh for renewal differ only in their issue time
+      AccountClaims current = new AccountClaims(id, "user", true, Collections.singleton(role), Instant.now());
+      assertEquals("Fresh token was renewed", issued.getToken(), svc.renewTokenData(issued.getToken(), current).getToken());
+
+      AccountClaims changed = new AccountClaims(id, "user", true, Collections.emptySet(), Instant.now());
+      assertFalse("Token with changed claims was echoed", issued.getToken().equals(svc.renewTokenData(issued.getToken(), changed).getToken()));
+   }
+
+   @Test
+   public void testRevokedTokenNotEchoed()
+   {
+      ExpiringTokenProvider<UUID> provider = (ExpiringTokenProvider<UUID>)ExpiringTokenProvider.UuidTokenProviderFactory.makeProvider(secureToken, 1, ChronoUnit.HOURS);
+      provider.setRenewalThreshold(0.5);
+      AdaptingTokenService<String, UUID> svc = new AdaptingTokenService<>(String.class, provider, UUID::fromString, UUID::toString);
+      svc.setRevocationList(new TokenRevocationList(100));
+
+      String id = UUID.randomUUID().toString();
+      String token = svc.createTokenData(id).getToken();
+      assertEquals("Fresh token was renewed", token, svc.renewTokenData(token, id).getToken());
+
+      svc.revokeToken(token);
+      TokenData<String> renewed = svc.renewTokenData(token, id);
+      assertFalse("Revoked token was echoed", token.equals(renewed.getToken()));
+      assertEquals("Did not recover input id.", id, svc.unpackToken(renewed.getToken()));
+   }
 }
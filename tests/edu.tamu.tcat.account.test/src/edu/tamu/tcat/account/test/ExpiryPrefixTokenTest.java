@@ -0,0 +1,75 @@
+package edu.tamu.tcat.account.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.tamu.tcat.account.db.ExpiringTokenProvider;
+import edu.tamu.tcat.crypto.TokenException;
+
+public class ExpiryPrefixTokenTest
+{
+   private ExpiringTokenProvider<UUID> plain;
+   private ExpiringTokenProvider<UUID> prefixed;
+
+   @Before
+   public void setup() throws TokenException
+   {
+      plain = (ExpiringTokenProvider<UUID>)ExpiringTokenProvider.UuidTokenProviderFactory.makeProvider(TestKeys.secureToken(), 1, ChronoUnit.HOURS);
+      prefixed = plain.withAuthenticatedExpiry(TestKeys.randomKey());
+   }
+
+   private static String rejectionMessage(ExpiringTokenProvider<UUID> svc, String token)
+   {
+      try
+      {
+         svc.unpackToken(token);
+         return null;
+      }
+      catch (Exception ex)
+      {
+         return ex.getMessage();
+      }
+   }
+
+   @Test
+   public void testRoundTrip()
+   {
+      UUID id = UUID.randomUUID();
+      String token = prefixed.createTokenData(id).getToken();
+      assertEquals("Did not recover input id.", id, prefixed.unpackToken(token));
+
+      // tokens issued before the prefix was enabled remain valid
+      assertEquals("Did not recover input id from unprefixed token.", id, prefixed.unpackToken(plain.createTokenData(id).getToken()));
+   }
+
+   @Test
+   public void testExpiredRejectedBeforeDecryption()
+   {
+      String token = prefixed.createTokenData(UUID.randomUUID(), Instant.now().minusSeconds(1)).getToken();
+
+      // corrupt the encrypted content; an expired token must be rejected without reaching it
+      String corrupted = token.substring(0, token.length() - 4) + "AAAA";
+      assertEquals("The supplied token has expired.", rejectionMessage(prefixed, corrupted));
+   }
+
+   @Test
+   public void testTamperedPrefixRejected()
+   {
+      String token = prefixed.createTokenData(UUID.randomUUID(), Instant.now().plusSeconds(60)).getToken();
+      String extended = "7fffffffffffffff" + token.substring(16);
+      assertTrue("Accepted token with modified expiry", rejectionMessage(prefixed, extended) != null);
+
+      String other = plain.createTokenData(UUID.randomUUID()).getToken();
+      String transplanted = token.substring(0, 39) + other;
+      assertTrue("Accepted prefix bound to a different token", rejectionMessage(prefixed, transplanted) != null);
+      assertFalse("Plain provider accepted prefixed token", rejectionMessage(plain, token) == null);
+   }
+}
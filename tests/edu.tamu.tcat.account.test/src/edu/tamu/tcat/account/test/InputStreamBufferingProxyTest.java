@@ -0,0 +1,147 @@
+package edu.tamu.tcat.account.test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import javax.ws.rs.ClientErrorException;
+
+import org.junit.Test;
+
+import edu.tamu.tcat.account.jaxrs.provider.signature.InputStreamBufferingProxy;
+import edu.tamu.tcat.account.jaxrs.provider.signature.InputStreamByteArrayProxy;
+import edu.tamu.tcat.account.test.mock.MockDigestVerifier;
+
+public class InputStreamBufferingProxyTest
+{
+   private static final byte[] PREFIX = "PUT /resource\n\n".getBytes(StandardCharsets.UTF_8);
+
+   private static byte[] body(int size)
+   {
+      byte[] body = new byte[size];
+      new Random(size).nextBytes(body);
+      return body;
+   }
+
+   /**
+    * Reads the stream as a message body reader might, mixing single byte and bulk reads.
+    */
+   private static void readFully(InputStream in) throws IOException
+   {
+      byte[] buffer = new byte[5000];
+      while (in.read() != -1 && in.read(buffer) != -1)
+      {
+         // read until exhausted
+      }
+   }
+
+   @Test
+   public void testBuffering() throws Exception
+   {
+      for (int size : new int[] { 0, 100, 1024, 1025, 200_000 })
+      {
+         byte[] body = body(size);
+         InputStreamBufferingProxy proxy = new InputStreamBufferingProxy(new ByteArrayInputStream(body), PREFIX, 1024, Long.MAX_VALUE);
+         try
+         {
+            readFully(proxy);
+            proxy.close();
+
+            MockDigestVerifier verifier = new MockDigestVerifier(PREFIX, body);
+            proxy.writeTo(verifier);
+            assertTrue("Data not retained for body of " + size + " bytes", verifier.verify());
+         }
+         finally
+         {
+            proxy.release();
+         }
+      }
+   }
+
+   @Test
+   public void testMaxBytes() throws Exception
+   {
+      byte[] body = body(10_000);
+      InputStreamBufferingProxy proxy = new InputStreamBufferingProxy(new ByteArrayInputStream(body), PREFIX, 1024, 10_000);
+      readFully(proxy);
+      proxy.release();
+
+      proxy = new InputStreamBufferingProxy(new ByteArrayInputStream(body), PREFIX, 1024, 9_999);
+      try
+      {
+         readFully(proxy);
+         assertFalse("Body larger than limit accepted", true);
+      }
+      catch (ClientErrorException ex)
+      {
+         // expected exception
+      }
+      finally
+      {
+         proxy.release();
+      }
+   }
+
+   @Test
+   public void testDefaultMaxBytes() throws Exception
+   {
+      // an endless body is rejected once the default limit is passed
+      InputStream endless = new InputStream()
+      {
+         @Override
+         public int read()
+         {
+            return 0;
+         }
+      };
+      InputStreamBufferingProxy proxy = new InputStreamBufferingProxy(endless, PREFIX,
+            InputStreamBufferingProxy.DEFAULT_MEMORY_THRESHOLD, InputStreamBufferingProxy.DEFAULT_MAX_BYTES);
+      try
+      {
+         readFully(proxy);
+         assertFalse("Body larger than default limit accepted", true);
+      }
+      catch (ClientErrorException ex)
+      {
+         // expected exception
+      }
+      finally
+      {
+         proxy.release();
+      }
+   }
+
+   @Test
+   public void testHeapUse() throws Exception
+   {
+      byte[] body = body(8 * 1024 * 1024);
+
+      long bytes = AllocationMeter.allocatedBytes();
+      InputStreamByteArrayProxy array = new InputStreamByteArrayProxy(new ByteArrayInputStream(body), PREFIX);
+      readFully(array);
+      new MockDigestVerifier(PREFIX, body).processSignedData(array.getBytes());
+      long arrayBytes = AllocationMeter.allocatedBytes() - bytes;
+
+      bytes = AllocationMeter.allocatedBytes();
+      InputStreamBufferingProxy proxy = new InputStreamBufferingProxy(new ByteArrayInputStream(body), PREFIX,
+            InputStreamBufferingProxy.DEFAULT_MEMORY_THRESHOLD, Long.MAX_VALUE);
+      try
+      {
+         readFully(proxy);
+         proxy.writeTo(new MockDigestVerifier(PREFIX, body));
+      }
+      finally
+      {
+         proxy.release();
+      }
+      long proxyBytes = AllocationMeter.allocatedBytes() - bytes;
+
+      if (arrayBytes > 0)
+         assertTrue("Spilling buffer allocated more than byte array", proxyBytes < arrayBytes);
+   }
+}
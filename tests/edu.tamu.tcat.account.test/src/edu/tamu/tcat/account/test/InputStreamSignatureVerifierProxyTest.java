@@ -0,0 +1,106 @@
+package edu.tamu.tcat.account.test;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Test;
+
+import edu.tamu.tcat.account.jaxrs.provider.signature.InputStreamSignatureVerifierProxy;
+import edu.tamu.tcat.account.jaxrs.provider.signature.SignatureStreamVerifier.SignatureStreamWithPublicKeyVerifier;
+import edu.tamu.tcat.account.jaxrs.provider.signature.SignatureVerification;
+import edu.tamu.tcat.account.test.mock.MockDigestVerifier;
+
+public class InputStreamSignatureVerifierProxyTest
+{
+   static final byte[] PREFIX = "PUT /resource\ndate: Thu, 01 Jan 2026 00:00:00 GMT\n\n".getBytes(StandardCharsets.UTF_8);
+
+   static byte[] body(int size)
+   {
+      byte[] body = new byte[size];
+      new Random(size).nextBytes(body);
+      return body;
+   }
+
+   @Test
+   public void testReads() throws Exception
+   {
+      byte[] body = body(100_000);
+      int[][] readSizes = { { 1 }, { 7, 1 }, { 100_000 }, { 3, 9000, 1, 8191, 8192 } };
+      for (int[] sizes : readSizes)
+      {
+         MockDigestVerifier verifier = new MockDigestVerifier(PREFIX, body);
+         SignatureStreamWithPublicKeyVerifier stream = SignatureVerification.createVerifier(verifier, PREFIX, new ByteArrayInputStream(body), "scope");
+         InputStream in = stream.getProxyStream();
+         byte[] buffer = new byte[100_000];
+         int read = 0;
+         for (int i = 0; read < body.length; i++)
+         {
+            int size = sizes[i % sizes.length];
+            read += (size == 1) ? (in.read() >= 0 ? 1 : 0) : Math.max(0, in.read(buffer, 0, size));
+         }
+
+         // the stream is not read to its end, as a JSON reader would stop at the end of the document
+         stream.checkSignature();
+      }
+   }
+
+   @Test
+   public void testByteBuffer() throws Exception
+   {
+      byte[] body = body(20_000);
+      for (ByteBuffer buffer : new ByteBuffer[] { ByteBuffer.wrap(body), ByteBuffer.allocateDirect(body.length).put(body) })
+      {
+         if (buffer.isDirect())
+            buffer.flip();
+         MockDigestVerifier verifier = new MockDigestVerifier(body);
+         verifier.processSignedData(buffer);
+         assertTrue("Buffer not consumed", !buffer.hasRemaining());
+         assertTrue("Buffer not verified", verifier.verify());
+      }
+   }
+
+   @Test
+   public void testVerifierCalls() throws Exception
+   {
+      // however the body is read, it is passed to the verifier in chunks
+      byte[] body = body(1024 * 1024);
+      for (int readSize : new int[] { 1, 64, 8192 })
+      {
+         int calls = verify(body, readSize);
+         assertTrue("Verifier called " + calls + " times for " + readSize + " byte reads", calls <= 2 + body.length / 8192);
+      }
+   }
+
+   /**
+    * @return The number of calls made to the verifier.
+    */
+   static int verify(byte[] body, int readSize) throws Exception
+   {
+      MockDigestVerifier verifier = new MockDigestVerifier(PREFIX, body);
+      SignatureStreamWithPublicKeyVerifier stream = SignatureVerification.createVerifier(verifier, PREFIX, new ByteArrayInputStream(body), "scope");
+      InputStream in = stream.getProxyStream();
+      if (readSize == 1)
+      {
+         while (in.read() != -1)
+         {
+            // read until exhausted
+         }
+      }
+      else
+      {
+         byte[] buffer = new byte[readSize];
+         while (in.read(buffer) != -1)
+         {
+            // read until exhausted
+         }
+      }
+
+      stream.checkSignature();
+      return verifier.getCalls();
+   }
+}
@@ -0,0 +1,289 @@
+package edu.tamu.tcat.account.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.ext.ReaderInterceptorContext;
+
+import org.junit.Test;
+
+import edu.tamu.tcat.account.jaxrs.bean.ContextBean;
+import edu.tamu.tcat.account.jaxrs.bean.SignatureSecured;
+import edu.tamu.tcat.account.jaxrs.provider.signature.ReplayGuard;
+import edu.tamu.tcat.account.jaxrs.provider.signature.SignedObjectFilter;
+import edu.tamu.tcat.account.jaxrs.provider.signature.SignedObjectInterceptor;
+import edu.tamu.tcat.account.signature.SignatureService;
+import edu.tamu.tcat.account.test.mock.MockClock;
+import edu.tamu.tcat.account.test.mock.MockDigestVerifier;
+import edu.tamu.tcat.account.test.mock.MockRequestContext;
+
+public class ReplayGuardTest
+{
+   private static final Duration WINDOW = Duration.ofMinutes(16);
+   private static final UUID ID = UUID.randomUUID();
+
+   @SignatureSecured(payloadType = UUID.class)
+   public void secured()
+   {
+   }
+
+   /**
+    * A service accepting any signature of any request, signing only its {@code Date} header,
+    * so that the same request may be signed in many ways.
+    */
+   private static class AnySignatureService implements SignatureService<UUID>
+   {
+      @Override
+      public UUID getPayload(String identifier)
+      {
+         return UUID.fromString(identifier);
+      }
+
+      @Override
+      public Class<UUID> getPayloadType()
+      {
+         return UUID.class;
+      }
+
+      @Override
+      public boolean mayBeSelfSigned()
+      {
+         return false;
+      }
+
+      @Override
+      public UUID getSelfSigningPayload(Object result)
+      {
+         throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public String getAuthorizationScope()
+      {
+         return "MOCK";
+      }
+
+      @Override
+      public Verifier getVerifier(UUID account, byte[] signature)
+      {
+         return new MockDigestVerifier()
+         {
+            @Override
+            public Map<String, List<String>> getSignedHeaders(Map<String, List<String>> headers)
+            {
+               return Collections.singletonMap("Date", headers.get("Date"));
+            }
+
+            @Override
+            public boolean verify()
+            {
+               return true;
+            }
+         };
+      }
+
+      @Override
+      public SelfSignedVerifier<UUID> getVerifier(byte[] signature)
+      {
+         throw new UnsupportedOperationException();
+      }
+   }
+
+   static byte[] signature(int i)
+   {
+      return ByteBuffer.allocate(64).putInt(i).array();
+   }
+
+   @Test
+   public void testReplay()
+   {
+      ReplayGuard guard = new ReplayGuard(WINDOW, 16, 1000, new MockClock());
+      assertTrue("First use rejected", guard.record(ID.toString(), signature(1)));
+      assertFalse("Replay accepted", guard.record(ID.toString(), signature(1)));
+      assertTrue("Distinct signature rejected", guard.record(ID.toString(), signature(2)));
+      assertTrue("Signature of another account rejected", guard.record(UUID.randomUUID().toString(), signature(1)));
+      assertEquals("Unexpected size", 3, guard.size());
+   }
+
+   @Test
+   public void testExpiry()
+   {
+      MockClock clock = new MockClock();
+      ReplayGuard guard = new ReplayGuard(WINDOW, 16, 1000, clock);
+      for (int i = 0; i < 100; i++)
+         assertTrue("First use rejected", guard.record(ID.toString(), signature(i)));
+
+      // remembered throughout the window
+      clock.advance(WINDOW.minusMillis(1));
+      assertFalse("Replay accepted within window", guard.record(ID.toString(), signature(0)));
+
+      // forgotten, and the memory released, one bucket after the window
+      clock.advance(WINDOW.dividedBy(16).plusMillis(1));
+      guard.purge();
+      assertEquals("Buckets not released", 0, guard.size());
+      assertTrue("Signature remembered after window", guard.record(ID.toString(), signature(0)));
+   }
+
+   @Test
+   public void testCapacity()
+   {
+      MockClock clock = new MockClock();
+      ReplayGuard guard = new ReplayGuard(WINDOW, 16, 1000, clock);
+      int recorded = 0;
+      try
+      {
+         while (recorded <= 1000)
+         {
+            guard.record(ID.toString(), signature(recorded));
+            recorded++;
+         }
+         assertFalse("Capacity exceeded", true);
+      }
+      catch (IllegalStateException ex)
+      {
+         // expected exception
+      }
+      assertTrue("Recorded " + recorded + " of 1000 signatures", recorded > 500);
+
+      // the next bucket has its own capacity
+      clock.advance(WINDOW.dividedBy(16));
+      assertTrue("Signature rejected in next bucket", guard.record(ID.toString(), signature(-1)));
+   }
+
+   @Test
+   public void testConcurrentReplays() throws Exception
+   {
+      ReplayGuard guard = new ReplayGuard(WINDOW, 100_000);
+      AtomicInteger accepted = new AtomicInteger();
+      ExecutorService executor = Executors.newFixedThreadPool(4);
+      try
+      {
+         // each thread presents every signature; exactly one use of each is accepted
+         Future<?>[] tasks = new Future<?>[4];
+         for (int t = 0; t < tasks.length; t++)
+         {
+            tasks[t] = executor.submit(() -> {
+               for (int i = 0; i < 10_000; i++)
+               {
+                  if (guard.record(ID.toString(), signature(i)))
+                     accepted.incrementAndGet();
+               }
+            });
+         }
+         for (Future<?> task : tasks)
+            task.get();
+      }
+      finally
+      {
+         executor.shutdown();
+      }
+      assertEquals("Unexpected number of accepted signatures", 10_000, accepted.get());
+   }
+
+   @Test
+   public void testFilter() throws Exception
+   {
+      SignatureSecured annot = ReplayGuardTest.class.getMethod("secured").getAnnotation(SignatureSecured.class);
+      SignatureService<UUID> svc = new AnySignatureService();
+      ReplayGuard guard = new ReplayGuard(WINDOW, 1000);
+      SignedObjectFilter<UUID> filter = new SignedObjectFilter<>(() -> svc, annot, guard);
+
+      String date = "Mon, 01 Jan 2024 00:00:00 GMT";
+      String authorization = "MOCK " + ID + ":" + Base64.getEncoder().encodeToString(signature(1));
+      ContainerRequestContext ctx = MockRequestContext.create("GET", "Authorization", authorization, "Date", date);
+      filter.filter(ctx);
+      assertEquals("Unexpected payload", ID, ContextBean.getValue(ctx, UUID.class, ""));
+
+      // replayed with the same signature, and with another signature of the same request
+      for (int i = 1; i <= 2; i++)
+      {
+         authorization = "MOCK " + ID + ":" + Base64.getEncoder().encodeToString(signature(i));
+         try
+         {
+            filter.filter(MockRequestContext.create("GET", "Authorization", authorization, "Date", date));
+            assertFalse("Replayed request accepted", true);
+         }
+         catch (BadRequestException ex)
+         {
+            // expected exception
+         }
+      }
+
+      // a request signed at another time is not a replay
+      filter.filter(MockRequestContext.create("GET", "Authorization", authorization, "Date", "Mon, 01 Jan 2024 00:00:01 GMT"));
+   }
+
+   @Test
+   public void testEntityRequests() throws Exception
+   {
+      SignatureSecured annot = ReplayGuardTest.class.getMethod("secured").getAnnotation(SignatureSecured.class);
+      SignatureService<UUID> svc = new AnySignatureService();
+      ReplayGuard guard = new ReplayGuard(WINDOW, 1000);
+      SignedObjectFilter<UUID> filter = new SignedObjectFilter<>(() -> svc, annot, guard);
+      SignedObjectInterceptor<UUID> interceptor = new SignedObjectInterceptor<>(() -> svc, annot);
+
+      // requests with the same signed headers are distinguished by their entities
+      String authorization = "MOCK " + ID + ":" + Base64.getEncoder().encodeToString(signature(1));
+      post(filter, interceptor, authorization, "first");
+      post(filter, interceptor, authorization, "second");
+      try
+      {
+         post(filter, interceptor, authorization, "first");
+         assertFalse("Replayed request accepted", true);
+      }
+      catch (BadRequestException ex)
+      {
+         // expected exception
+      }
+   }
+
+   private static void post(SignedObjectFilter<UUID> filter, SignedObjectInterceptor<UUID> interceptor, String authorization, String entity)
+         throws Exception
+   {
+      ContainerRequestContext ctx = MockRequestContext.create("POST", "Authorization", authorization, "Date", "Mon, 01 Jan 2024 00:00:00 GMT");
+      filter.filter(ctx);
+
+      InputStream[] stream = { new ByteArrayInputStream(entity.getBytes(StandardCharsets.UTF_8)) };
+      ReaderInterceptorContext context = (ReaderInterceptorContext)Proxy.newProxyInstance(ReplayGuardTest.class.getClassLoader(),
+            new Class<?>[] { ReaderInterceptorContext.class },
+            (proxy, m, args) -> {
+               switch (m.getName())
+               {
+                  case "getProperty":
+                     return ctx.getProperty((String)args[0]);
+                  case "getInputStream":
+                     return stream[0];
+                  case "setInputStream":
+                     stream[0] = (InputStream)args[0];
+                     return null;
+                  case "proceed":
+                     // a message body reader consuming the entity
+                     while (stream[0].read() >= 0)
+                        continue;
+                     return entity;
+                  default:
+                     return null;
+               }
+            });
+      interceptor.aroundReadFrom(context);
+   }
+}
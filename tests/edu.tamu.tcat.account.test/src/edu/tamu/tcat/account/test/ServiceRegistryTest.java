@@ -0,0 +1,70 @@
+package edu.tamu.tcat.account.test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import edu.tamu.tcat.account.db.ExpiringTokenProvider;
+import edu.tamu.tcat.account.jaxrs.internal.ClassAndId;
+import edu.tamu.tcat.account.jaxrs.internal.ServiceRegistry;
+import edu.tamu.tcat.account.token.TokenService;
+
+public class ServiceRegistryTest
+{
+   private static TokenService<UUID> makeService() throws Exception
+   {
+      return ExpiringTokenProvider.UuidTokenProviderFactory.makeProvider(TestKeys.secureToken(), 1, ChronoUnit.HOURS);
+   }
+
+   @Test
+   public void testLateBinding() throws Exception
+   {
+      ServiceRegistry<TokenService<?>> registry = new ServiceRegistry<>("TokenService");
+      ClassAndId key = new ClassAndId(UUID.class, "");
+
+      // a handle may be obtained before a service is bound
+      ServiceRegistry.Handle<TokenService<?>> handle = registry.getHandle(key);
+      assertFalse("Handle bound before service", handle.isBound());
+      try
+      {
+         handle.get();
+         assertFalse("Unbound handle supplied a service", true);
+      }
+      catch (IllegalStateException ex)
+      {
+         // expected exception
+      }
+
+      TokenService<UUID> first = makeService();
+      registry.bind(key, first);
+      assertTrue("Handle not bound", handle.isBound());
+      assertSame("Handle does not supply bound service", first, handle.get());
+      assertSame("Registry returned a different handle", handle, registry.getHandle(new ClassAndId(UUID.class, "")));
+   }
+
+   @Test
+   public void testRebinding() throws Exception
+   {
+      ServiceRegistry<TokenService<?>> registry = new ServiceRegistry<>("TokenService");
+      ClassAndId key = new ClassAndId(UUID.class, "");
+      ServiceRegistry.Handle<TokenService<?>> handle = registry.getHandle(key);
+
+      TokenService<UUID> first = makeService();
+      TokenService<UUID> second = makeService();
+      registry.bind(key, first);
+
+      // a replacement is bound before the original is unbound
+      registry.bind(key, second);
+      assertSame("Rebinding did not take effect", second, handle.get());
+      registry.unbind(key, first);
+      assertSame("Unbinding the replaced service removed its replacement", second, handle.get());
+
+      registry.unbind(key, second);
+      assertFalse("Service not unbound", handle.isBound());
+   }
+}
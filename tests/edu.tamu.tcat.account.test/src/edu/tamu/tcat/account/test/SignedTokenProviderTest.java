@@ -0,0 +1,101 @@
+package edu.tamu.tcat.account.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.tamu.tcat.account.db.ExpiringTokenProvider;
+import edu.tamu.tcat.account.token.TokenService;
+
+public class SignedTokenProviderTest
+{
+   private byte[] macKey;
+
+   @Before
+   public void setup()
+   {
+      macKey = TestKeys.randomKey();
+   }
+
+   @Test
+   public void testSignedTokenService()
+   {
+      TokenService<UUID> svc = ExpiringTokenProvider.UuidTokenProviderFactory.makeSignedProvider(macKey, 1, ChronoUnit.HOURS);
+      UUID id = UUID.randomUUID();
+      String token = svc.createTokenData(id).getToken();
+      assertEquals("Did not recover input id.", id, svc.unpackToken(token));
+
+      TokenService<Long> longs = ExpiringTokenProvider.LongTokenProviderFactory.makeSignedProvider(macKey, 1, ChronoUnit.HOURS);
+      assertEquals("Did not recover input id.", Long.valueOf(42), longs.unpackToken(longs.createTokenData(Long.valueOf(42)).getToken()));
+   }
+
+   @Test
+   public void testTamperedTokenRejected()
+   {
+      TokenService<Long> svc = ExpiringTokenProvider.LongTokenProviderFactory.makeSignedProvider(macKey, 1, ChronoUnit.HOURS);
+      byte[] bytes = Base64.getUrlDecoder().decode(svc.createTokenData(Long.valueOf(1)).getToken());
+
+      // change the payload from 1 to 2
+      bytes[4 + 8 + 7] = 2;
+      String tampered = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+      try
+      {
+         svc.unpackToken(tampered);
+         assertFalse("Tampered token was unpacked", true);
+      }
+      catch (IllegalArgumentException ex)
+      {
+         // expected exception
+      }
+
+      byte[] otherKey = macKey.clone();
+      otherKey[0] ^= 1;
+      TokenService<Long> other = ExpiringTokenProvider.LongTokenProviderFactory.makeSignedProvider(otherKey, 1, ChronoUnit.HOURS);
+      try
+      {
+         other.unpackToken(svc.createTokenData(Long.valueOf(1)).getToken());
+         assertFalse("Token was accepted with a different key", true);
+      }
+      catch (IllegalArgumentException ex)
+      {
+         // expected exception
+      }
+   }
+
+   @Test
+   public void testConcurrentUse() throws Exception
+   {
+      // MACs are shared between threads through a pool
+      TokenService<UUID> svc = ExpiringTokenProvider.UuidTokenProviderFactory.makeSignedProvider(macKey, 1, ChronoUnit.HOURS);
+      ExecutorService executor = Executors.newFixedThreadPool(8);
+      try
+      {
+         Future<?>[] tasks = new Future<?>[8];
+         for (int t = 0; t < tasks.length; t++)
+         {
+            tasks[t] = executor.submit(() -> {
+               for (int i = 0; i < 5_000; i++)
+               {
+                  UUID id = UUID.randomUUID();
+                  assertEquals("Did not recover input id.", id, svc.unpackToken(svc.createTokenData(id).getToken()));
+               }
+            });
+         }
+         for (Future<?> task : tasks)
+            task.get();
+      }
+      finally
+      {
+         executor.shutdown();
+      }
+   }
+}
@@ -0,0 +1,37 @@
+package edu.tamu.tcat.account.test;
+
+import java.security.SecureRandom;
+
+import edu.tamu.tcat.crypto.SecureToken;
+import edu.tamu.tcat.crypto.TokenException;
+import edu.tamu.tcat.crypto.bouncycastle.BouncyCastleCryptoProvider;
+
+/**
+ * Creates the random keys used by the token tests.
+ */
+final class TestKeys
+{
+   private static final SecureRandom random = new SecureRandom();
+
+   private TestKeys()
+   {
+   }
+
+   /**
+    * @return A new random 256 bit key.
+    */
+   static byte[] randomKey()
+   {
+      byte[] key = new byte[256 / 8];
+      random.nextBytes(key);
+      return key;
+   }
+
+   /**
+    * @return A {@link SecureToken} with a new random 256 bit key.
+    */
+   static SecureToken secureToken() throws TokenException
+   {
+      return new BouncyCastleCryptoProvider().getSecureToken(randomKey());
+   }
+}
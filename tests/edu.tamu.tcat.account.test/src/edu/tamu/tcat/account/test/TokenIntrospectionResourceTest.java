@@ -0,0 +1,128 @@
+package edu.tamu.tcat.account.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.ws.rs.BadRequestException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.tamu.tcat.account.db.AdaptingTokenService;
+import edu.tamu.tcat.account.db.ExpiringTokenProvider;
+import edu.tamu.tcat.account.jaxrs.provider.token.TokenIntrospectionResource;
+import edu.tamu.tcat.account.token.TokenService;
+import edu.tamu.tcat.account.token.TokenService.TokenData;
+import edu.tamu.tcat.crypto.TokenException;
+
+public class TokenIntrospectionResourceTest
+{
+   private TokenService<UUID> tokenService;
+
+   @Before
+   public void setup() throws TokenException
+   {
+      tokenService = ExpiringTokenProvider.UuidTokenProviderFactory.makeProvider(TestKeys.secureToken(), 1, ChronoUnit.HOURS);
+   }
+
+   @Test
+   public void testActiveToken()
+   {
+      TokenIntrospectionResource<UUID> resource = new TokenIntrospectionResource<>(tokenService, 10);
+      UUID id = UUID.randomUUID();
+      TokenData<UUID> data = tokenService.createTokenData(id);
+
+      Map<String, Object> response = resource.introspect(data.getToken(), null);
+      assertEquals("Token not active", Boolean.TRUE, response.get("active"));
+      assertEquals("Unexpected subject", id.toString(), response.get("sub"));
+      assertEquals("Unexpected expiration", Long.valueOf(data.getExpiration().toInstant().getEpochSecond()), response.get("exp"));
+   }
+
+   @Test
+   public void testInactiveToken()
+   {
+      TokenIntrospectionResource<UUID> resource = new TokenIntrospectionResource<>(tokenService, 10);
+
+      Map<String, Object> response = resource.introspect("not-a-token", null);
+      assertEquals("Invalid token reported as active", Boolean.FALSE, response.get("active"));
+      assertEquals("Inactive response must not carry claims", 1, response.size());
+
+      try
+      {
+         resource.introspect(null, null);
+         assertFalse("Missing token accepted", true);
+      }
+      catch (BadRequestException ex)
+      {
+         // expected exception
+      }
+   }
+
+   @Test
+   public void testPayloadResolutionFailure()
+   {
+      AtomicBoolean available = new AtomicBoolean(false);
+      AdaptingTokenService<String, UUID> lazy = new AdaptingTokenService<>(String.class, tokenService, UUID::fromString, id -> {
+         if (!available.get())
+            throw new IllegalStateException("Account store unavailable");
+         return id.toString();
+      });
+      TokenIntrospectionResource<String> resource = new TokenIntrospectionResource<>(lazy, 10);
+      UUID id = UUID.randomUUID();
+      String token = tokenService.createTokenData(id).getToken();
+
+      Map<String, Object> response = resource.introspect(token, null);
+      assertEquals("Unresolved token reported as active", Boolean.FALSE, response.get("active"));
+
+      // the failure is not cached
+      available.set(true);
+      response = resource.introspect(token, null);
+      assertEquals("Token not active once resolved", Boolean.TRUE, response.get("active"));
+      assertEquals("Unexpected subject", id.toString(), response.get("sub"));
+   }
+
+   @Test
+   public void testCachedResponses()
+   {
+      TokenIntrospectionResource<UUID> resource = new TokenIntrospectionResource<>(tokenService, 10);
+      String token = tokenService.createTokenData(UUID.randomUUID()).getToken();
+
+      Map<String, Object> first = resource.introspect(token, null);
+      for (int i = 0; i < 4; i++)
+         assertEquals("Cached response differs", first, resource.introspect(token, null));
+      resource.introspect("not-a-token", null);
+      resource.introspect("not-a-token", null);
+
+      assertEquals("Unexpected miss count", 2, resource.getMissCount());
+      assertEquals("Unexpected hit count", 5, resource.getHitCount());
+
+      resource.invalidateAll();
+      resource.introspect(token, null);
+      assertEquals("Cache not cleared", 3, resource.getMissCount());
+   }
+
+   @Test
+   public void testBatch()
+   {
+      TokenIntrospectionResource<UUID> resource = new TokenIntrospectionResource<>(tokenService, 10);
+      UUID a = UUID.randomUUID();
+      UUID b = UUID.randomUUID();
+      String tokenA = tokenService.createTokenData(a).getToken();
+      String tokenB = tokenService.createTokenData(b).getToken();
+
+      List<Map<String, Object>> responses = resource.introspectAll(Arrays.asList(tokenA, "not-a-token", tokenB, tokenA));
+      assertEquals("Unexpected number of responses", 4, responses.size());
+      assertEquals("Unexpected subject", a.toString(), responses.get(0).get("sub"));
+      assertEquals("Invalid token reported as active", Boolean.FALSE, responses.get(1).get("active"));
+      assertEquals("Unexpected subject", b.toString(), responses.get(2).get("sub"));
+      assertEquals("Unexpected subject", a.toString(), responses.get(3).get("sub"));
+      assertEquals("Repeated token not served from cache", 1, resource.getHitCount());
+   }
+}
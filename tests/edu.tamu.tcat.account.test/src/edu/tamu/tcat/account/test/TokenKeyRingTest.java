@@ -0,0 +1,115 @@
+package edu.tamu.tcat.account.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.tamu.tcat.account.db.ExpiringTokenProvider;
+import edu.tamu.tcat.account.db.TokenKeyRing;
+import edu.tamu.tcat.account.token.TokenService;
+import edu.tamu.tcat.crypto.SecureToken;
+import edu.tamu.tcat.crypto.TokenException;
+
+public class TokenKeyRingTest
+{
+   private SecureToken keyA;
+   private SecureToken keyB;
+
+   @Before
+   public void setup() throws TokenException
+   {
+      keyA = TestKeys.secureToken();
+      keyB = TestKeys.secureToken();
+   }
+
+   private static boolean rejects(TokenService<UUID> svc, String token)
+   {
+      try
+      {
+         svc.unpackToken(token);
+         return false;
+      }
+      catch (Exception ex)
+      {
+         return true;
+      }
+   }
+
+   @Test
+   public void testRotation()
+   {
+      TokenKeyRing ring = new TokenKeyRing(1, keyA);
+      TokenService<UUID> svc = ExpiringTokenProvider.UuidTokenProviderFactory.makeProvider(ring, 1, ChronoUnit.HOURS);
+
+      UUID id = UUID.randomUUID();
+      String oldToken = svc.createTokenData(id).getToken();
+      assertTrue("Token does not identify its key", oldToken.startsWith("01."));
+
+      ring.addKey(2, keyB);
+      ring.setActiveKey(2);
+      String newToken = svc.createTokenData(id).getToken();
+      assertTrue("Token does not identify its key", newToken.startsWith("02."));
+
+      assertEquals("Did not recover input id from token issued with previous key.", id, svc.unpackToken(oldToken));
+      assertEquals("Did not recover input id from token issued with active key.", id, svc.unpackToken(newToken));
+
+      ring.retireKey(1);
+      assertTrue("Accepted token issued with retired key", rejects(svc, oldToken));
+      assertEquals("Did not recover input id.", id, svc.unpackToken(newToken));
+   }
+
+   @Test
+   public void testLegacyTokens()
+   {
+      TokenService<UUID> v1 = ExpiringTokenProvider.UuidTokenProviderFactory.makeProvider(keyA, 1, ChronoUnit.HOURS);
+      TokenKeyRing ring = new TokenKeyRing(0, keyA);
+      ring.addKey(1, keyB);
+      ring.setActiveKey(1);
+      TokenService<UUID> v2 = ExpiringTokenProvider.UuidTokenProviderFactory.makeProvider(ring, 1, ChronoUnit.HOURS);
+
+      UUID id = UUID.randomUUID();
+      String legacy = v1.createTokenData(id).getToken();
+      assertEquals("Did not recover input id from legacy token.", id, v2.unpackToken(legacy));
+
+      // the key id must match the layout of the encrypted content
+      assertTrue("Accepted legacy token with a key id", rejects(v2, "00." + legacy));
+      assertTrue("Legacy provider accepted key ring token", rejects(v1, v2.createTokenData(id).getToken()));
+
+      ring.retireKey(0);
+      assertTrue("Accepted legacy token after its key was retired", rejects(v2, legacy));
+   }
+
+   @Test
+   public void testKeyRingValidation()
+   {
+      TokenKeyRing ring = new TokenKeyRing(0, keyA);
+      assertFalse(ring.hasKey(TokenKeyRing.MAX_KEY_ID));
+      assertTrue(ring.hasKey(0));
+
+      try
+      {
+         ring.retireKey(0);
+         assertFalse("Retired the active key", true);
+      }
+      catch (IllegalStateException ex)
+      {
+         // expected exception
+      }
+
+      try
+      {
+         ring.addKey(TokenKeyRing.MAX_KEY_ID + 1, keyB);
+         assertFalse("Accepted out of range key id", true);
+      }
+      catch (IllegalArgumentException ex)
+      {
+         // expected exception
+      }
+   }
+}
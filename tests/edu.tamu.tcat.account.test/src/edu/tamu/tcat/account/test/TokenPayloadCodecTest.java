@@ -0,0 +1,133 @@
+package edu.tamu.tcat.account.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.tamu.tcat.account.db.AccountClaims;
+import edu.tamu.tcat.account.db.ExpiringTokenProvider;
+import edu.tamu.tcat.account.db.TokenPayloadCodec;
+import edu.tamu.tcat.account.db.TokenPayloadCodecs;
+import edu.tamu.tcat.account.token.TokenService;
+import edu.tamu.tcat.crypto.SecureToken;
+import edu.tamu.tcat.crypto.TokenException;
+
+public class TokenPayloadCodecTest
+{
+   private SecureToken secureToken;
+
+   @Before
+   public void setup() throws TokenException
+   {
+      secureToken = TestKeys.secureToken();
+   }
+
+   private static <T> byte[] encode(TokenPayloadCodec<T> codec, T value)
+   {
+      ByteBuffer buffer = ByteBuffer.allocate(1024);
+      codec.encode(value, length -> buffer);
+      buffer.flip();
+      byte[] bytes = new byte[buffer.remaining()];
+      buffer.get(bytes);
+      return bytes;
+   }
+
+   private static <T> T decode(TokenPayloadCodec<T> codec, byte[] bytes)
+   {
+      return codec.decode(ByteBuffer.wrap(bytes));
+   }
+
+   @Test
+   public void testUuidAndLongCodecs()
+   {
+      UUID id = UUID.randomUUID();
+      assertEquals("Did not recover input id.", id, decode(TokenPayloadCodecs.uuid(), encode(TokenPayloadCodecs.uuid(), id)));
+      assertEquals("Did not recover input id.", Long.valueOf(-42), decode(TokenPayloadCodecs.longValue(), encode(TokenPayloadCodecs.longValue(), Long.valueOf(-42))));
+   }
+
+   @Test
+   public void testStringCodecMatchesStringEncoding()
+   {
+      String[] values = { "", "Hello World", "caf\u00e9", "\u65e5\u672c\u8a9e", "emoji \ud83d\ude00", "unpaired \ud83d surrogate" };
+      Charset[] charsets = { StandardCharsets.UTF_8, StandardCharsets.UTF_16BE, StandardCharsets.ISO_8859_1 };
+      for (Charset charset : charsets)
+      {
+         TokenPayloadCodec<String> codec = TokenPayloadCodecs.string(charset);
+         for (String value : values)
+         {
+            byte[] expected = value.getBytes(charset);
+            byte[] actual = encode(codec, value);
+            assertArrayEquals(expected, actual);
+            assertEquals("Did not recover input string.", new String(expected, charset), decode(codec, actual));
+         }
+      }
+   }
+
+   @Test
+   public void testAccountClaims()
+   {
+      List<UUID> roles = Arrays.asList(UUID.randomUUID(), UUID.randomUUID());
+      AccountClaims claims = new AccountClaims(UUID.randomUUID(), "j.doe \u00e9", true, roles, Instant.ofEpochMilli(1234567890123L));
+      assertEquals("Did not recover input claims.", claims, decode(TokenPayloadCodecs.accountClaims(), encode(TokenPayloadCodecs.accountClaims(), claims)));
+
+      AccountClaims minimal = new AccountClaims(UUID.randomUUID(), null, false, Collections.emptyList(), Instant.ofEpochMilli(0));
+      assertEquals("Did not recover input claims.", minimal, decode(TokenPayloadCodecs.accountClaims(), encode(TokenPayloadCodecs.accountClaims(), minimal)));
+
+      ExpiringTokenProvider<AccountClaims> svc = ExpiringTokenProvider.AccountClaimsTokenProviderFactory.makeProvider(secureToken, 1, ChronoUnit.HOURS);
+      AccountClaims unpacked = svc.unpackToken(svc.createTokenData(claims).getToken());
+      assertEquals("Did not recover input claims.", claims, unpacked);
+      assertTrue("Role was not present in claims.", unpacked.hasRole(roles.get(1)));
+   }
+
+   @Test
+   public void testFunctionAdapterCompatibility()
+   {
+      ExpiringTokenProvider<UUID> adapted = new ExpiringTokenProvider<>(secureToken,
+            id -> ByteBuffer.allocate(16).putLong(id.getMostSignificantBits()).putLong(id.getLeastSignificantBits()).array(),
+            bytes -> { ByteBuffer b = ByteBuffer.wrap(bytes); return new UUID(b.getLong(), b.getLong()); },
+            1, ChronoUnit.HOURS, UUID.class);
+      TokenService<UUID> codec = ExpiringTokenProvider.UuidTokenProviderFactory.makeProvider(secureToken, 1, ChronoUnit.HOURS);
+
+      UUID id = UUID.randomUUID();
+      assertEquals("Codec could not read adapted token.", id, codec.unpackToken(adapted.createTokenData(id).getToken()));
+      assertEquals("Adapter could not read codec token.", id, adapted.unpackToken(codec.createTokenData(id).getToken()));
+   }
+
+   @Test
+   public void testThreadBufferReuse()
+   {
+      ExpiringTokenProvider<String> svc = ExpiringTokenProvider.StringTokenProviderFactory.makeProvider(secureToken, StandardCharsets.UTF_16BE, 1, ChronoUnit.HOURS);
+      svc.setThreadBufferReuse(true);
+
+      // payloads both smaller and larger than the retained buffer
+      char[] large = new char[10_000];
+      Arrays.fill(large, '\u00e9');
+      for (String payload : new String[] { "account.user.0123456789", new String(large), "" })
+         assertEquals("Did not recover input string.", payload, svc.unpackToken(svc.createTokenData(payload).getToken()));
+
+      // the setting is kept by derived providers, which hold their own buffers
+      ExpiringTokenProvider<String> prefixed = svc.withAuthenticatedExpiry(TestKeys.randomKey());
+      assertTrue("Buffer reuse not kept by derived provider", prefixed.isThreadBufferReuse());
+
+      svc.dispose();
+      assertFalse("Buffer reuse enabled after dispose", svc.isThreadBufferReuse());
+      assertTrue("Derived provider disposed with its source", prefixed.isThreadBufferReuse());
+      String payload = "account.user.0123456789";
+      assertEquals("Did not recover input string after dispose.", payload, svc.unpackToken(svc.createTokenData(payload).getToken()));
+      assertEquals("Did not recover input string.", payload, prefixed.unpackToken(prefixed.createTokenData(payload).getToken()));
+   }
+}
@@ -0,0 +1,204 @@
+package edu.tamu.tcat.account.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+import org.junit.Test;
+
+import edu.tamu.tcat.account.jaxrs.bean.ContextBean;
+import edu.tamu.tcat.account.jaxrs.bean.TokenProviding;
+import edu.tamu.tcat.account.jaxrs.provider.token.TokenDynamicFeature;
+import edu.tamu.tcat.account.jaxrs.provider.token.TokenProvidingObjectFilter;
+import edu.tamu.tcat.account.jaxrs.provider.token.TokenProvidingWriterInterceptor;
+import edu.tamu.tcat.account.test.mock.MockRequestContext;
+import edu.tamu.tcat.account.test.mock.MockTokenData;
+import edu.tamu.tcat.account.token.TokenService;
+
+public class TokenProvidingWriterInterceptorTest
+{
+   private static final UUID ID = UUID.randomUUID();
+   private static final String TOKEN = "issued\"token";
+   private static final String MEMBERS_PREFIX = "{\"access_token\":\"issued\\\"token\",\"token_type\":\"Bearer\",\"expires_in\":\"";
+
+   @TokenProviding(payloadType = UUID.class, delivery = TokenProviding.Delivery.JSON_STREAM)
+   public void stream()
+   {
+   }
+
+   @TokenProviding(payloadType = UUID.class, delivery = TokenProviding.Delivery.HEADERS)
+   public void headers()
+   {
+   }
+
+   private static TokenProviding annotation(String method) throws Exception
+   {
+      return TokenProvidingWriterInterceptorTest.class.getMethod(method).getAnnotation(TokenProviding.class);
+   }
+
+   private static class IssuingTokenService implements TokenService<UUID>
+   {
+      @Override
+      public TokenData<UUID> createTokenData(UUID payload)
+      {
+         return new MockTokenData(TOKEN, payload, ZonedDateTime.now().plusHours(1));
+      }
+
+      @Override
+      public UUID unpackToken(String token)
+      {
+         throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public Class<UUID> getPayloadType()
+      {
+         return UUID.class;
+      }
+   }
+
+   @Test
+   public void testJsonStream() throws Exception
+   {
+      assertEquals("Token not inserted", MEMBERS_PREFIX, write("{\"name\":\"value\"}").substring(0, MEMBERS_PREFIX.length()));
+      assertTrue("Entity members not retained", write("{\"name\":\"value\"}").endsWith("\",\"name\":\"value\"}"));
+      assertTrue("Entity members not retained", write("  {\n  \"a\" : [1, {}]\n}").endsWith("\"\n  ,\"a\" : [1, {}]\n}"));
+      assertTrue("Empty object not closed", write("{ }").matches("\\{\"access_token\".*\"expiration\":\"[^\"]+\" \\}"));
+
+      try
+      {
+         write("[1, 2]");
+         assertFalse("Non-object entity accepted", true);
+      }
+      catch (IOException ex)
+      {
+         // expected exception
+      }
+   }
+
+   @Test
+   public void testHeaders() throws Exception
+   {
+      ContainerRequestContext request = MockRequestContext.create("POST");
+      Map<String, Object> headers = new HashMap<>();
+      filter(request, annotation("headers"), "not json", MediaType.TEXT_PLAIN_TYPE, headers);
+
+      assertEquals("Unexpected token", TOKEN, headers.get(TokenDynamicFeature.HEADER_ACCESS_TOKEN));
+      assertEquals("Unexpected token type", "Bearer", headers.get(TokenDynamicFeature.HEADER_TOKEN_TYPE));
+      assertTrue("No expiration", headers.containsKey(TokenDynamicFeature.HEADER_TOKEN_EXPIRES_IN));
+      assertTrue("No expiration", headers.containsKey(TokenDynamicFeature.HEADER_TOKEN_EXPIRATION));
+   }
+
+   /**
+    * Filters a response with the given entity and writes it through the interceptor.
+    */
+   private static String write(String json) throws Exception
+   {
+      ContainerRequestContext request = MockRequestContext.create("POST");
+      filter(request, annotation("stream"), json, MediaType.valueOf("application/json; charset=UTF-8"), new HashMap<>());
+
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      OutputStream[] stream = { out };
+      WriterInterceptorContext context = (WriterInterceptorContext)Proxy.newProxyInstance(TokenProvidingWriterInterceptorTest.class.getClassLoader(),
+            new Class<?>[] { WriterInterceptorContext.class },
+            (proxy, m, args) -> {
+               switch (m.getName())
+               {
+                  case "getProperty":
+                     return request.getProperty((String)args[0]);
+                  case "getMediaType":
+                     return MediaType.APPLICATION_JSON_TYPE;
+                  case "getHeaders":
+                     return headers(new HashMap<>());
+                  case "getOutputStream":
+                     return stream[0];
+                  case "setOutputStream":
+                     stream[0] = (OutputStream)args[0];
+                     return null;
+                  case "proceed":
+                     // a message body writer writing the entity in several parts
+                     byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+                     stream[0].write(bytes[0]);
+                     stream[0].write(bytes, 1, bytes.length / 2);
+                     stream[0].write(bytes, 1 + bytes.length / 2, bytes.length - 1 - bytes.length / 2);
+                     return null;
+                  default:
+                     return null;
+               }
+            });
+
+      new TokenProvidingWriterInterceptor().aroundWriteTo(context);
+      return new String(out.toByteArray(), StandardCharsets.UTF_8);
+   }
+
+   private static void filter(ContainerRequestContext request, TokenProviding annot, Object entity, MediaType mediaType,
+         Map<String, Object> headers) throws Exception
+   {
+      TokenProvidingObjectFilter<UUID> filter = new TokenProvidingObjectFilter<>(new IssuingTokenService(), annot);
+      filter.filter(request);
+      ContextBean.from(request).install(UUID.class).set("", ID);
+
+      ContainerResponseContext response = (ContainerResponseContext)Proxy.newProxyInstance(TokenProvidingWriterInterceptorTest.class.getClassLoader(),
+            new Class<?>[] { ContainerResponseContext.class },
+            (proxy, m, args) -> {
+               switch (m.getName())
+               {
+                  case "getStatusInfo":
+                     return Response.Status.OK;
+                  case "getMediaType":
+                     return mediaType;
+                  case "getEntity":
+                     return entity;
+                  case "getHeaders":
+                     return headers(headers);
+                  default:
+                     return null;
+               }
+            });
+      filter.filter(request, response);
+   }
+
+   /**
+    * @return A view of the given map supporting the {@link MultivaluedMap} methods used by the
+    *       token providers, which store single values.
+    */
+   @SuppressWarnings("unchecked")
+   private static MultivaluedMap<String, Object> headers(Map<String, Object> values)
+   {
+      return (MultivaluedMap<String, Object>)Proxy.newProxyInstance(TokenProvidingWriterInterceptorTest.class.getClassLoader(),
+            new Class<?>[] { MultivaluedMap.class },
+            (proxy, m, args) -> {
+               switch (m.getName())
+               {
+                  case "putSingle":
+                     return values.put((String)args[0], args[1]);
+                  case "get":
+                     return values.containsKey(args[0]) ? Collections.singletonList(values.get(args[0])) : null;
+                  case "remove":
+                     Object old = values.remove(args[0]);
+                     return old == null ? null : (List<Object>)Collections.singletonList(old);
+                  default:
+                     throw new UnsupportedOperationException(m.getName());
+               }
+            });
+   }
+}
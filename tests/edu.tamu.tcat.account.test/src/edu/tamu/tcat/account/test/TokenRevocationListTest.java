@@ -0,0 +1,179 @@
+package edu.tamu.tcat.account.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.tamu.tcat.account.db.AdaptingTokenService;
+import edu.tamu.tcat.account.db.ExpiringTokenProvider;
+import edu.tamu.tcat.account.db.TokenRevocationList;
+import edu.tamu.tcat.account.token.TokenService;
+import edu.tamu.tcat.crypto.TokenException;
+
+public class TokenRevocationListTest
+{
+   private ExpiringTokenProvider<UUID> provider;
+
+   @Before
+   public void setup() throws TokenException
+   {
+      provider = (ExpiringTokenProvider<UUID>)ExpiringTokenProvider.UuidTokenProviderFactory.makeProvider(TestKeys.secureToken(), 1, ChronoUnit.HOURS);
+   }
+
+   @Test
+   public void testRevokedTokenRejected()
+   {
+      provider.setRevocationList(new TokenRevocationList(100));
+      UUID id = UUID.randomUUID();
+      String revoked = provider.createTokenData(id).getToken();
+      // tokens with the same content are indistinguishable, so this expires at another time
+      String other = provider.createTokenData(id, Instant.now().plusSeconds(60)).getToken();
+
+      provider.revokeToken(revoked);
+      try
+      {
+         provider.unpackToken(revoked);
+         assertFalse("Revoked token was unpacked", true);
+      }
+      catch (IllegalArgumentException ex)
+      {
+         // expected exception
+      }
+
+      assertEquals("Did not recover input id.", id, provider.unpackToken(other));
+   }
+
+   @Test
+   public void testAdaptingTokenService()
+   {
+      TokenRevocationList revocations = new TokenRevocationList(100);
+      AdaptingTokenService<String, UUID> svc = new AdaptingTokenService<>(String.class, provider, UUID::fromString, UUID::toString);
+      svc.setRevocationList(revocations);
+
+      String id = UUID.randomUUID().toString();
+      String token = svc.createTokenData(id).getToken();
+      assertEquals("Did not recover input id.", id, svc.unpackToken(token));
+
+      svc.revokeToken(token);
+      try
+      {
+         svc.unpackToken(token);
+         assertFalse("Revoked token was unpacked", true);
+      }
+      catch (IllegalArgumentException ex)
+      {
+         // expected exception
+      }
+   }
+
+   @Test
+   public void testAlternateSpellingsRejected()
+   {
+      byte[] macKey = TestKeys.randomKey();
+      // the content of these tokens is not a multiple of three bytes, leaving unused bits
+      ExpiringTokenProvider<Long> signed = (ExpiringTokenProvider<Long>)ExpiringTokenProvider.LongTokenProviderFactory.makeSignedProvider(macKey, 1, ChronoUnit.HOURS);
+      ExpiringTokenProvider<UUID> prefixed = provider.withAuthenticatedExpiry(macKey);
+      signed.setRevocationList(new TokenRevocationList(100));
+      prefixed.setRevocationList(new TokenRevocationList(100));
+
+      String signedToken = signed.createTokenData(Long.valueOf(1)).getToken();
+      String prefixedToken = prefixed.createTokenData(UUID.randomUUID()).getToken();
+      signed.revokeToken(signedToken);
+      prefixed.revokeToken(prefixedToken);
+
+      String[] spellings = {
+            signedToken + "==",
+            withLastBitSet(signedToken),
+            // the 16 byte tag leaves four unused bits in its last character
+            withLastBitSet(prefixedToken.substring(0, 16 + 22)) + prefixedToken.substring(16 + 22),
+            prefixedToken.substring(16 + 22 + 1)
+      };
+      for (int i = 0; i < spellings.length; i++)
+      {
+         TokenService<?> svc = (i < 2) ? signed : prefixed;
+         try
+         {
+            svc.unpackToken(spellings[i]);
+            assertFalse("Revoked token was unpacked as [" + spellings[i] + "]", true);
+         }
+         catch (IllegalArgumentException ex)
+         {
+            // expected exception
+         }
+      }
+   }
+
+   /** Sets the lowest bit of the last character, which is unused unless the length is a multiple of four. */
+   private static String withLastBitSet(String base64)
+   {
+      String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+      int last = alphabet.indexOf(base64.charAt(base64.length() - 1));
+      assertTrue("No unused bits in [" + base64 + "]", base64.length() % 4 != 0);
+      return base64.substring(0, base64.length() - 1) + alphabet.charAt(last | 1);
+   }
+
+   @Test
+   public void testExpiredRevocationsPurged() throws InterruptedException
+   {
+      TokenRevocationList revocations = new TokenRevocationList(2);
+      revocations.revoke(id("a"), Instant.now().plusMillis(100));
+      revocations.revoke(id("b"), Instant.now().plusMillis(100));
+      assertTrue(revocations.isRevoked(id("a")));
+
+      try
+      {
+         revocations.revoke(id("c"), Instant.now().plusSeconds(60));
+         assertFalse("Exceeded capacity", true);
+      }
+      catch (IllegalStateException ex)
+      {
+         // expected exception
+      }
+
+      Thread.sleep(150);
+      assertFalse("Revocation outlived its token", revocations.isRevoked(id("a")));
+      revocations.revoke(id("c"), Instant.now().plusSeconds(60));
+      assertEquals("Expired revocations were not purged", 1, revocations.size());
+      assertTrue(revocations.isRevoked(id("c")));
+   }
+
+   @Test
+   public void testFullTable()
+   {
+      // enough entries to fill the table to its maximum load
+      int count = 1000;
+      TokenRevocationList revocations = new TokenRevocationList(count);
+      Instant expires = Instant.now().plus(1, ChronoUnit.HOURS);
+      for (int i = 0; i < count; i++)
+         revocations.revoke(id("revoked-" + i), expires);
+
+      // revoking a token again does not use another entry
+      revocations.revoke(id("revoked-0"), expires.plusSeconds(60));
+      assertEquals("Unexpected size", count, revocations.size());
+
+      for (int i = 0; i < count; i++)
+      {
+         assertTrue("Revocation lost", revocations.isRevoked(id("revoked-" + i)));
+         assertFalse("Unrevoked token reported as revoked", revocations.isRevoked(id("valid-" + i)));
+      }
+
+      // revocations survive a purge until their tokens expire
+      revocations.purge();
+      assertEquals("Unexpired revocations purged", count, revocations.size());
+      assertTrue("Revocation lost by purge", revocations.isRevoked(id("revoked-" + (count - 1))));
+   }
+
+   private static ByteBuffer id(String tokenId)
+   {
+      return ByteBuffer.wrap(tokenId.getBytes(StandardCharsets.UTF_8));
+   }
+}
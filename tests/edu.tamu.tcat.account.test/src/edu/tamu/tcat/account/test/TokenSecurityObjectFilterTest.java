@@ -0,0 +1,281 @@
+package edu.tamu.tcat.account.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.ServiceUnavailableException;
+import javax.ws.rs.container.ContainerRequestContext;
+
+import org.junit.Test;
+
+import edu.tamu.tcat.account.db.AdaptingTokenService;
+import edu.tamu.tcat.account.jaxrs.bean.ContextBean;
+import edu.tamu.tcat.account.jaxrs.bean.TokenSecured;
+import edu.tamu.tcat.account.jaxrs.provider.token.TokenSecurityObjectFilter;
+import edu.tamu.tcat.account.test.mock.MockRequestContext;
+import edu.tamu.tcat.account.token.TokenService;
+
+public class TokenSecurityObjectFilterTest
+{
+   private static final UUID ID = UUID.randomUUID();
+
+   @TokenSecured(payloadType = UUID.class)
+   public void required()
+   {
+   }
+
+   @TokenSecured(payloadType = UUID.class, required = false)
+   public void optional()
+   {
+   }
+
+   @TokenSecured(payloadType = String.class, lazy = true)
+   public void lazy()
+   {
+   }
+
+   @TokenSecured(payloadType = UUID.class, async = true)
+   public void async()
+   {
+   }
+
+   static TokenSecured annotation(String method) throws Exception
+   {
+      return TokenSecurityObjectFilterTest.class.getMethod(method).getAnnotation(TokenSecured.class);
+   }
+
+   /**
+    * A token service that accepts a single token, so that {@link Benchmarks} measures the
+    * filter rather than token decryption.
+    */
+   static class FixedTokenService implements TokenService<UUID>
+   {
+      @Override
+      public TokenData<UUID> createTokenData(UUID payload)
+      {
+         throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public UUID unpackToken(String token)
+      {
+         if (!token.equals("valid-token"))
+            throw new IllegalArgumentException("Invalid token");
+         return ID;
+      }
+
+      @Override
+      public Class<UUID> getPayloadType()
+      {
+         return UUID.class;
+      }
+   }
+
+   @Test
+   public void testBearerToken() throws Exception
+   {
+      TokenSecurityObjectFilter<UUID> filter = new TokenSecurityObjectFilter<>(new FixedTokenService(), annotation("required"));
+
+      for (String header : new String[] { "Bearer valid-token", "bearer valid-token", "BEARER valid-token" })
+      {
+         ContainerRequestContext ctx = MockRequestContext.create("GET", "Authorization", header);
+         filter.filter(ctx);
+         assertEquals("Payload not installed for [" + header + "]", ID, ContextBean.getValue(ctx, UUID.class, ""));
+      }
+
+      ContainerRequestContext ctx = MockRequestContext.create("GET", "authorization", "Bearer valid-token");
+      filter.filter(ctx);
+      assertEquals("Header name not matched case-insensitively", ID, ContextBean.getValue(ctx, UUID.class, ""));
+   }
+
+   @Test
+   public void testRejected() throws Exception
+   {
+      TokenSecurityObjectFilter<UUID> filter = new TokenSecurityObjectFilter<>(new FixedTokenService(), annotation("required"));
+      String[][] requests = {
+         {},
+         { "Authorization", "Basic dXNlcjpwYXNz" },
+         { "Authorization", "Bearer" },
+         { "Authorization", "Bearer " },
+         { "Authorization", "Bearerinvalid-token" },
+         { "Authorization", "Bearer invalid-token" },
+      };
+
+      for (String[] headers : requests)
+      {
+         try
+         {
+            filter.filter(MockRequestContext.create("GET", headers));
+            assertFalse("Request accepted: " + String.join(": ", headers), true);
+         }
+         catch (BadRequestException ex)
+         {
+            // expected exception
+         }
+      }
+
+      // anonymous requests are accepted when a token is optional
+      TokenSecurityObjectFilter<UUID> optional = new TokenSecurityObjectFilter<>(new FixedTokenService(), annotation("optional"));
+      ContainerRequestContext ctx = MockRequestContext.create("GET");
+      optional.filter(ctx);
+      assertEquals("Anonymous request has a payload", null, ContextBean.getValue(ctx, UUID.class, ""));
+   }
+
+   @Test
+   public void testLazyResolution() throws Exception
+   {
+      AtomicInteger resolved = new AtomicInteger();
+      AdaptingTokenService<String, UUID> svc = new AdaptingTokenService<>(String.class, new FixedTokenService(),
+            name -> ID,
+            id -> {
+               resolved.incrementAndGet();
+               if (!id.equals(ID))
+                  throw new IllegalArgumentException("Unknown id");
+               return "account-" + id;
+            });
+      TokenSecurityObjectFilter<String> filter = new TokenSecurityObjectFilter<>(svc, annotation("lazy"));
+
+      ContainerRequestContext ctx = MockRequestContext.create("GET", "Authorization", "Bearer valid-token");
+      filter.filter(ctx);
+      assertEquals("Payload resolved by filter", 0, resolved.get());
+
+      ContextBean bean = new ContextBean(ctx.getSecurityContext());
+      assertEquals("Unexpected payload", "account-" + ID, bean.get(String.class));
+      assertEquals("Unexpected payload", "account-" + ID, bean.getOptionally(String.class).get());
+      assertEquals("Payload not resolved once", 1, resolved.get());
+
+      // invalid tokens are still rejected by the filter
+      try
+      {
+         filter.filter(MockRequestContext.create("GET", "Authorization", "Bearer invalid-token"));
+         assertFalse("Invalid token accepted", true);
+      }
+      catch (BadRequestException ex)
+      {
+         // expected exception
+      }
+   }
+
+   @Test
+   public void testAsyncAuthentication() throws Exception
+   {
+      CountDownLatch lookup = new CountDownLatch(1);
+      AtomicInteger resolved = new AtomicInteger();
+      AdaptingTokenService<UUID, UUID> svc = new AdaptingTokenService<>(UUID.class, new FixedTokenService(),
+            id -> id,
+            id -> {
+               resolved.incrementAndGet();
+               try
+               {
+                  // simulates a blocking payload lookup
+                  lookup.await(10, TimeUnit.SECONDS);
+               }
+               catch (InterruptedException e)
+               {
+                  Thread.currentThread().interrupt();
+               }
+               return id;
+            });
+
+      ExecutorService executor = Executors.newSingleThreadExecutor();
+      try
+      {
+         TokenSecurityObjectFilter<UUID> filter = new TokenSecurityObjectFilter<>(() -> svc, annotation("async"), executor);
+
+         // the filter returns while the lookup is still in progress
+         ContainerRequestContext ctx = MockRequestContext.create("GET", "Authorization", "Bearer valid-token");
+         filter.filter(ctx);
+         CompletableFuture<UUID> payload = new ContextBean(ctx.getSecurityContext()).getAsync(UUID.class).toCompletableFuture();
+         assertFalse("Payload resolved before lookup completed", payload.isDone());
+
+         lookup.countDown();
+         assertEquals("Unexpected payload", ID, payload.get(10, TimeUnit.SECONDS));
+         assertEquals("Unexpected payload", ID, ContextBean.getValue(ctx, UUID.class, ""));
+         assertEquals("Payload not resolved once", 1, resolved.get());
+
+         // requests without a token are still rejected by the filter
+         try
+         {
+            filter.filter(MockRequestContext.create("GET"));
+            assertFalse("Request accepted without token", true);
+         }
+         catch (BadRequestException ex)
+         {
+            // expected exception
+         }
+      }
+      finally
+      {
+         executor.shutdown();
+      }
+   }
+
+   @Test
+   public void testAsyncAuthenticationFailsClosed() throws Exception
+   {
+      AtomicInteger submitted = new AtomicInteger();
+      AdaptingTokenService<UUID, UUID> svc = new AdaptingTokenService<>(UUID.class, new FixedTokenService(),
+            id -> id,
+            id -> {
+               throw new IllegalArgumentException("Unknown id");
+            });
+      TokenSecurityObjectFilter<UUID> filter = new TokenSecurityObjectFilter<>(() -> svc, annotation("async"), task -> {
+         submitted.incrementAndGet();
+         task.run();
+      });
+
+      // invalid tokens are rejected by the filter, before the resource method is invoked
+      for (String method : new String[] { "GET", "DELETE", "POST" })
+      {
+         try
+         {
+            filter.filter(MockRequestContext.create(method, "Authorization", "Bearer invalid-token"));
+            assertFalse("Invalid token accepted for " + method, true);
+         }
+         catch (BadRequestException ex)
+         {
+            // expected exception
+         }
+      }
+      assertEquals("Payload lookup started for invalid token", 0, submitted.get());
+
+      // a valid token whose payload cannot be resolved fails the pending payload
+      ContainerRequestContext ctx = MockRequestContext.create("GET", "Authorization", "Bearer valid-token");
+      filter.filter(ctx);
+      try
+      {
+         new ContextBean(ctx.getSecurityContext()).getAsync(UUID.class).toCompletableFuture().get(10, TimeUnit.SECONDS);
+         assertFalse("Unresolved payload accepted", true);
+      }
+      catch (ExecutionException ex)
+      {
+         assertTrue("Unexpected failure " + ex.getCause(), ex.getCause() instanceof BadRequestException);
+      }
+
+      // requests are rejected if the payload lookup cannot be started because the executor is saturated
+      filter = new TokenSecurityObjectFilter<>(() -> svc, annotation("async"), task -> {
+         throw new RejectedExecutionException();
+      });
+      try
+      {
+         filter.filter(MockRequestContext.create("GET", "Authorization", "Bearer valid-token"));
+         assertFalse("Request accepted without authentication", true);
+      }
+      catch (ServiceUnavailableException ex)
+      {
+         // expected exception
+      }
+   }
+}
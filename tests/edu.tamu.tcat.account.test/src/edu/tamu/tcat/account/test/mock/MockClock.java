@@ -0,0 +1,41 @@
+package edu.tamu.tcat.account.test.mock;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+/**
+ * A clock that only moves when advanced, for exercising time-based eviction without waiting.
+ */
+public class MockClock extends Clock
+{
+   private volatile Instant now = Instant.parse("2026-01-01T00:00:00Z");
+
+   /**
+    * @param duration The amount of time by which to move the clock forward.
+    */
+   public void advance(Duration duration)
+   {
+      now = now.plus(duration);
+   }
+
+   @Override
+   public Instant instant()
+   {
+      return now;
+   }
+
+   @Override
+   public ZoneId getZone()
+   {
+      return ZoneOffset.UTC;
+   }
+
+   @Override
+   public Clock withZone(ZoneId zone)
+   {
+      throw new UnsupportedOperationException();
+   }
+}
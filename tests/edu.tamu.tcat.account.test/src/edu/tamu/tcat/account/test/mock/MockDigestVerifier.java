@@ -0,0 +1,77 @@
+package edu.tamu.tcat.account.test.mock;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+
+import edu.tamu.tcat.account.signature.SignatureService.Verifier;
+
+/**
+ * A verifier that accepts data with a known SHA-256 digest, for exercising signature streams
+ * without key material. Counts the calls made to process data.
+ */
+public class MockDigestVerifier implements Verifier
+{
+   private final MessageDigest digest;
+   private final byte[] expected;
+   private int calls;
+
+   /**
+    * @param parts The parts of the data to accept.
+    */
+   public MockDigestVerifier(byte[]... parts)
+   {
+      try
+      {
+         digest = MessageDigest.getInstance("SHA-256");
+      }
+      catch (NoSuchAlgorithmException e)
+      {
+         throw new IllegalStateException(e);
+      }
+
+      for (byte[] part : parts)
+         digest.update(part);
+      expected = digest.digest();
+   }
+
+   /**
+    * @return The number of calls made to process data.
+    */
+   public int getCalls()
+   {
+      return calls;
+   }
+
+   @Override
+   public Map<String, List<String>> getSignedHeaders(Map<String, List<String>> headers)
+   {
+      return headers;
+   }
+
+   @Override
+   public void validateAdditionalHeaders(String method, Map<String, List<String>> headers)
+   {
+   }
+
+   @Override
+   public void processSignedData(byte[] data)
+   {
+      calls++;
+      digest.update(data);
+   }
+
+   @Override
+   public void processSignedData(byte[] data, int offset, int bytesToRead)
+   {
+      calls++;
+      digest.update(data, offset, bytesToRead);
+   }
+
+   @Override
+   public boolean verify()
+   {
+      return MessageDigest.isEqual(expected, digest.digest());
+   }
+}
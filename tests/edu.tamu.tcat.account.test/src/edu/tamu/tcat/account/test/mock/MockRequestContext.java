@@ -0,0 +1,206 @@
+/*
+ * Copyright 2014 Texas A&M Engineering Experiment Station
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.tamu.tcat.account.test.mock;
+
+import java.lang.reflect.Proxy;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.SecurityContext;
+import javax.ws.rs.core.UriInfo;
+
+/**
+ * A minimal {@link ContainerRequestContext} for exercising request filters outside of a
+ * JAX-RS container. Supports headers, properties, the security context and the request path;
+ * other methods return {@code null}.
+ */
+public final class MockRequestContext
+{
+   private MockRequestContext()
+   {
+   }
+
+   /**
+    * @param method The HTTP method of the request.
+    * @param headers Alternating header names and values.
+    * @return A new request context.
+    */
+   public static ContainerRequestContext create(String method, String... headers)
+   {
+      Headers headerMap = new Headers();
+      for (int i = 0; i + 1 < headers.length; i += 2)
+         headerMap.add(headers[i], headers[i + 1]);
+
+      Map<String, Object> properties = new HashMap<>();
+      SecurityContext[] security = { anonymous() };
+      return (ContainerRequestContext)Proxy.newProxyInstance(MockRequestContext.class.getClassLoader(),
+            new Class<?>[] { ContainerRequestContext.class },
+            (proxy, m, args) -> {
+               switch (m.getName())
+               {
+                  case "getMethod":
+                     return method;
+                  case "getHeaders":
+                     return headerMap;
+                  case "getHeaderString":
+                     List<String> values = headerMap.get(args[0]);
+                     return values == null ? null : String.join(",", values);
+                  case "getProperty":
+                     return properties.get(args[0]);
+                  case "getPropertyNames":
+                     return properties.keySet();
+                  case "setProperty":
+                     properties.put((String)args[0], args[1]);
+                     return null;
+                  case "removeProperty":
+                     properties.remove(args[0]);
+                     return null;
+                  case "getSecurityContext":
+                     return security[0];
+                  case "setSecurityContext":
+                     security[0] = (SecurityContext)args[0];
+                     return null;
+                  case "getUriInfo":
+                     return uriInfo("resource");
+                  case "hasEntity":
+                     return Boolean.FALSE;
+                  case "hashCode":
+                     return Integer.valueOf(System.identityHashCode(proxy));
+                  case "equals":
+                     return Boolean.valueOf(proxy == args[0]);
+                  case "toString":
+                     return "MockRequestContext[" + method + "]";
+                  default:
+                     return null;
+               }
+            });
+   }
+
+   /**
+    * @return A {@link UriInfo} supporting only {@link UriInfo#getPath()}.
+    */
+   private static UriInfo uriInfo(String path)
+   {
+      return (UriInfo)Proxy.newProxyInstance(MockRequestContext.class.getClassLoader(),
+            new Class<?>[] { UriInfo.class },
+            (proxy, m, args) -> m.getName().equals("getPath") ? path : null);
+   }
+
+   private static SecurityContext anonymous()
+   {
+      return new SecurityContext()
+      {
+         @Override
+         public Principal getUserPrincipal()
+         {
+            return null;
+         }
+
+         @Override
+         public boolean isUserInRole(String role)
+         {
+            return false;
+         }
+
+         @Override
+         public boolean isSecure()
+         {
+            return false;
+         }
+
+         @Override
+         public String getAuthenticationScheme()
+         {
+            return null;
+         }
+      };
+   }
+
+   /**
+    * Case-insensitive request headers, as provided by JAX-RS implementations.
+    */
+   private static class Headers extends TreeMap<String, List<String>> implements MultivaluedMap<String, String>
+   {
+      private static final long serialVersionUID = 1L;
+
+      Headers()
+      {
+         super(String.CASE_INSENSITIVE_ORDER);
+      }
+
+      @Override
+      public void putSingle(String key, String value)
+      {
+         List<String> values = new ArrayList<>();
+         values.add(value);
+         put(key, values);
+      }
+
+      @Override
+      public void add(String key, String value)
+      {
+         computeIfAbsent(key, k -> new ArrayList<>()).add(value);
+      }
+
+      @Override
+      public String getFirst(String key)
+      {
+         List<String> values = get(key);
+         return (values == null || values.isEmpty()) ? null : values.get(0);
+      }
+
+      @Override
+      public void addAll(String key, String... newValues)
+      {
+         addAll(key, Arrays.asList(newValues));
+      }
+
+      @Override
+      public void addAll(String key, List<String> valueList)
+      {
+         computeIfAbsent(key, k -> new ArrayList<>()).addAll(valueList);
+      }
+
+      @Override
+      public void addFirst(String key, String value)
+      {
+         computeIfAbsent(key, k -> new ArrayList<>()).add(0, value);
+      }
+
+      @Override
+      public boolean equalsIgnoreValueOrder(MultivaluedMap<String, String> other)
+      {
+         if (other == null || !keySet().equals(other.keySet()))
+            return false;
+
+         for (Map.Entry<String, List<String>> e : entrySet())
+         {
+            List<String> theirs = other.get(e.getKey());
+            if (theirs == null || e.getValue().size() != theirs.size() || !e.getValue().containsAll(theirs))
+               return false;
+         }
+
+         return true;
+      }
+   }
+}